@@ -13,10 +13,13 @@ REM Get script directory
 set SCRIPT_DIR=%~dp0
 set SRC_DIR=%SCRIPT_DIR%src
 
+REM ChaCha20Vector и Salsa20Vector използват Java Vector API (incubator модул)
+set JAVA_OPTS=--add-modules jdk.incubator.vector
+
 REM ===== COMPILATION =====
 echo [1/3] Компилиране на Java файлове...
 cd /d "%SRC_DIR%"
-javac *.java
+javac %JAVA_OPTS% *.java
 if errorlevel 1 (
     echo [ГРЕШКА] Компилацията се провали
     exit /b 1
@@ -41,17 +44,17 @@ echo.
 
 if "%choice%"=="1" (
     echo === StreamCipherDemo ===
-    java StreamCipherDemo
+    java %JAVA_OPTS% StreamCipherDemo
 ) else if "%choice%"=="2" (
     echo === StreamCipherBenchmark ===
-    java StreamCipherBenchmark
+    java %JAVA_OPTS% StreamCipherBenchmark
 ) else if "%choice%"=="3" (
     echo === SecurityAnalysis ===
-    java SecurityAnalysis
+    java %JAVA_OPTS% SecurityAnalysis
 ) else if "%choice%"=="4" (
     echo === AdvancedBenchmark с Bouncy Castle ===
     if exist "..\bcprov-jdk15on-1.70.jar" (
-        java -cp ".;..\bcprov-jdk15on-1.70.jar" AdvancedBenchmark
+        java %JAVA_OPTS% -cp ".;..\bcprov-jdk15on-1.70.jar" AdvancedBenchmark
     ) else (
         echo [ГРЕШКА] bcprov-jdk15on-1.70.jar не е намерена в родителската директория
         echo Свалете я от: https://www.bouncycastle.org/latest_releases.html
@@ -59,13 +62,13 @@ if "%choice%"=="1" (
     )
 ) else if "%choice%"=="5" (
     echo === StreamCipherDemo ===
-    java StreamCipherDemo
+    java %JAVA_OPTS% StreamCipherDemo
     echo.
     echo === StreamCipherBenchmark ===
-    java StreamCipherBenchmark
+    java %JAVA_OPTS% StreamCipherBenchmark
     echo.
     echo === SecurityAnalysis ===
-    java SecurityAnalysis
+    java %JAVA_OPTS% SecurityAnalysis
 ) else if "%choice%"=="6" (
     echo Изход без изпълнение.
     goto :cleanup
@@ -21,11 +21,14 @@ NC='\033[0m' # No Color
 SCRIPT_DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
 SRC_DIR="$SCRIPT_DIR/src"
 
+# ChaCha20Vector и Salsa20Vector използват Java Vector API (incubator модул)
+JAVA_OPTS="--add-modules jdk.incubator.vector"
+
 # Function to compile
 compile() {
     echo -e "${BLUE}[1/3] Компилиране на Java файлове...${NC}"
     cd "$SRC_DIR"
-    javac *.java
+    javac $JAVA_OPTS *.java
     if [ $? -eq 0 ]; then
         echo -e "${GREEN}✓ Компилацията завърши успешно${NC}"
         echo ""
@@ -56,20 +59,20 @@ run_programs() {
     case $choice in
         1)
             echo -e "${YELLOW}═══ StreamCipherDemo ═══${NC}"
-            java StreamCipherDemo
+            java $JAVA_OPTS StreamCipherDemo
             ;;
         2)
             echo -e "${YELLOW}═══ StreamCipherBenchmark ═══${NC}"
-            java StreamCipherBenchmark
+            java $JAVA_OPTS StreamCipherBenchmark
             ;;
         3)
             echo -e "${YELLOW}═══ SecurityAnalysis ═══${NC}"
-            java SecurityAnalysis
+            java $JAVA_OPTS SecurityAnalysis
             ;;
         4)
             echo -e "${YELLOW}═══ AdvancedBenchmark (с Bouncy Castle) ═══${NC}"
             if [ -f "../bcprov-jdk15on-1.70.jar" ]; then
-                java -cp ".:../bcprov-jdk15on-1.70.jar" AdvancedBenchmark
+                java $JAVA_OPTS -cp ".:../bcprov-jdk15on-1.70.jar" AdvancedBenchmark
             else
                 echo -e "${RED}✗ bcprov-jdk15on-1.70.jar не е намерена в родителската директория${NC}"
                 echo "Свалете я от: https://www.bouncycastle.org/latest_releases.html"
@@ -78,13 +81,13 @@ run_programs() {
             ;;
         5)
             echo -e "${YELLOW}═══ StreamCipherDemo ═══${NC}"
-            java StreamCipherDemo
+            java $JAVA_OPTS StreamCipherDemo
             echo ""
             echo -e "${YELLOW}═══ StreamCipherBenchmark ═══${NC}"
-            java StreamCipherBenchmark
+            java $JAVA_OPTS StreamCipherBenchmark
             echo ""
             echo -e "${YELLOW}═══ SecurityAnalysis ═══${NC}"
-            java SecurityAnalysis
+            java $JAVA_OPTS SecurityAnalysis
             ;;
         6)
             echo "Изход без изпълнение."
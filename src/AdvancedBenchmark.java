@@ -12,10 +12,10 @@
  * https://www.bouncycastle.org/latest_releases.html
  * 
  * Compile:
- * javac -cp ".:bcprov-jdk15on-1.70.jar" AdvancedBenchmark.java
+ * javac --add-modules jdk.incubator.vector -cp ".:bcprov-jdk15on-1.70.jar" *.java
  * 
  * Run:
- * java -cp ".:bcprov-jdk15on-1.70.jar" AdvancedBenchmark
+ * java --add-modules jdk.incubator.vector -cp ".:bcprov-jdk15on-1.70.jar" AdvancedBenchmark
  * 
  * Без библиотеката ще работи само сравнение на нашите имплементации.
  * 
@@ -240,6 +240,50 @@ public class AdvancedBenchmark {
         return result;
     }
 
+    /**
+     * Benchmark на наша ChaCha20 имплементация с Java Vector API
+     */
+    private static BenchmarkResult benchmarkOurChaCha20Vector(int dataSize) {
+        byte[] data = new byte[dataSize];
+        new SecureRandom().nextBytes(data);
+
+        byte[] key = new byte[32];
+        byte[] nonce = new byte[12];
+        new SecureRandom().nextBytes(key);
+        new SecureRandom().nextBytes(nonce);
+
+        // Warmup
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            ChaCha20Vector cipher = new ChaCha20Vector(key, nonce, 0);
+            cipher.crypt(data);
+        }
+
+        // Test
+        double[] times = new double[TEST_ITERATIONS];
+        for (int i = 0; i < TEST_ITERATIONS; i++) {
+            ChaCha20Vector cipher = new ChaCha20Vector(key, nonce, 0);
+            long start = System.nanoTime();
+            cipher.crypt(data);
+            long end = System.nanoTime();
+            times[i] = (end - start) / 1_000_000.0;
+        }
+
+        double avgTime = 0;
+        for (double t : times)
+            avgTime += t;
+        avgTime /= TEST_ITERATIONS;
+
+        BenchmarkResult result = new BenchmarkResult();
+        result.implementation = "Наша (Vector API)";
+        result.cipher = "ChaCha20";
+        result.dataSize = dataSize;
+        result.avgTimeMs = avgTime;
+        result.throughputMBps = (dataSize / (1024.0 * 1024.0)) / (avgTime / 1000.0);
+        result.stdDev = calculateStdDev(times, avgTime);
+
+        return result;
+    }
+
     /**
      * Benchmark на Bouncy Castle ChaCha20
      */
@@ -432,6 +476,50 @@ public class AdvancedBenchmark {
         return result;
     }
 
+    /**
+     * Benchmark на наша Salsa20 имплементация с Java Vector API
+     */
+    private static BenchmarkResult benchmarkOurSalsa20Vector(int dataSize) {
+        byte[] data = new byte[dataSize];
+        new SecureRandom().nextBytes(data);
+
+        byte[] key = new byte[32];
+        byte[] nonce = new byte[8];
+        new SecureRandom().nextBytes(key);
+        new SecureRandom().nextBytes(nonce);
+
+        // Warmup
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            Salsa20Vector cipher = new Salsa20Vector(key, nonce, 0);
+            cipher.crypt(data);
+        }
+
+        // Test
+        double[] times = new double[TEST_ITERATIONS];
+        for (int i = 0; i < TEST_ITERATIONS; i++) {
+            Salsa20Vector cipher = new Salsa20Vector(key, nonce, 0);
+            long start = System.nanoTime();
+            cipher.crypt(data);
+            long end = System.nanoTime();
+            times[i] = (end - start) / 1_000_000.0;
+        }
+
+        double avgTime = 0;
+        for (double t : times)
+            avgTime += t;
+        avgTime /= TEST_ITERATIONS;
+
+        BenchmarkResult result = new BenchmarkResult();
+        result.implementation = "Наша (Vector API)";
+        result.cipher = "Salsa20";
+        result.dataSize = dataSize;
+        result.avgTimeMs = avgTime;
+        result.throughputMBps = (dataSize / (1024.0 * 1024.0)) / (avgTime / 1000.0);
+        result.stdDev = calculateStdDev(times, avgTime);
+
+        return result;
+    }
+
     public static void main(String[] args) {
         System.out.println("╔════════════════════════════════════════════════════════════╗");
         System.out.println("║   РАЗШИРЕН BENCHMARK - Наши vs Официални имплементации    ║");
@@ -485,6 +573,11 @@ public class AdvancedBenchmark {
             allResults.add(ourChaCha);
             System.out.println("\r" + ourChaCha);
 
+            System.out.print("Тестване ChaCha20 (Vector API)...");
+            BenchmarkResult ourChaChaVector = benchmarkOurChaCha20Vector(size);
+            allResults.add(ourChaChaVector);
+            System.out.println("\r" + ourChaChaVector);
+
             if (bouncyCastleAvailable) {
                 System.out.print("Тестване ChaCha20 (BC)...        ");
                 BenchmarkResult bcChaCha = benchmarkBCChaCha20(size);
@@ -495,6 +588,10 @@ public class AdvancedBenchmark {
                     double improvement = ((bcChaCha.throughputMBps / ourChaCha.throughputMBps) - 1) * 100;
                     System.out.printf("   → Нашата е %.1f%% %s%n", Math.abs(improvement),
                             improvement > 0 ? "по-бавна" : "по-бърза");
+
+                    double vectorImprovement = ((bcChaCha.throughputMBps / ourChaChaVector.throughputMBps) - 1) * 100;
+                    System.out.printf("   → Vector API версията е %.1f%% %s%n", Math.abs(vectorImprovement),
+                            vectorImprovement > 0 ? "по-бавна" : "по-бърза");
                 }
             }
             System.out.println();
@@ -505,6 +602,11 @@ public class AdvancedBenchmark {
             allResults.add(ourSalsa);
             System.out.println("\r" + ourSalsa);
 
+            System.out.print("Тестване Salsa20 (Vector API)... ");
+            BenchmarkResult ourSalsaVector = benchmarkOurSalsa20Vector(size);
+            allResults.add(ourSalsaVector);
+            System.out.println("\r" + ourSalsaVector);
+
             if (bouncyCastleAvailable) {
                 System.out.print("Тестване Salsa20 (BC)...         ");
                 BenchmarkResult bcSalsa = benchmarkBCSalsa20(size);
@@ -515,6 +617,10 @@ public class AdvancedBenchmark {
                     double improvement = ((bcSalsa.throughputMBps / ourSalsa.throughputMBps) - 1) * 100;
                     System.out.printf("   → Нашата е %.1f%% %s%n", Math.abs(improvement),
                             improvement > 0 ? "по-бавна" : "по-бърза");
+
+                    double vectorImprovement = ((bcSalsa.throughputMBps / ourSalsaVector.throughputMBps) - 1) * 100;
+                    System.out.printf("   → Vector API версията е %.1f%% %s%n", Math.abs(vectorImprovement),
+                            vectorImprovement > 0 ? "по-бавна" : "по-бърза");
                 }
             }
             System.out.println("\n");
@@ -537,8 +643,8 @@ public class AdvancedBenchmark {
             System.out.println("   За пълен тест инсталирайте Bouncy Castle:\n");
             System.out.println("   1. Download: https://www.bouncycastle.org/latest_releases.html");
             System.out.println("   2. Файл: bcprov-jdk15on-1.70.jar");
-            System.out.println("   3. Compile: javac -cp \".:bcprov-jdk15on-1.70.jar\" AdvancedBenchmark.java");
-            System.out.println("   4. Run: java -cp \".:bcprov-jdk15on-1.70.jar\" AdvancedBenchmark\n");
+            System.out.println("   3. Compile: javac --add-modules jdk.incubator.vector -cp \".:bcprov-jdk15on-1.70.jar\" *.java");
+            System.out.println("   4. Run: java --add-modules jdk.incubator.vector -cp \".:bcprov-jdk15on-1.70.jar\" AdvancedBenchmark\n");
         }
 
         System.out.println("🎯 ЗАКЛЮЧЕНИЯ:");
@@ -1,3 +1,14 @@
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
 /**
  * ChaCha20 Stream Cipher Implementation
  * 
@@ -11,7 +22,7 @@
  * - 96-битов nonce (number used once)
  * - 32-битов block counter
  * - 512-битови блокове (64 байта)
- * - 20 рунда (10 double rounds)
+ * - 20 рунда (10 double rounds), намалени варианти ChaCha12 и ChaCha8
  * 
  * ChaCha20 е препоръчван за съвременни приложения и се използва в:
  * - TLS 1.3
@@ -25,13 +36,41 @@
 public class ChaCha20 {
 
     // ChaCha20 константи ("expand 32-byte k" в ASCII)
-    private static final int[] CONSTANTS = {
+    static final int[] CONSTANTS = {
             0x61707865, 0x3320646e, 0x79622d32, 0x6b206574
     };
 
-    private final int[] key; // 8 × 32-bit = 256-bit key
-    private final int[] nonce; // 3 × 32-bit = 96-bit nonce
-    private int counter; // 32-bit block counter
+    final int[] key; // 8 × 32-bit = 256-bit key
+    final int[] nonce; // 3 × 32-bit = 96-bit nonce
+    int counter; // 32-bit block counter
+    private int initialCounter; // counter на първия блок (позиция 0 при seek)
+    final int rounds; // брой рундове: 20 (ChaCha20), 12 (ChaCha12) или 8 (ChaCha8)
+
+    // Минимален размер на сегмент при паралелно криптиране (по-малките не се разделят)
+    static final int PARALLEL_MIN_SEGMENT = 64 * 1024;
+
+    // 64 нулеви байта - XOR с тях дава чистия keystream
+    private static final byte[] ZERO_BLOCK = new byte[64];
+
+    // Достъп до 8 байта като един little-endian long - в byte[] и в ByteBuffer (вкл. direct)
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle BUFFER_LONG_LE = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    // 32-битова little-endian дума на произволен (неподравнен) адрес в MemorySegment
+    private static final ValueLayout.OfInt SEGMENT_INT_LE = ValueLayout.JAVA_INT_UNALIGNED
+            .withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    // Същата дума в byte[] (keystream буфера)
+    private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    // Буфер за keystream на непълен блок (преизползва се, без алокации)
+    private final byte[] keystream = new byte[64];
+
+    // Позиция на първия неизползван байт в keystream (64 = буферът е празен)
+    int keystreamPos = 64;
 
     /**
      * Конструктор на ChaCha20
@@ -42,6 +81,23 @@ public class ChaCha20 {
      * @throws IllegalArgumentException при невалидни размери
      */
     public ChaCha20(byte[] key, byte[] nonce, int counter) {
+        this(key, nonce, counter, 20);
+    }
+
+    /**
+     * Конструктор с избран брой рундове
+     * 
+     * ChaCha12 и ChaCha8 изпълняват 60% и 40% от рундовете на ChaCha20.
+     * ChaCha12 се смята за достатъчен (напр. Adiantum за криптиране на
+     * дискове), а ChaCha8 има най-малката граница на сигурност.
+     * 
+     * @param key     32-байтов (256-битов) ключ
+     * @param nonce   12-байтов (96-битов) nonce
+     * @param counter начален counter (обикновено 0 или 1)
+     * @param rounds  брой рундове: 8, 12 или 20
+     * @throws IllegalArgumentException при невалидни размери или брой рундове
+     */
+    public ChaCha20(byte[] key, byte[] nonce, int counter, int rounds) {
         if (key.length != 32) {
             throw new IllegalArgumentException("Ключът трябва да е точно 32 байта (256 бита)");
         }
@@ -52,6 +108,8 @@ public class ChaCha20 {
         this.key = bytesToInts(key);
         this.nonce = bytesToInts(nonce);
         this.counter = counter;
+        this.initialCounter = counter;
+        this.rounds = checkRounds(rounds);
     }
 
     /**
@@ -61,10 +119,59 @@ public class ChaCha20 {
         this(key, nonce, 0);
     }
 
+    /**
+     * Конструктор от вече конвертирани 32-битови думи на ключа и nonce-а
+     * Използва се от XChaCha20 с подключа, изведен чрез HChaCha20
+     */
+    ChaCha20(int[] key, int[] nonce, int counter) {
+        this.key = key;
+        this.nonce = nonce;
+        this.counter = counter;
+        this.initialCounter = counter;
+        this.rounds = 20;
+    }
+
+    /**
+     * Копие със същия ключ и nonce, започващо от даден counter
+     * Използва се за независимите сегменти при паралелно криптиране
+     */
+    ChaCha20(ChaCha20 other, int counter) {
+        this.key = other.key;
+        this.nonce = other.nonce;
+        this.counter = counter;
+        this.initialCounter = other.initialCounter;
+        this.rounds = other.rounds;
+    }
+
+    /**
+     * Проверява дали броят рундове е един от стандартните варианти
+     */
+    static int checkRounds(int rounds) {
+        if (rounds != 8 && rounds != 12 && rounds != 20) {
+            throw new IllegalArgumentException("Броят рундове трябва да е 8, 12 или 20");
+        }
+        return rounds;
+    }
+
+    /**
+     * Брой рундове на шифъра (8, 12 или 20)
+     */
+    public int getRounds() {
+        return rounds;
+    }
+
+    /**
+     * Създава копие на шифъра за сегмент, започващ от даден counter
+     * Наследниците (напр. векторните версии) връщат копие от своя тип
+     */
+    ChaCha20 copyAt(int counter) {
+        return new ChaCha20(this, counter);
+    }
+
     /**
      * Конвертира байтов масив в масив от 32-битови integers (little-endian)
      */
-    private int[] bytesToInts(byte[] bytes) {
+    static int[] bytesToInts(byte[] bytes) {
         int[] ints = new int[bytes.length / 4];
         for (int i = 0; i < ints.length; i++) {
             ints[i] = bytesToInt(bytes, i * 4);
@@ -75,7 +182,7 @@ public class ChaCha20 {
     /**
      * Конвертира 4 байта в 32-битов integer (little-endian)
      */
-    private int bytesToInt(byte[] bytes, int offset) {
+    static int bytesToInt(byte[] bytes, int offset) {
         return (bytes[offset] & 0xFF) |
                 ((bytes[offset + 1] & 0xFF) << 8) |
                 ((bytes[offset + 2] & 0xFF) << 16) |
@@ -83,134 +190,488 @@ public class ChaCha20 {
     }
 
     /**
-     * Конвертира 32-битов integer в 4 байта (little-endian)
-     */
-    private void intToBytes(int value, byte[] bytes, int offset) {
-        bytes[offset] = (byte) (value & 0xFF);
-        bytes[offset + 1] = (byte) ((value >>> 8) & 0xFF);
-        bytes[offset + 2] = (byte) ((value >>> 16) & 0xFF);
-        bytes[offset + 3] = (byte) ((value >>> 24) & 0xFF);
-    }
-
-    /**
-     * ChaCha20 Quarter Round операция
-     * Основната строителна единица на ChaCha20
+     * ChaCha20 блокова функция
+     * Генерира 64 байта keystream и ги XOR-ва директно с входните данни
+     * 
+     * Структура на състоянието (4x4 матрица от 32-битови думи):
      * 
-     * Операции:
+     * cccccccc cccccccc cccccccc cccccccc <- Константи
+     * kkkkkkkk kkkkkkkk kkkkkkkk kkkkkkkk <- Ключ (част 1)
+     * kkkkkkkk kkkkkkkk kkkkkkkk kkkkkkkk <- Ключ (част 2)
+     * bbbbbbbb nnnnnnnn nnnnnnnn nnnnnnnn <- Counter + Nonce
+     * 
+     * Извършва rounds рунда (rounds / 2 двойни рунда: column + diagonal).
+     * Всичките 16 думи се държат в локални променливи, а quarter round
+     * операциите са развити (unrolled), така че JIT компилаторът да ги
+     * държи в регистри. Не се заделя памет за всеки блок.
+     * 
+     * Quarter round операции:
      * a += b; d ^= a; d <<<= 16;
      * c += d; b ^= c; b <<<= 12;
      * a += b; d ^= a; d <<<= 8;
      * c += d; b ^= c; b <<<= 7;
+     * 
+     * @param in     входни данни (поне 64 байта от inOff)
+     * @param inOff  начална позиция във входа
+     * @param out    изходен масив (поне 64 байта от outOff)
+     * @param outOff начална позиция в изхода
      */
-    private void quarterRound(int[] state, int a, int b, int c, int d) {
-        state[a] += state[b];
-        state[d] = Integer.rotateLeft(state[d] ^ state[a], 16);
+    private void chachaBlock(byte[] in, int inOff, byte[] out, int outOff) {
+        // Начално състояние
+        final int j0 = CONSTANTS[0], j1 = CONSTANTS[1], j2 = CONSTANTS[2], j3 = CONSTANTS[3];
+        final int j4 = key[0], j5 = key[1], j6 = key[2], j7 = key[3];
+        final int j8 = key[4], j9 = key[5], j10 = key[6], j11 = key[7];
+        final int j12 = counter, j13 = nonce[0], j14 = nonce[1], j15 = nonce[2];
+
+        int x0 = j0, x1 = j1, x2 = j2, x3 = j3;
+        int x4 = j4, x5 = j5, x6 = j6, x7 = j7;
+        int x8 = j8, x9 = j9, x10 = j10, x11 = j11;
+        int x12 = j12, x13 = j13, x14 = j14, x15 = j15;
+
+        // 20, 12 или 8 рунда = 10, 6 или 4 double rounds
+        final int doubleRounds = rounds >> 1;
+        for (int i = 0; i < doubleRounds; i++) {
+            // Column rounds
+            x0 += x4; x12 = Integer.rotateLeft(x12 ^ x0, 16);
+            x8 += x12; x4 = Integer.rotateLeft(x4 ^ x8, 12);
+            x0 += x4; x12 = Integer.rotateLeft(x12 ^ x0, 8);
+            x8 += x12; x4 = Integer.rotateLeft(x4 ^ x8, 7);
+            x1 += x5; x13 = Integer.rotateLeft(x13 ^ x1, 16);
+            x9 += x13; x5 = Integer.rotateLeft(x5 ^ x9, 12);
+            x1 += x5; x13 = Integer.rotateLeft(x13 ^ x1, 8);
+            x9 += x13; x5 = Integer.rotateLeft(x5 ^ x9, 7);
+            x2 += x6; x14 = Integer.rotateLeft(x14 ^ x2, 16);
+            x10 += x14; x6 = Integer.rotateLeft(x6 ^ x10, 12);
+            x2 += x6; x14 = Integer.rotateLeft(x14 ^ x2, 8);
+            x10 += x14; x6 = Integer.rotateLeft(x6 ^ x10, 7);
+            x3 += x7; x15 = Integer.rotateLeft(x15 ^ x3, 16);
+            x11 += x15; x7 = Integer.rotateLeft(x7 ^ x11, 12);
+            x3 += x7; x15 = Integer.rotateLeft(x15 ^ x3, 8);
+            x11 += x15; x7 = Integer.rotateLeft(x7 ^ x11, 7);
+
+            // Diagonal rounds
+            x0 += x5; x15 = Integer.rotateLeft(x15 ^ x0, 16);
+            x10 += x15; x5 = Integer.rotateLeft(x5 ^ x10, 12);
+            x0 += x5; x15 = Integer.rotateLeft(x15 ^ x0, 8);
+            x10 += x15; x5 = Integer.rotateLeft(x5 ^ x10, 7);
+            x1 += x6; x12 = Integer.rotateLeft(x12 ^ x1, 16);
+            x11 += x12; x6 = Integer.rotateLeft(x6 ^ x11, 12);
+            x1 += x6; x12 = Integer.rotateLeft(x12 ^ x1, 8);
+            x11 += x12; x6 = Integer.rotateLeft(x6 ^ x11, 7);
+            x2 += x7; x13 = Integer.rotateLeft(x13 ^ x2, 16);
+            x8 += x13; x7 = Integer.rotateLeft(x7 ^ x8, 12);
+            x2 += x7; x13 = Integer.rotateLeft(x13 ^ x2, 8);
+            x8 += x13; x7 = Integer.rotateLeft(x7 ^ x8, 7);
+            x3 += x4; x14 = Integer.rotateLeft(x14 ^ x3, 16);
+            x9 += x14; x4 = Integer.rotateLeft(x4 ^ x9, 12);
+            x3 += x4; x14 = Integer.rotateLeft(x14 ^ x3, 8);
+            x9 += x14; x4 = Integer.rotateLeft(x4 ^ x9, 7);
+        }
+
+        // Добавяне на началното състояние (предпазва от атаки) и XOR с данните
+        xorLong(x0 + j0, x1 + j1, in, inOff, out, outOff);
+        xorLong(x2 + j2, x3 + j3, in, inOff + 8, out, outOff + 8);
+        xorLong(x4 + j4, x5 + j5, in, inOff + 16, out, outOff + 16);
+        xorLong(x6 + j6, x7 + j7, in, inOff + 24, out, outOff + 24);
+        xorLong(x8 + j8, x9 + j9, in, inOff + 32, out, outOff + 32);
+        xorLong(x10 + j10, x11 + j11, in, inOff + 40, out, outOff + 40);
+        xorLong(x12 + j12, x13 + j13, in, inOff + 48, out, outOff + 48);
+        xorLong(x14 + j14, x15 + j15, in, inOff + 56, out, outOff + 56);
+    }
+
+    /**
+     * HChaCha20 - извежда 256-битов подключ от ключ и 128-битов вход
+     * 
+     * Използва същото начално състояние и същите 20 рунда като ChaCha20,
+     * но вместо counter и nonce в последния ред се поставят 4-те думи на
+     * входа. Няма добавяне на началното състояние - резултатът е първият
+     * и последният ред на матрицата (думи 0..3 и 12..15).
+     * 
+     * Спецификация: draft-irtf-cfrg-xchacha
+     * 
+     * @param key    8 думи на ключа
+     * @param n0     думи 0..3 на 128-битовия вход (първите 16 байта от XChaCha20 nonce)
+     * @param subkey изходен масив от 8 думи за подключа
+     */
+    static void hChaCha20(int[] key, int n0, int n1, int n2, int n3, int[] subkey) {
+        int x0 = CONSTANTS[0], x1 = CONSTANTS[1], x2 = CONSTANTS[2], x3 = CONSTANTS[3];
+        int x4 = key[0], x5 = key[1], x6 = key[2], x7 = key[3];
+        int x8 = key[4], x9 = key[5], x10 = key[6], x11 = key[7];
+        int x12 = n0, x13 = n1, x14 = n2, x15 = n3;
+
+        // 20 рунда = 10 double rounds
+        for (int i = 0; i < 10; i++) {
+            // Column rounds
+            x0 += x4; x12 = Integer.rotateLeft(x12 ^ x0, 16);
+            x8 += x12; x4 = Integer.rotateLeft(x4 ^ x8, 12);
+            x0 += x4; x12 = Integer.rotateLeft(x12 ^ x0, 8);
+            x8 += x12; x4 = Integer.rotateLeft(x4 ^ x8, 7);
+            x1 += x5; x13 = Integer.rotateLeft(x13 ^ x1, 16);
+            x9 += x13; x5 = Integer.rotateLeft(x5 ^ x9, 12);
+            x1 += x5; x13 = Integer.rotateLeft(x13 ^ x1, 8);
+            x9 += x13; x5 = Integer.rotateLeft(x5 ^ x9, 7);
+            x2 += x6; x14 = Integer.rotateLeft(x14 ^ x2, 16);
+            x10 += x14; x6 = Integer.rotateLeft(x6 ^ x10, 12);
+            x2 += x6; x14 = Integer.rotateLeft(x14 ^ x2, 8);
+            x10 += x14; x6 = Integer.rotateLeft(x6 ^ x10, 7);
+            x3 += x7; x15 = Integer.rotateLeft(x15 ^ x3, 16);
+            x11 += x15; x7 = Integer.rotateLeft(x7 ^ x11, 12);
+            x3 += x7; x15 = Integer.rotateLeft(x15 ^ x3, 8);
+            x11 += x15; x7 = Integer.rotateLeft(x7 ^ x11, 7);
 
-        state[c] += state[d];
-        state[b] = Integer.rotateLeft(state[b] ^ state[c], 12);
+            // Diagonal rounds
+            x0 += x5; x15 = Integer.rotateLeft(x15 ^ x0, 16);
+            x10 += x15; x5 = Integer.rotateLeft(x5 ^ x10, 12);
+            x0 += x5; x15 = Integer.rotateLeft(x15 ^ x0, 8);
+            x10 += x15; x5 = Integer.rotateLeft(x5 ^ x10, 7);
+            x1 += x6; x12 = Integer.rotateLeft(x12 ^ x1, 16);
+            x11 += x12; x6 = Integer.rotateLeft(x6 ^ x11, 12);
+            x1 += x6; x12 = Integer.rotateLeft(x12 ^ x1, 8);
+            x11 += x12; x6 = Integer.rotateLeft(x6 ^ x11, 7);
+            x2 += x7; x13 = Integer.rotateLeft(x13 ^ x2, 16);
+            x8 += x13; x7 = Integer.rotateLeft(x7 ^ x8, 12);
+            x2 += x7; x13 = Integer.rotateLeft(x13 ^ x2, 8);
+            x8 += x13; x7 = Integer.rotateLeft(x7 ^ x8, 7);
+            x3 += x4; x14 = Integer.rotateLeft(x14 ^ x3, 16);
+            x9 += x14; x4 = Integer.rotateLeft(x4 ^ x9, 12);
+            x3 += x4; x14 = Integer.rotateLeft(x14 ^ x3, 8);
+            x9 += x14; x4 = Integer.rotateLeft(x4 ^ x9, 7);
+        }
+
+        subkey[0] = x0;
+        subkey[1] = x1;
+        subkey[2] = x2;
+        subkey[3] = x3;
+        subkey[4] = x12;
+        subkey[5] = x13;
+        subkey[6] = x14;
+        subkey[7] = x15;
+    }
 
-        state[a] += state[b];
-        state[d] = Integer.rotateLeft(state[d] ^ state[a], 8);
+    /**
+     * XOR-ва две 32-битови keystream думи с 8 входни байта наведнъж
+     * 
+     * Думите се комбинират в един little-endian long (lo са байтове 0..3,
+     * hi - 4..7) и се четат/пишат през LONG_LE: едно 8-байтово четене и
+     * едно записване вместо 8 отделни байтови операции.
+     */
+    static void xorLong(int lo, int hi, byte[] in, int inOff, byte[] out, int outOff) {
+        long word = (lo & 0xFFFFFFFFL) | ((long) hi << 32);
+        LONG_LE.set(out, outOff, (long) LONG_LE.get(in, inOff) ^ word);
+    }
+
+    /**
+     * XOR-ва 8 байта с keystream буфера от keystreamPos и го премества напред
+     */
+    private void xorKeystream8(byte[] in, int inOff, byte[] out, int outOff) {
+        LONG_LE.set(out, outOff, (long) LONG_LE.get(in, inOff) ^ (long) LONG_LE.get(keystream, keystreamPos));
+        keystreamPos += 8;
+    }
 
-        state[c] += state[d];
-        state[b] = Integer.rotateLeft(state[b] ^ state[c], 7);
+    /**
+     * Криптира/декриптира данни
+     * ChaCha20 използва XOR, така че операциите са идентични
+     * 
+     * @param data данните за обработка
+     * @return криптирани/декриптирани данни
+     */
+    public byte[] crypt(byte[] data) {
+        byte[] result = new byte[data.length];
+        crypt(data, 0, data.length, result, 0);
+        return result;
     }
 
     /**
-     * Създава началното състояние на ChaCha20
+     * Криптира/декриптира len байта от in в предоставен от извикващия буфер
      * 
-     * Структура (4x4 матрица от 32-битови думи):
+     * Не заделя памет. Неизползваният остатък от последния keystream блок
+     * се пази между извикванията, така че обработката на поток на парчета
+     * с произволен размер дава същия резултат като едно голямо извикване.
+     * Пълните 64-байтови блокове се XOR-ват директно в out.
+     * Поддържа работа на място (in == out и inOff == outOff).
      * 
-     * cccccccc cccccccc cccccccc cccccccc <- Константи
-     * kkkkkkkk kkkkkkkk kkkkkkkk kkkkkkkk <- Ключ (част 1)
-     * kkkkkkkk kkkkkkkk kkkkkkkk kkkkkkkk <- Ключ (част 2)
-     * bbbbbbbb nnnnnnnn nnnnnnnn nnnnnnnn <- Counter + Nonce
+     * @param in     входни данни
+     * @param inOff  начална позиция във входа
+     * @param len    брой байтове за обработка
+     * @param out    изходен буфер
+     * @param outOff начална позиция в изхода
+     * @throws IllegalArgumentException при невалидни offset/дължина
      */
-    private int[] createInitialState() {
-        int[] state = new int[16];
+    public void crypt(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        checkBounds(in, inOff, len, out, outOff);
+        cryptScalar(in, inOff, len, out, outOff);
+    }
+
+    /**
+     * Скаларният път на crypt, без проверка на границите
+     * 
+     * Не се пренасочва виртуално, така че наследниците (ChaCha20Adaptive)
+     * могат да го изберат явно за кратки съобщения.
+     */
+    final void cryptScalar(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        int offset = 0;
+
+        // Остатък от keystream блока от предишното извикване (по 8 байта, после по 1)
+        while (64 - keystreamPos >= 8 && len - offset >= 8) {
+            xorKeystream8(in, inOff + offset, out, outOff + offset);
+            offset += 8;
+        }
+        while (keystreamPos < 64 && offset < len) {
+            out[outOff + offset] = (byte) (in[inOff + offset] ^ keystream[keystreamPos++]);
+            offset++;
+        }
+
+        // Пълни 64-байтови блокове
+        while (len - offset >= 64) {
+            chachaBlock(in, inOff + offset, out, outOff + offset);
+            offset += 64;
+            counter++; // Увеличаване на counter за следващия блок
+        }
 
-        // Константи (позиции 0-3)
-        System.arraycopy(CONSTANTS, 0, state, 0, 4);
+        // Непълен последен блок - неизползваната част остава за следващото извикване
+        if (offset < len) {
+            chachaBlock(ZERO_BLOCK, 0, keystream, 0);
+            counter++;
+            keystreamPos = 0;
+            while (len - offset >= 8) {
+                xorKeystream8(in, inOff + offset, out, outOff + offset);
+                offset += 8;
+            }
+            while (offset < len) {
+                out[outOff + offset] = (byte) (in[inOff + offset] ^ keystream[keystreamPos++]);
+                offset++;
+            }
+        }
+    }
 
-        // Ключ (позиции 4-11)
-        System.arraycopy(key, 0, state, 4, 8);
+    /**
+     * Криптира/декриптира src.remaining() байта от src в dst (NIO конвенции)
+     * 
+     * Чете от src.position() до src.limit() и пише от dst.position(); след
+     * извикването двете позиции са преместени с броя обработени байтове,
+     * а limit-ите не се променят. При src == dst работи на място.
+     * 
+     * Буфери с достъпен масив (heap) минават през crypt(byte[], ...), а
+     * останалите (direct, read-only) се четат и пишат директно като
+     * little-endian long-ове, без копиране в heap масив.
+     * 
+     * @param src входен буфер
+     * @param dst изходен буфер
+     * @return брой обработени байтове
+     * @throws BufferOverflowException ако в dst няма място за src.remaining() байта
+     * @throws ReadOnlyBufferException ако dst е само за четене
+     */
+    public int crypt(ByteBuffer src, ByteBuffer dst) {
+        if (dst.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+        int len = src.remaining();
+        if (dst.remaining() < len) {
+            throw new BufferOverflowException();
+        }
 
-        // Counter (позиция 12)
-        state[12] = counter;
+        int inPos = src.position();
+        int outPos = dst.position();
 
-        // Nonce (позиции 13-15)
-        System.arraycopy(nonce, 0, state, 13, 3);
+        if (src.hasArray() && dst.hasArray()) {
+            crypt(src.array(), src.arrayOffset() + inPos, len, dst.array(), dst.arrayOffset() + outPos);
+        } else {
+            cryptBuffer(src, inPos, len, dst, outPos);
+        }
 
-        return state;
+        src.position(inPos + len);
+        dst.position(outPos + len);
+        return len;
     }
 
     /**
-     * ChaCha20 блокова функция
-     * Генерира 64 байта keystream от текущото състояние
+     * Директен път на crypt(ByteBuffer, ByteBuffer) - абсолютен достъп без промяна на позициите
      * 
-     * Извършва 20 рунда (10 двойни рунда):
-     * - 4 column rounds
-     * - 4 diagonal rounds
+     * Всеки блок keystream се генерира в keystream буфера (64 байта) и се
+     * XOR-ва с данните по 8 байта наведнъж.
      */
-    private byte[] chachaBlock() {
-        int[] workingState = createInitialState();
-        int[] initialState = workingState.clone();
+    private void cryptBuffer(ByteBuffer src, int inPos, int len, ByteBuffer dst, int outPos) {
+        int offset = 0;
 
-        // 20 рунда = 10 double rounds
-        for (int i = 0; i < 10; i++) {
-            // Column rounds
-            quarterRound(workingState, 0, 4, 8, 12);
-            quarterRound(workingState, 1, 5, 9, 13);
-            quarterRound(workingState, 2, 6, 10, 14);
-            quarterRound(workingState, 3, 7, 11, 15);
+        // Остатък от keystream блока от предишното извикване
+        while (keystreamPos < 64 && offset < len) {
+            dst.put(outPos + offset, (byte) (src.get(inPos + offset) ^ keystream[keystreamPos++]));
+            offset++;
+        }
 
-            // Diagonal rounds
-            quarterRound(workingState, 0, 5, 10, 15);
-            quarterRound(workingState, 1, 6, 11, 12);
-            quarterRound(workingState, 2, 7, 8, 13);
-            quarterRound(workingState, 3, 4, 9, 14);
+        // Пълни 64-байтови блокове
+        while (len - offset >= 64) {
+            chachaBlock(ZERO_BLOCK, 0, keystream, 0);
+            counter++;
+            for (int k = 0; k < 64; k += 8) {
+                BUFFER_LONG_LE.set(dst, outPos + offset + k,
+                        (long) BUFFER_LONG_LE.get(src, inPos + offset + k) ^ (long) LONG_LE.get(keystream, k));
+            }
+            offset += 64;
         }
 
-        // Добавяне на началното състояние (предпазва от атаки)
-        for (int i = 0; i < 16; i++) {
-            workingState[i] += initialState[i];
+        // Непълен последен блок - неизползваната част остава за следващото извикване
+        if (offset < len) {
+            chachaBlock(ZERO_BLOCK, 0, keystream, 0);
+            counter++;
+            keystreamPos = 0;
+            while (offset < len) {
+                dst.put(outPos + offset, (byte) (src.get(inPos + offset) ^ keystream[keystreamPos++]));
+                offset++;
+            }
         }
+    }
 
-        // Конвертиране на 16 integers в 64 байта
-        byte[] keystream = new byte[64];
-        for (int i = 0; i < 16; i++) {
-            intToBytes(workingState[i], keystream, i * 4);
+    /**
+     * Криптира/декриптира целия MemorySegment на място
+     * 
+     * @param segment off-heap памет или файл, изобразен в паметта (mapped)
+     * @throws IllegalArgumentException ако сегментът е само за четене
+     */
+    public void crypt(MemorySegment segment) {
+        crypt(segment, 0, segment.byteSize());
+    }
+
+    /**
+     * Криптира/декриптира length байта от MemorySegment на място, от offset
+     * 
+     * Данните се четат и пишат директно като little-endian 32-битови думи
+     * (JAVA_INT_UNALIGNED), без копиране в heap. Offset-ът и дължината са
+     * long, така че сегментът може да е по-голям от 2 GB (ограничението на
+     * byte[] и ByteBuffer) - напр. целият файл, изобразен с FileChannel.map.
+     * Counter-ът е 32-битов, така че едно съобщение е до 256 GB - за по-големи
+     * файлове използвайте Salsa20 (64-битов counter).
+     * 
+     * @param segment сегмент за обработка
+     * @param offset  начална позиция в сегмента
+     * @param length  брой байтове за обработка
+     * @throws IllegalArgumentException ако сегментът е само за четене
+     * @throws IndexOutOfBoundsException при offset/дължина извън сегмента
+     */
+    public void crypt(MemorySegment segment, long offset, long length) {
+        if (segment.isReadOnly()) {
+            throw new IllegalArgumentException("Сегментът е само за четене");
+        }
+        MemorySegment data = segment.asSlice(offset, length);
+        long position = 0;
+
+        // Остатък от keystream блока от предишното извикване
+        while (keystreamPos < 64 && position < length) {
+            data.set(ValueLayout.JAVA_BYTE, position,
+                    (byte) (data.get(ValueLayout.JAVA_BYTE, position) ^ keystream[keystreamPos++]));
+            position++;
         }
 
-        return keystream;
+        // Пълни 64-байтови блокове - по 16 думи
+        while (length - position >= 64) {
+            chachaBlock(ZERO_BLOCK, 0, keystream, 0);
+            counter++;
+            for (int k = 0; k < 64; k += 4) {
+                data.set(SEGMENT_INT_LE, position + k,
+                        data.get(SEGMENT_INT_LE, position + k) ^ (int) INT_LE.get(keystream, k));
+            }
+            position += 64;
+        }
+
+        // Непълен последен блок - неизползваната част остава за следващото извикване
+        if (position < length) {
+            chachaBlock(ZERO_BLOCK, 0, keystream, 0);
+            counter++;
+            keystreamPos = 0;
+            while (position < length) {
+                data.set(ValueLayout.JAVA_BYTE, position,
+                        (byte) (data.get(ValueLayout.JAVA_BYTE, position) ^ keystream[keystreamPos++]));
+                position++;
+            }
+        }
     }
 
     /**
-     * Криптира/декриптира данни
-     * ChaCha20 използва XOR, така че операциите са идентични
+     * Паралелно криптира/декриптира данни, използвайки всички нишки на pool
      * 
      * @param data данните за обработка
+     * @param pool ForkJoinPool за паралелната обработка
      * @return криптирани/декриптирани данни
      */
-    public byte[] crypt(byte[] data) {
+    public byte[] crypt(byte[] data, ForkJoinPool pool) {
         byte[] result = new byte[data.length];
+        crypt(data, 0, data.length, result, 0, pool);
+        return result;
+    }
+
+    /**
+     * Паралелно криптира/декриптира len байта от in в предоставен буфер
+     * 
+     * Блоковете са независими при известен counter, така че пълните блокове
+     * се разделят на сегменти, подравнени на 64 байта, и всеки сегмент се
+     * обработва от отделно копие на шифъра със съответния начален counter.
+     * Резултатът е байт по байт идентичен с последователния crypt, а
+     * остатъкът от keystream след последния непълен блок се пази в този
+     * обект както обикновено.
+     * 
+     * Данни под 2 × PARALLEL_MIN_SEGMENT се обработват последователно.
+     * 
+     * @param in     входни данни
+     * @param inOff  начална позиция във входа
+     * @param len    брой байтове за обработка
+     * @param out    изходен буфер
+     * @param outOff начална позиция в изхода
+     * @param pool   ForkJoinPool за паралелната обработка
+     * @throws IllegalArgumentException при невалидни offset/дължина
+     */
+    public void crypt(byte[] in, int inOff, int len, byte[] out, int outOff, ForkJoinPool pool) {
+        checkBounds(in, inOff, len, out, outOff);
         int offset = 0;
 
-        while (offset < data.length) {
-            // Генериране на 64-байтов keystream блок
-            byte[] keystream = chachaBlock();
+        // Остатък от keystream блока от предишното извикване
+        if (keystreamPos < 64) {
+            offset = Math.min(len, 64 - keystreamPos);
+            crypt(in, inOff, offset, out, outOff);
+        }
+
+        int blocks = (len - offset) / 64;
+        int segments = Math.min(pool.getParallelism(), blocks * 64 / PARALLEL_MIN_SEGMENT);
+
+        if (segments > 1) {
+            // Равни сегменти от пълни блокове; първите blocks % segments получават по един блок повече
+            ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[segments];
+            int segmentStart = offset;
+            int segmentCounter = counter;
 
-            // XOR на данните с keystream
-            int blockSize = Math.min(64, data.length - offset);
-            for (int i = 0; i < blockSize; i++) {
-                result[offset + i] = (byte) (data[offset + i] ^ keystream[i]);
+            for (int s = 0; s < segments; s++) {
+                int segmentBlocks = blocks / segments + (s < blocks % segments ? 1 : 0);
+                int start = segmentStart;
+                int length = segmentBlocks * 64;
+                ChaCha20 worker = copyAt(segmentCounter);
+
+                tasks[s] = pool.submit(() -> worker.crypt(in, inOff + start, length, out, outOff + start));
+
+                segmentStart += length;
+                segmentCounter += segmentBlocks;
             }
 
-            offset += blockSize;
-            counter++; // Увеличаване на counter за следващия блок
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+
+            offset = segmentStart;
+            counter = segmentCounter;
         }
 
-        return result;
+        // Остатък (и всичко при малки данни) - последователно
+        if (offset < len) {
+            crypt(in, inOff + offset, len - offset, out, outOff + offset);
+        }
+    }
+
+    /**
+     * Проверява дали [off, off + len) е валиден диапазон за входа и изхода
+     */
+    static void checkBounds(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        if (len < 0 || inOff < 0 || outOff < 0
+                || inOff > in.length - len || outOff > out.length - len) {
+            throw new IllegalArgumentException("Невалиден offset или дължина на буфера");
+        }
     }
 
     /**
@@ -233,6 +694,97 @@ public class ChaCha20 {
      */
     public void resetCounter() {
         this.counter = 0;
+        this.keystreamPos = 64;
+    }
+
+    /**
+     * Започва ново съобщение със същия ключ и нов nonce, без заделяне на памет
+     * 
+     * Думите на nonce-а се презаписват на място (3 записа), ключът остава.
+     * Подходящо за много кратки съобщения под един ключ - вместо нов обект
+     * за всяко съобщение. Използва се и от AEAD конструкциите.
+     * 
+     * @param nonce   12-байтов (96-битов) nonce
+     * @param counter начален counter (позиция 0 при seek)
+     * @throws IllegalArgumentException при невалиден размер на nonce
+     */
+    public void reinit(byte[] nonce, int counter) {
+        if (nonce.length != 12) {
+            throw new IllegalArgumentException("Nonce трябва да е точно 12 байта (96 бита)");
+        }
+
+        reinit(bytesToInt(nonce, 0), bytesToInt(nonce, 4), bytesToInt(nonce, 8), counter);
+    }
+
+    /**
+     * Ново съобщение със същия ключ: сменя nonce-а и counter-а на място
+     * 
+     * Не заделя памет - използва се от XChaCha20 за 24-байтовия nonce.
+     * 
+     * @param n0      първа дума на 96-битовия nonce
+     * @param n1      втора дума на 96-битовия nonce
+     * @param n2      трета дума на 96-битовия nonce
+     * @param counter начален counter
+     */
+    void reinit(int n0, int n1, int n2, int counter) {
+        this.nonce[0] = n0;
+        this.nonce[1] = n1;
+        this.nonce[2] = n2;
+        this.counter = counter;
+        this.initialCounter = counter;
+        this.keystreamPos = 64;
+    }
+
+    /**
+     * Сменя ключа и nonce-а на място, без заделяне на памет (counter = 0)
+     * 
+     * Думите на ключа и nonce-а се презаписват в съществуващите масиви;
+     * броят рундове се запазва. Резултатът е като от нов
+     * ChaCha20(key, nonce, 0, getRounds()).
+     * 
+     * @param key   32-байтов (256-битов) ключ
+     * @param nonce 12-байтов (96-битов) nonce
+     * @throws IllegalArgumentException при невалидни размери
+     */
+    public void rekey(byte[] key, byte[] nonce) {
+        if (key.length != 32) {
+            throw new IllegalArgumentException("Ключът трябва да е точно 32 байта (256 бита)");
+        }
+
+        reinit(nonce, 0);
+        for (int i = 0; i < 8; i++) {
+            this.key[i] = bytesToInt(key, i * 4);
+        }
+    }
+
+    /**
+     * Премества keystream-а директно на произволна байтова позиция
+     * 
+     * Counter mode позволява всеки блок да се изчисли независимо, така че
+     * seek е O(1): изчислява се само блокът, в който попада позицията
+     * (ако тя не е в началото на блок).
+     * Позицията е относителна спрямо началния counter от конструктора,
+     * т.е. seek(0) връща в началото на съобщението.
+     * Максимална позиция: 2^32 блока × 64 байта = 256 GB.
+     * 
+     * @param byteOffset позиция в keystream-а (в байтове)
+     * @throws IllegalArgumentException при невалидна позиция
+     */
+    public void seek(long byteOffset) {
+        if (byteOffset < 0 || (byteOffset >>> 6) > 0xFFFFFFFFL) {
+            throw new IllegalArgumentException("Позицията трябва да е между 0 и 256 GB (32-битов counter)");
+        }
+
+        counter = initialCounter + (int) (byteOffset >>> 6);
+        keystreamPos = 64;
+
+        // Позиция в средата на блок - генерира се блокът и се пропускат байтовете преди нея
+        int blockOffset = (int) (byteOffset & 63);
+        if (blockOffset != 0) {
+            chachaBlock(ZERO_BLOCK, 0, keystream, 0);
+            counter++;
+            keystreamPos = blockOffset;
+        }
     }
 
     /**
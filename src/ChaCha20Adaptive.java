@@ -0,0 +1,312 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * ChaCha20 с автоматичен избор на имплементация според размера на данните
+ * 
+ * Всяко извикване на crypt се насочва по дължината си:
+ * - len < vectorThreshold                      - скаларен път (най-ниска латентност)
+ * - vectorThreshold <= len < parallelThreshold - векторен път (SIMD lanes)
+ * - len >= parallelThreshold                   - паралелно в ForkJoinPool.commonPool()
+ * 
+ * Праговете се калибрират веднъж за процесора (около половин секунда при
+ * първото създаване на обект) и се записват във файл, така че следващите
+ * стартирания ги прочитат направо. Файлът е ~/.chacha20-dispatch.properties
+ * (сменя се с -Dchacha20.dispatch.file=...) и се пренебрегва, ако е записан
+ * на друг процесор, брой нишки или версия на JVM.
+ * 
+ * Изходът е побитово идентичен с ChaCha20 при всяко разделяне на данните
+ * на извиквания - трите пътя споделят counter-а и остатъка от keystream.
+ * 
+ * Изисква модула jdk.incubator.vector (като ChaCha20Vector).
+ * 
+ * @author Курсова работа по АSК
+ * @version 1.0
+ */
+public class ChaCha20Adaptive extends ChaCha20Vector {
+
+    // Файл с кешираните прагове
+    private static final Path CACHE_FILE = Paths.get(System.getProperty("chacha20.dispatch.file",
+            System.getProperty("user.home") + "/.chacha20-dispatch.properties"));
+
+    // Най-малкият размер, при който паралелният crypt реално разделя данните
+    private static final int PARALLEL_MIN_LENGTH = 2 * PARALLEL_MIN_SEGMENT + 64;
+
+    // Калибриране: загряване на JIT, брой измервания и обем данни за едно измерване
+    private static final long WARMUP_NANOS = 500_000_000L;
+    private static final int SAMPLES = 7;
+    private static final int SAMPLE_BYTES = 256 * 1024;
+
+    // Паралелният път трябва да е поне с 10% по-бърз, за да се използва
+    private static final double PARALLEL_GAIN = 0.9;
+
+    // Калибрираните прагове (null = още не са заредени)
+    private static volatile Thresholds thresholds;
+
+    // Праговете, с които работи този обект
+    private final int vectorThreshold;
+    private final int parallelThreshold;
+
+    /**
+     * Конструктор на ChaCha20Adaptive
+     * Първият създаден обект зарежда или калибрира праговете.
+     * 
+     * @param key     32-байтов (256-битов) ключ
+     * @param nonce   12-байтов (96-битов) nonce
+     * @param counter начален counter (обикновено 0 или 1)
+     * @throws IllegalArgumentException при невалидни размери
+     */
+    public ChaCha20Adaptive(byte[] key, byte[] nonce, int counter) {
+        this(key, nonce, counter, 20);
+    }
+
+    /**
+     * Конструктор с избран брой рундове (ChaCha8, ChaCha12 или ChaCha20)
+     * 
+     * @param rounds брой рундове: 8, 12 или 20
+     * @throws IllegalArgumentException при невалидни размери или брой рундове
+     */
+    public ChaCha20Adaptive(byte[] key, byte[] nonce, int counter, int rounds) {
+        super(key, nonce, counter, rounds);
+        Thresholds t = thresholds();
+        this.vectorThreshold = t.vector;
+        this.parallelThreshold = t.parallel;
+    }
+
+    /**
+     * Конструктор с counter = 0
+     */
+    public ChaCha20Adaptive(byte[] key, byte[] nonce) {
+        this(key, nonce, 0);
+    }
+
+    /**
+     * Криптира/декриптира len байта, като избира пътя според len
+     * 
+     * @param in     входни данни
+     * @param inOff  начална позиция във входа
+     * @param len    брой байтове за обработка
+     * @param out    изходен буфер
+     * @param outOff начална позиция в изхода
+     * @throws IllegalArgumentException при невалидни offset/дължина
+     */
+    @Override
+    public void crypt(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        checkBounds(in, inOff, len, out, outOff);
+
+        if (len < vectorThreshold) {
+            cryptScalar(in, inOff, len, out, outOff);
+        } else if (len >= parallelThreshold) {
+            // Сегментите (copyAt) са ChaCha20Vector, а остатъците под 64 байта минават скаларно
+            crypt(in, inOff, len, out, outOff, ForkJoinPool.commonPool());
+        } else {
+            super.crypt(in, inOff, len, out, outOff);
+        }
+    }
+
+    /**
+     * Минимален размер на извикване за векторния път
+     * (Integer.MAX_VALUE, ако векторният път не е по-бърз)
+     */
+    public static int vectorThreshold() {
+        return thresholds().vector;
+    }
+
+    /**
+     * Минимален размер на извикване за паралелния път
+     * (Integer.MAX_VALUE при една нишка или ако паралелизмът не печели)
+     */
+    public static int parallelThreshold() {
+        return thresholds().parallel;
+    }
+
+    /**
+     * Калибрира праговете наново и презаписва файла
+     * Вече създадените обекти запазват старите прагове.
+     */
+    public static synchronized void recalibrate() {
+        Thresholds t = calibrate();
+        save(t);
+        thresholds = t;
+    }
+
+    /**
+     * Праг за векторния и за паралелния път
+     */
+    private static final class Thresholds {
+        final int vector;
+        final int parallel;
+
+        Thresholds(int vector, int parallel) {
+            this.vector = vector;
+            this.parallel = parallel;
+        }
+    }
+
+    /**
+     * Връща праговете - от паметта, от файла или чрез калибриране
+     */
+    private static Thresholds thresholds() {
+        Thresholds t = thresholds;
+        if (t == null) {
+            synchronized (ChaCha20Adaptive.class) {
+                t = thresholds;
+                if (t == null) {
+                    t = load();
+                    if (t == null) {
+                        t = calibrate();
+                        save(t);
+                    }
+                    thresholds = t;
+                }
+            }
+        }
+        return t;
+    }
+
+    /**
+     * Описание на машината, за която са валидни праговете
+     */
+    private static String fingerprint() {
+        return System.getProperty("os.arch")
+                + "/cpus=" + Runtime.getRuntime().availableProcessors()
+                + "/pool=" + ForkJoinPool.commonPool().getParallelism()
+                + "/lanes=" + lanes()
+                + "/jvm=" + System.getProperty("java.vm.version");
+    }
+
+    /**
+     * Чете праговете от файла (null, ако липсва, е повреден или е за друга машина)
+     */
+    private static Thresholds load() {
+        if (!Files.isRegularFile(CACHE_FILE)) {
+            return null;
+        }
+
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(CACHE_FILE)) {
+            props.load(in);
+            if (!fingerprint().equals(props.getProperty("fingerprint"))) {
+                return null;
+            }
+            int vector = Integer.parseInt(props.getProperty("vectorThreshold"));
+            int parallel = Integer.parseInt(props.getProperty("parallelThreshold"));
+            if (vector < 0 || parallel < PARALLEL_MIN_LENGTH) {
+                return null;
+            }
+            return new Thresholds(vector, parallel);
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Записва праговете във файла
+     * Грешка при запис не е фатална - калибрирането се повтаря при следващо стартиране.
+     */
+    private static void save(Thresholds t) {
+        Properties props = new Properties();
+        props.setProperty("fingerprint", fingerprint());
+        props.setProperty("vectorThreshold", Integer.toString(t.vector));
+        props.setProperty("parallelThreshold", Integer.toString(t.parallel));
+
+        try (OutputStream out = Files.newOutputStream(CACHE_FILE)) {
+            props.store(out, "ChaCha20Adaptive dispatch thresholds");
+        } catch (IOException e) {
+            // Праговете остават само в паметта
+        }
+    }
+
+    /**
+     * Измерва скаларния, векторния и паралелния път и намира праговете
+     * 
+     * Кандидатите за векторния праг са кратни на един векторен пакет
+     * (под него ChaCha20Vector и без това работи скаларно), а за паралелния -
+     * степени на 2 над PARALLEL_MIN_LENGTH. Прагът е най-малкият кандидат,
+     * от който нагоре по-бързият път печели при всички по-големи размери.
+     */
+    private static Thresholds calibrate() {
+        byte[] key = new byte[32];
+        byte[] nonce = new byte[12];
+        ChaCha20 scalar = new ChaCha20(key, nonce);
+        ChaCha20Vector vector = new ChaCha20Vector(key, nonce);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        int[] vectorSizes = new int[6];
+        for (int i = 0; i < vectorSizes.length; i++) {
+            vectorSizes[i] = lanes() * 64 << i;
+        }
+        int[] parallelSizes = new int[6];
+        for (int i = 0; i < parallelSizes.length; i++) {
+            parallelSizes[i] = PARALLEL_MIN_LENGTH << i;
+        }
+        boolean parallel = pool.getParallelism() > 1;
+        byte[] buffer = new byte[parallel ? parallelSizes[parallelSizes.length - 1] : vectorSizes[vectorSizes.length - 1]];
+
+        // Загряване на JIT (векторният път се компилира най-бавно)
+        long end = System.nanoTime() + WARMUP_NANOS;
+        while (System.nanoTime() < end) {
+            for (int size : vectorSizes) {
+                scalar.crypt(buffer, 0, size, buffer, 0);
+                vector.crypt(buffer, 0, size, buffer, 0);
+            }
+        }
+
+        // Векторен праг - от най-големия размер надолу, докато векторът не губи
+        int vectorThreshold = Integer.MAX_VALUE;
+        for (int i = vectorSizes.length - 1; i >= 0; i--) {
+            int size = vectorSizes[i];
+            if (measure(vector, null, buffer, size) > measure(scalar, null, buffer, size)) {
+                break;
+            }
+            vectorThreshold = size;
+        }
+
+        // Паралелен праг - само ако има повече от една нишка
+        int parallelThreshold = Integer.MAX_VALUE;
+        if (parallel) {
+            ChaCha20 sequential = vectorThreshold == Integer.MAX_VALUE ? scalar : vector;
+            sequential.crypt(buffer, 0, buffer.length, buffer, 0, pool);
+
+            for (int i = parallelSizes.length - 1; i >= 0; i--) {
+                int size = parallelSizes[i];
+                long parallelTime = measure(sequential, pool, buffer, size);
+                if (parallelTime > PARALLEL_GAIN * measure(sequential, null, buffer, size)) {
+                    break;
+                }
+                parallelThreshold = size;
+            }
+        }
+
+        return new Thresholds(vectorThreshold, parallelThreshold);
+    }
+
+    /**
+     * Най-доброто време за едно извикване на crypt с len байта (в ns)
+     * 
+     * @param pool ForkJoinPool за паралелния път или null за последователния
+     */
+    private static long measure(ChaCha20 cipher, ForkJoinPool pool, byte[] buffer, int len) {
+        int calls = Math.max(1, SAMPLE_BYTES / len);
+        long best = Long.MAX_VALUE;
+
+        for (int s = 0; s < SAMPLES; s++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < calls; i++) {
+                if (pool == null) {
+                    cipher.crypt(buffer, 0, len, buffer, 0);
+                } else {
+                    cipher.crypt(buffer, 0, len, buffer, 0, pool);
+                }
+            }
+            best = Math.min(best, (System.nanoTime() - start) / calls);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,236 @@
+import java.util.Arrays;
+
+/**
+ * ChaCha20-Poly1305 AEAD (Authenticated Encryption with Associated Data)
+ * 
+ * Комбинира ChaCha20 (поверителност) с Poly1305 (цялост и автентичност).
+ * За всяко съобщение:
+ * 1. Еднократният Poly1305 ключ са първите 32 байта от keystream блок 0
+ * 2. Данните се криптират с ChaCha20 от блок 1 нататък
+ * 3. Tag = Poly1305(AAD || pad || ciphertext || pad || len(AAD) || len(ciphertext))
+ * 
+ * Спецификация: RFC 8439, раздел 2.8
+ * 
+ * Криптирането и MAC-ът се изпълняват в едно минаване: данните се
+ * обработват на сегменти от SEGMENT_SIZE байта и всеки сегмент минава през
+ * Poly1305 веднага след ChaCha20, докато е още в L1 кеша. Шифърът,
+ * MAC-ът и помощните буфери се създават веднъж в конструктора - seal и
+ * open не заделят памет за съобщение.
+ * 
+ * Използва ChaCha20Vector, когато модулът jdk.incubator.vector е зареден,
+ * а без него - скаларния ChaCha20 (резултатът е един и същ).
+ * Обектът НЕ е thread-safe - използвайте по един за всяка нишка.
+ * 
+ * @author Курсова работа по АSК
+ * @version 1.0
+ */
+public class ChaCha20Poly1305 {
+
+    public static final int KEY_LENGTH = 32;
+    public static final int NONCE_LENGTH = 12;
+    public static final int TAG_LENGTH = Poly1305.TAG_LENGTH;
+
+    // Размер на сегмента за едно минаване (кратен на 64, побира се в L1 кеша)
+    static final int SEGMENT_SIZE = 4096;
+
+    // Нули за keystream блок 0 и за допълване на AAD/ciphertext до 16 байта
+    private static final byte[] ZEROS = new byte[64];
+
+    // true, ако jdk.incubator.vector липсва (ChaCha20Vector не може да се зареди)
+    private static volatile boolean vectorMissing;
+
+    private final ChaCha20 chacha;
+    private final Poly1305 poly = new Poly1305();
+
+    // Keystream блок 0 (първите 32 байта са Poly1305 ключът)
+    private final byte[] block0 = new byte[64];
+
+    // len(AAD) || len(ciphertext) като 64-битови little-endian числа
+    private final byte[] lengths = new byte[16];
+
+    // Изчисленият tag при open (сравнява се с получения)
+    private final byte[] expectedTag = new byte[TAG_LENGTH];
+
+    /**
+     * Конструктор на ChaCha20-Poly1305
+     * 
+     * @param key 32-байтов (256-битов) ключ
+     * @throws IllegalArgumentException при невалиден размер
+     */
+    public ChaCha20Poly1305(byte[] key) {
+        this.chacha = newChaCha20(key);
+    }
+
+    /**
+     * Векторен ChaCha20, ако Vector API е наличен, иначе скаларен
+     */
+    private static ChaCha20 newChaCha20(byte[] key) {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        if (!vectorMissing) {
+            try {
+                return new ChaCha20Vector(key, nonce, 0);
+            } catch (LinkageError e) {
+                // JVM без --add-modules jdk.incubator.vector
+                vectorMissing = true;
+            }
+        }
+        return new ChaCha20(key, nonce, 0);
+    }
+
+    /**
+     * Криптира и автентикира plaintext
+     * 
+     * @param nonce     12-байтов nonce (уникален за всяко съобщение с този ключ!)
+     * @param aad       допълнителни автентикирани (некриптирани) данни или null
+     * @param plaintext данните за криптиране
+     * @return ciphertext || 16-байтов tag
+     */
+    public byte[] seal(byte[] nonce, byte[] aad, byte[] plaintext) {
+        byte[] result = new byte[plaintext.length + TAG_LENGTH];
+        seal(nonce, aad, plaintext, 0, plaintext.length, result, 0);
+        return result;
+    }
+
+    /**
+     * Криптира и автентикира len байта от in в предоставен буфер
+     * 
+     * Записва ciphertext (len байта) и след него 16-байтовия tag.
+     * Поддържа работа на място (in == out и inOff == outOff), ако в out
+     * има 16 байта място след данните.
+     * 
+     * @param nonce  12-байтов nonce (уникален за всяко съобщение с този ключ!)
+     * @param aad    допълнителни автентикирани (некриптирани) данни или null
+     * @param in     plaintext
+     * @param inOff  начална позиция във входа
+     * @param len    дължина на plaintext-а
+     * @param out    изходен буфер (поне len + 16 байта от outOff)
+     * @param outOff начална позиция в изхода
+     * @return брой записани байтове (len + 16)
+     * @throws IllegalArgumentException при невалидни размери, offset или дължина
+     */
+    public int seal(byte[] nonce, byte[] aad, byte[] in, int inOff, int len, byte[] out, int outOff) {
+        ChaCha20.checkBounds(in, inOff, len, out, outOff);
+        if (outOff > out.length - len - TAG_LENGTH) {
+            throw new IllegalArgumentException("Няма място за 16-байтовия tag");
+        }
+
+        start(nonce, aad);
+
+        // Едно минаване: всеки сегмент се криптира и веднага влиза в MAC-а
+        for (int offset = 0; offset < len; offset += SEGMENT_SIZE) {
+            int n = Math.min(SEGMENT_SIZE, len - offset);
+            chacha.crypt(in, inOff + offset, n, out, outOff + offset);
+            poly.update(out, outOff + offset, n);
+        }
+
+        finish(aad, len, out, outOff + len);
+        return len + TAG_LENGTH;
+    }
+
+    /**
+     * Проверява tag-а и декриптира ciphertext || tag
+     * 
+     * @param nonce      nonce-ът, използван при seal
+     * @param aad        същите допълнителни данни като при seal или null
+     * @param ciphertext ciphertext || 16-байтов tag
+     * @return декриптираният plaintext
+     * @throws IllegalArgumentException ако tag-ът не съвпада (данните са променени)
+     */
+    public byte[] open(byte[] nonce, byte[] aad, byte[] ciphertext) {
+        if (ciphertext.length < TAG_LENGTH) {
+            throw new IllegalArgumentException("Ciphertext е по-къс от 16-байтовия tag");
+        }
+
+        byte[] result = new byte[ciphertext.length - TAG_LENGTH];
+        open(nonce, aad, ciphertext, 0, ciphertext.length, result, 0);
+        return result;
+    }
+
+    /**
+     * Проверява tag-а и декриптира len байта (ciphertext || tag) в предоставен буфер
+     * 
+     * MAC-ът и декриптирането също минават заедно, сегмент по сегмент
+     * (MAC-ът винаги преди декриптирането, така че работа на място е
+     * възможна). При грешен tag записаният plaintext се нулира и се хвърля
+     * изключение - непроверени данни никога не остават в out.
+     * 
+     * @param nonce  nonce-ът, използван при seal
+     * @param aad    същите допълнителни данни като при seal или null
+     * @param in     ciphertext || tag
+     * @param inOff  начална позиция във входа
+     * @param len    дължина на ciphertext-а заедно с tag-а
+     * @param out    изходен буфер (поне len - 16 байта от outOff)
+     * @param outOff начална позиция в изхода
+     * @return дължина на plaintext-а (len - 16)
+     * @throws IllegalArgumentException ако tag-ът не съвпада или при невалидни размери
+     */
+    public int open(byte[] nonce, byte[] aad, byte[] in, int inOff, int len, byte[] out, int outOff) {
+        if (len < TAG_LENGTH) {
+            throw new IllegalArgumentException("Ciphertext е по-къс от 16-байтовия tag");
+        }
+        if (inOff < 0 || inOff > in.length - len) {
+            throw new IllegalArgumentException("Невалиден offset или дължина на буфера");
+        }
+        int ciphertextLength = len - TAG_LENGTH;
+        ChaCha20.checkBounds(in, inOff, ciphertextLength, out, outOff);
+
+        start(nonce, aad);
+
+        for (int offset = 0; offset < ciphertextLength; offset += SEGMENT_SIZE) {
+            int n = Math.min(SEGMENT_SIZE, ciphertextLength - offset);
+            poly.update(in, inOff + offset, n);
+            chacha.crypt(in, inOff + offset, n, out, outOff + offset);
+        }
+
+        finish(aad, ciphertextLength, expectedTag, 0);
+        if (!Poly1305.tagsEqual(expectedTag, 0, in, inOff + ciphertextLength)) {
+            Arrays.fill(out, outOff, outOff + ciphertextLength, (byte) 0);
+            throw new IllegalArgumentException("Невалиден authentication tag - данните са променени");
+        }
+        return ciphertextLength;
+    }
+
+    /**
+     * Ново съобщение: nonce, Poly1305 ключ от блок 0 и MAC на AAD
+     */
+    private void start(byte[] nonce, byte[] aad) {
+        chacha.reinit(nonce, 0);
+        chacha.crypt(ZEROS, 0, 64, block0, 0); // след блок 0 counter-ът е 1
+        poly.init(block0, 0);
+
+        if (aad != null) {
+            poly.update(aad, 0, aad.length);
+            pad16(aad.length);
+        }
+    }
+
+    /**
+     * Допълване до 16 байта, дължините и tag-ът
+     */
+    private void finish(byte[] aad, long ciphertextLength, byte[] tag, int tagOff) {
+        pad16(ciphertextLength);
+        longToBytes(aad == null ? 0 : aad.length, lengths, 0);
+        longToBytes(ciphertextLength, lengths, 8);
+        poly.update(lengths, 0, 16);
+        poly.doFinal(tag, tagOff);
+    }
+
+    /**
+     * Допълва MAC входа с нули до кратно на 16 байта
+     */
+    private void pad16(long length) {
+        int remainder = (int) (length & 15);
+        if (remainder != 0) {
+            poly.update(ZEROS, 0, 16 - remainder);
+        }
+    }
+
+    /**
+     * Записва 64-битов long като 8 байта (little-endian)
+     */
+    private static void longToBytes(long value, byte[] out, int offset) {
+        for (int k = 0; k < 8; k++) {
+            out[offset + k] = (byte) (value >>> (8 * k));
+        }
+    }
+}
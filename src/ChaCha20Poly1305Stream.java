@@ -0,0 +1,440 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Поточно автентикирано криптиране на парчета (chunked streaming AEAD)
+ * 
+ * Едно AEAD съобщение върху целия файл може да се провери едва след като
+ * е прочетен целият файл. Тук потокът се разделя на парчета с фиксиран
+ * размер и всяко парче се криптира с ChaCha20-Poly1305 и собствен tag:
+ * 
+ * header (24 байта) || парче 0 || парче 1 || ... || последно парче
+ * парче i = ciphertext (chunkSize байта, последното 0..chunkSize) || tag
+ * 
+ * - Подключ = HChaCha20(ключ, header[0..15]) - нов за всеки поток, така
+ * че произволният header е достатъчен за уникалност
+ * - Nonce на парче i = header[16..23] || i (32-bit little-endian), като
+ * най-старшият бит отбелязва последното парче (край на потока)
+ * - Пренареждане, премахване или дублиране на парчета променя nonce-а и
+ * tag-ът не съвпада; отрязан поток няма парче, маркирано като последно
+ * 
+ * Nonce-ът се извежда от номера на парчето (а не от tag-а на предишното),
+ * затова всяко парче може да се провери и декриптира независимо -
+ * паралелно или на произволна позиция. Поточната обработка използва
+ * постоянна памет (три буфера с размер на едно парче), независимо от
+ * размера на файла.
+ * 
+ * При поточно декриптиране проверените парчета се записват веднага - ако
+ * decrypt хвърли изключение, вече записаният изход трябва да се изхвърли.
+ * 
+ * Използва ChaCha20Poly1305 (векторен, когато jdk.incubator.vector е наличен).
+ * Обектът НЕ е thread-safe - паралелните методи създават собствени
+ * копия за всяка нишка.
+ * 
+ * @author Курсова работа по АSК
+ * @version 1.0
+ */
+public class ChaCha20Poly1305Stream {
+
+    public static final int HEADER_LENGTH = 24;
+    public static final int TAG_LENGTH = ChaCha20Poly1305.TAG_LENGTH;
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    // Най-старшият бит на номера в nonce-а отбелязва последното парче (до 2^31 парчета)
+    private static final int LAST_CHUNK = 0x80000000;
+
+    private final byte[] subkey; // 32-байтов подключ за потока
+    private final byte[] header;
+    private final int chunkSize;
+
+    private final ChaCha20Poly1305 aead;
+
+    // Nonce на текущото парче (първите 8 байта са от header-а)
+    private final byte[] nonce = new byte[ChaCha20Poly1305.NONCE_LENGTH];
+
+    /**
+     * Конструктор за поток с даден header
+     * 
+     * @param key       32-байтов (256-битов) ключ
+     * @param header    24-байтов header на потока (от generateHeader при криптиране)
+     * @param chunkSize размер на plaintext парчетата в байтове
+     * @throws IllegalArgumentException при невалидни размери
+     */
+    public ChaCha20Poly1305Stream(byte[] key, byte[] header, int chunkSize) {
+        if (key.length != ChaCha20Poly1305.KEY_LENGTH) {
+            throw new IllegalArgumentException("Ключът трябва да е точно 32 байта (256 бита)");
+        }
+        if (header.length != HEADER_LENGTH) {
+            throw new IllegalArgumentException("Header-ът трябва да е точно 24 байта");
+        }
+        if (chunkSize <= 0 || chunkSize > (1 << 30)) {
+            throw new IllegalArgumentException("Размерът на парчето трябва да е между 1 байт и 1 GB");
+        }
+
+        int[] words = new int[8];
+        ChaCha20.hChaCha20(ChaCha20.bytesToInts(key),
+                ChaCha20.bytesToInt(header, 0), ChaCha20.bytesToInt(header, 4),
+                ChaCha20.bytesToInt(header, 8), ChaCha20.bytesToInt(header, 12), words);
+
+        this.subkey = new byte[32];
+        for (int i = 0; i < 8; i++) {
+            for (int k = 0; k < 4; k++) {
+                subkey[4 * i + k] = (byte) (words[i] >>> (8 * k));
+            }
+        }
+        this.header = header.clone();
+        this.chunkSize = chunkSize;
+        this.aead = new ChaCha20Poly1305(subkey);
+        System.arraycopy(header, 16, nonce, 0, 8);
+    }
+
+    /**
+     * Конструктор с DEFAULT_CHUNK_SIZE (64 KB)
+     */
+    public ChaCha20Poly1305Stream(byte[] key, byte[] header) {
+        this(key, header, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Копие със същия подключ и header за паралелна обработка
+     */
+    private ChaCha20Poly1305Stream(ChaCha20Poly1305Stream other) {
+        this.subkey = other.subkey;
+        this.header = other.header;
+        this.chunkSize = other.chunkSize;
+        this.aead = new ChaCha20Poly1305(subkey);
+        System.arraycopy(header, 16, nonce, 0, 8);
+    }
+
+    /**
+     * Генерира произволен 24-байтов header за нов поток
+     */
+    public static byte[] generateHeader() {
+        byte[] header = new byte[HEADER_LENGTH];
+        new java.security.SecureRandom().nextBytes(header);
+        return header;
+    }
+
+    /**
+     * Header-ът на потока (записва се преди първото парче)
+     */
+    public byte[] getHeader() {
+        return header.clone();
+    }
+
+    /**
+     * Размер на plaintext парчетата
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Брой парчета за plaintext с дадена дължина (поне 1 - празен поток
+     * също завършва с парче, маркирано като последно)
+     */
+    public static long chunkCount(long plaintextLength, int chunkSize) {
+        return Math.max(1, (plaintextLength + chunkSize - 1) / chunkSize);
+    }
+
+    /**
+     * Дължина на криптираните парчета (без header-а) за plaintext с дадена дължина
+     */
+    public static long encryptedLength(long plaintextLength, int chunkSize) {
+        return plaintextLength + chunkCount(plaintextLength, chunkSize) * TAG_LENGTH;
+    }
+
+    /**
+     * Криптира и автентикира едно парче
+     * 
+     * Всички парчета освен последното трябва да са точно chunkSize байта.
+     * 
+     * @param index  номер на парчето (от 0)
+     * @param last   дали това е последното парче на потока
+     * @param in     plaintext
+     * @param inOff  начална позиция във входа
+     * @param len    дължина на парчето
+     * @param out    изходен буфер (поне len + 16 байта от outOff)
+     * @param outOff начална позиция в изхода
+     * @return брой записани байтове (len + 16)
+     * @throws IllegalArgumentException при невалиден номер, дължина, offset или размер
+     */
+    public int sealChunk(int index, boolean last, byte[] in, int inOff, int len, byte[] out, int outOff) {
+        if (last ? len > chunkSize : len != chunkSize) {
+            throw new IllegalArgumentException("Само последното парче може да е по-късо от chunkSize");
+        }
+        return aead.seal(chunkNonce(index, last), null, in, inOff, len, out, outOff);
+    }
+
+    /**
+     * Проверява и декриптира едно парче (ciphertext || tag)
+     * 
+     * Парчетата са независими - всяко може да се провери на произволна
+     * позиция, стига да са известни номерът му и дали е последното.
+     * При грешен tag изходът се нулира и се хвърля изключение.
+     * 
+     * @param index  номер на парчето (от 0)
+     * @param last   дали това е последното парче на потока
+     * @param in     криптирано парче
+     * @param inOff  начална позиция във входа
+     * @param len    дължина на парчето заедно с tag-а
+     * @param out    изходен буфер (поне len - 16 байта от outOff)
+     * @param outOff начална позиция в изхода
+     * @return дължина на plaintext-а (len - 16)
+     * @throws IllegalArgumentException ако tag-ът не съвпада (парчето е променено,
+     *                                  преместено или потокът е отрязан)
+     */
+    public int openChunk(int index, boolean last, byte[] in, int inOff, int len, byte[] out, int outOff) {
+        if (last ? len > chunkSize + TAG_LENGTH : len != chunkSize + TAG_LENGTH) {
+            throw new IllegalArgumentException("Само последното парче може да е по-късо от chunkSize");
+        }
+        return aead.open(chunkNonce(index, last), null, in, inOff, len, out, outOff);
+    }
+
+    /**
+     * Nonce на парче: header[16..23] || номер (little-endian), старши бит = последно парче
+     */
+    private byte[] chunkNonce(int index, boolean last) {
+        if (index < 0) {
+            throw new IllegalArgumentException("Номерът на парчето е извън допустимия диапазон");
+        }
+
+        int word = last ? index | LAST_CHUNK : index;
+        nonce[8] = (byte) word;
+        nonce[9] = (byte) (word >>> 8);
+        nonce[10] = (byte) (word >>> 16);
+        nonce[11] = (byte) (word >>> 24);
+        return nonce;
+    }
+
+    /**
+     * Криптира целия вход като поток от парчета в буфер
+     * 
+     * Парчетата се разпределят между нишките на pool (всяка с отделно
+     * AEAD копие). Резултатът е байт по байт идентичен с поточното
+     * криптиране без header-а.
+     * 
+     * @param in     plaintext
+     * @param inOff  начална позиция във входа
+     * @param len    дължина на plaintext-а
+     * @param out    изходен буфер (поне encryptedLength(len, chunkSize) байта от outOff)
+     * @param outOff начална позиция в изхода
+     * @param pool   ForkJoinPool за паралелната обработка
+     * @return брой записани байтове
+     * @throws IllegalArgumentException при невалидни offset/дължина
+     */
+    public int encrypt(byte[] in, int inOff, int len, byte[] out, int outOff, ForkJoinPool pool) {
+        long outLength = encryptedLength(len, chunkSize);
+        if (len < 0 || inOff < 0 || inOff > in.length - len
+                || outOff < 0 || outOff > out.length - outLength) {
+            throw new IllegalArgumentException("Невалиден offset или дължина на буфера");
+        }
+
+        int chunks = (int) chunkCount(len, chunkSize);
+        parallel(pool, chunks, (stream, index) -> {
+            int plainOff = index * chunkSize;
+            stream.sealChunk(index, index == chunks - 1, in, inOff + plainOff,
+                    Math.min(chunkSize, len - plainOff), out, outOff + plainOff + index * TAG_LENGTH);
+        });
+        return (int) outLength;
+    }
+
+    /**
+     * Проверява и декриптира поток от парчета в буфер, паралелно
+     * 
+     * Всяко парче се проверява независимо от останалите. Ако някое парче
+     * е невалидно, целият изход се нулира и се хвърля изключение.
+     * 
+     * @param in     криптираните парчета (без header-а)
+     * @param inOff  начална позиция във входа
+     * @param len    дължина на криптираните парчета
+     * @param out    изходен буфер
+     * @param outOff начална позиция в изхода
+     * @param pool   ForkJoinPool за паралелната обработка
+     * @return дължина на plaintext-а
+     * @throws IllegalArgumentException ако някой tag не съвпада или при невалидни размери
+     */
+    public int decrypt(byte[] in, int inOff, int len, byte[] out, int outOff, ForkJoinPool pool) {
+        int encryptedChunk = chunkSize + TAG_LENGTH;
+        int chunks = Math.max(1, (int) (((long) len + encryptedChunk - 1) / encryptedChunk));
+        int plainLength = len - chunks * TAG_LENGTH;
+        if (plainLength < 0 || len - (long) (chunks - 1) * encryptedChunk < TAG_LENGTH) {
+            throw new IllegalArgumentException("Невалидна дължина на криптирания поток");
+        }
+        if (inOff < 0 || inOff > in.length - len || outOff < 0 || outOff > out.length - plainLength) {
+            throw new IllegalArgumentException("Невалиден offset или дължина на буфера");
+        }
+
+        try {
+            parallel(pool, chunks, (stream, index) -> {
+                int encOff = index * encryptedChunk;
+                stream.openChunk(index, index == chunks - 1, in, inOff + encOff,
+                        Math.min(encryptedChunk, len - encOff), out, outOff + index * chunkSize);
+            });
+        } catch (IllegalArgumentException e) {
+            Arrays.fill(out, outOff, outOff + plainLength, (byte) 0);
+            throw e;
+        }
+        return plainLength;
+    }
+
+    /**
+     * Операция върху едно парче с даденото AEAD копие
+     */
+    private interface ChunkTask {
+        void run(ChaCha20Poly1305Stream stream, int index);
+    }
+
+    /**
+     * Разделя парчетата на последователни групи - по една за всяка нишка
+     * Хвърля първото изключение, след като всички групи приключат.
+     */
+    private void parallel(ForkJoinPool pool, int chunks, ChunkTask task) {
+        int segments = Math.min(pool.getParallelism(), chunks);
+        if (segments <= 1) {
+            for (int index = 0; index < chunks; index++) {
+                task.run(this, index);
+            }
+            return;
+        }
+
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[segments];
+        int first = 0;
+        for (int s = 0; s < segments; s++) {
+            int from = first;
+            int to = from + chunks / segments + (s < chunks % segments ? 1 : 0);
+            tasks[s] = pool.submit(() -> {
+                ChaCha20Poly1305Stream worker = new ChaCha20Poly1305Stream(this);
+                for (int index = from; index < to; index++) {
+                    task.run(worker, index);
+                }
+            });
+            first = to;
+        }
+
+        RuntimeException failure = null;
+        for (ForkJoinTask<?> t : tasks) {
+            try {
+                t.join();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Криптира входен поток с постоянна памет: header, след това парчетата
+     * 
+     * Чете едно парче напред, за да маркира последното парче - включително
+     * когато дължината е точно кратна на chunkSize.
+     * 
+     * @param key       32-байтов (256-битов) ключ
+     * @param chunkSize размер на plaintext парчетата
+     * @param in        входен поток (plaintext)
+     * @param out       изходен поток (header || парчета)
+     * @return брой прочетени plaintext байтове
+     * @throws IOException при грешка при четене/запис
+     */
+    public static long encrypt(byte[] key, int chunkSize, InputStream in, OutputStream out) throws IOException {
+        ChaCha20Poly1305Stream stream = new ChaCha20Poly1305Stream(key, generateHeader(), chunkSize);
+        out.write(stream.header);
+
+        byte[] current = new byte[chunkSize];
+        byte[] next = new byte[chunkSize];
+        byte[] sealed = new byte[chunkSize + TAG_LENGTH];
+        long total = 0;
+
+        int n = readFully(in, current);
+        for (int index = 0;; index++) {
+            int m = n == chunkSize ? readFully(in, next) : 0;
+            boolean last = m == 0;
+
+            out.write(sealed, 0, stream.sealChunk(index, last, current, 0, n, sealed, 0));
+            total += n;
+            if (last) {
+                return total;
+            }
+
+            byte[] swap = current;
+            current = next;
+            next = swap;
+            n = m;
+        }
+    }
+
+    /**
+     * Проверява и декриптира входен поток с постоянна памет
+     * 
+     * Всяко парче се записва в out веднага след като tag-ът му е проверен.
+     * Отрязан, разместен или удължен поток се открива при последното
+     * прочетено парче.
+     * 
+     * @param key       32-байтов (256-битов) ключ
+     * @param chunkSize размер на plaintext парчетата (същият като при криптиране)
+     * @param in        входен поток (header || парчета)
+     * @param out       изходен поток (plaintext)
+     * @return брой записани plaintext байтове
+     * @throws IOException              при грешка при четене/запис
+     * @throws IllegalArgumentException ако потокът е невалиден или променен - вече
+     *                                  записаният изход трябва да се изхвърли
+     */
+    public static long decrypt(byte[] key, int chunkSize, InputStream in, OutputStream out) throws IOException {
+        byte[] header = new byte[HEADER_LENGTH];
+        if (readFully(in, header) != HEADER_LENGTH) {
+            throw new IllegalArgumentException("Потокът е по-къс от 24-байтовия header");
+        }
+        ChaCha20Poly1305Stream stream = new ChaCha20Poly1305Stream(key, header, chunkSize);
+
+        byte[] current = new byte[chunkSize + TAG_LENGTH];
+        byte[] next = new byte[chunkSize + TAG_LENGTH];
+        byte[] plain = new byte[chunkSize];
+        long total = 0;
+
+        int n = readFully(in, current);
+        for (int index = 0;; index++) {
+            if (n < TAG_LENGTH) {
+                throw new IllegalArgumentException("Потокът е отрязан - липсва последното парче");
+            }
+            int m = n == current.length ? readFully(in, next) : 0;
+            boolean last = m == 0;
+
+            int p = stream.openChunk(index, last, current, 0, n, plain, 0);
+            out.write(plain, 0, p);
+            total += p;
+            if (last) {
+                return total;
+            }
+
+            byte[] swap = current;
+            current = next;
+            next = swap;
+            n = m;
+        }
+    }
+
+    /**
+     * Чете до запълване на буфера или до края на потока
+     * 
+     * @return брой прочетени байтове (по-малко от buffer.length само в края)
+     */
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int n = 0;
+        while (n < buffer.length) {
+            int r = in.read(buffer, n, buffer.length - n);
+            if (r < 0) {
+                break;
+            }
+            n += r;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,232 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+import static jdk.incubator.vector.VectorOperators.ROL;
+import static jdk.incubator.vector.VectorOperators.XOR;
+
+/**
+ * ChaCha20 - многоблокова SIMD имплементация (Java Vector API)
+ * 
+ * Изчислява няколко последователни ChaCha20 блока едновременно, като всеки
+ * SIMD lane съдържа състоянието на отделен блок (counter, counter + 1, ...).
+ * Броят на блоковете зависи от процесора:
+ * - 4 блока (128-битови регистри, SSE/NEON)
+ * - 8 блока (256-битови регистри, AVX2)
+ * - 16 блока (512-битови регистри, AVX-512)
+ * 
+ * Изходът е побитово идентичен с ChaCha20 - класът го наследява и използва
+ * скаларната имплементация за остатъци, по-къси от един пакет блокове.
+ * 
+ * Изисква модула jdk.incubator.vector:
+ * javac --add-modules jdk.incubator.vector *.java
+ * java --add-modules jdk.incubator.vector StreamCipherBenchmark
+ * 
+ * @author Курсова работа по АSК
+ * @version 1.0
+ */
+public class ChaCha20Vector extends ChaCha20 {
+
+    // Предпочитаната ширина на вектора за текущия процесор
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    // Брой блокове, обработвани паралелно (по един на lane)
+    private static final int LANES = SPECIES.length();
+
+    // Байтове, обработвани от една векторна итерация
+    private static final int BATCH_SIZE = LANES * 64;
+
+    // Отместване на counter-а за всеки lane: 0, 1, 2, ...
+    private static final IntVector LANE_INDEX = IntVector.zero(SPECIES).addIndex(1);
+
+    // Буфер за изходните думи на всички lanes (преизползва се, без алокации)
+    private final int[] words = new int[16 * LANES];
+
+    /**
+     * Конструктор на ChaCha20Vector
+     * 
+     * @param key     32-байтов (256-битов) ключ
+     * @param nonce   12-байтов (96-битов) nonce
+     * @param counter начален counter (обикновено 0 или 1)
+     * @throws IllegalArgumentException при невалидни размери
+     */
+    public ChaCha20Vector(byte[] key, byte[] nonce, int counter) {
+        super(key, nonce, counter);
+    }
+
+    /**
+     * Конструктор с избран брой рундове (ChaCha8, ChaCha12 или ChaCha20)
+     * 
+     * @param rounds брой рундове: 8, 12 или 20
+     * @throws IllegalArgumentException при невалидни размери или брой рундове
+     */
+    public ChaCha20Vector(byte[] key, byte[] nonce, int counter, int rounds) {
+        super(key, nonce, counter, rounds);
+    }
+
+    /**
+     * Конструктор с counter = 0
+     */
+    public ChaCha20Vector(byte[] key, byte[] nonce) {
+        this(key, nonce, 0);
+    }
+
+    /**
+     * Копие със същия ключ и nonce, започващо от даден counter
+     */
+    private ChaCha20Vector(ChaCha20Vector other, int counter) {
+        super(other, counter);
+    }
+
+    /**
+     * Сегментите при паралелно криптиране също използват векторния път
+     */
+    @Override
+    ChaCha20Vector copyAt(int counter) {
+        return new ChaCha20Vector(this, counter);
+    }
+
+    /**
+     * Брой блокове, които се изчисляват паралелно на текущия процесор
+     */
+    public static int lanes() {
+        return LANES;
+    }
+
+    /**
+     * Многоблокова ChaCha20 функция
+     * Генерира LANES × 64 байта keystream и ги XOR-ва с входните данни
+     * 
+     * Всяка от 16-те думи на състоянието е вектор, чийто lane i съдържа
+     * думата на блок counter + i. Quarter round операциите са същите като
+     * в скаларната версия, но се изпълняват върху всички lanes наведнъж.
+     */
+    private void chachaBlocks(byte[] in, int inOff, byte[] out, int outOff) {
+        // Начално състояние (counter-ът е различен за всеки lane)
+        final IntVector j0 = IntVector.broadcast(SPECIES, CONSTANTS[0]);
+        final IntVector j1 = IntVector.broadcast(SPECIES, CONSTANTS[1]);
+        final IntVector j2 = IntVector.broadcast(SPECIES, CONSTANTS[2]);
+        final IntVector j3 = IntVector.broadcast(SPECIES, CONSTANTS[3]);
+        final IntVector j4 = IntVector.broadcast(SPECIES, key[0]);
+        final IntVector j5 = IntVector.broadcast(SPECIES, key[1]);
+        final IntVector j6 = IntVector.broadcast(SPECIES, key[2]);
+        final IntVector j7 = IntVector.broadcast(SPECIES, key[3]);
+        final IntVector j8 = IntVector.broadcast(SPECIES, key[4]);
+        final IntVector j9 = IntVector.broadcast(SPECIES, key[5]);
+        final IntVector j10 = IntVector.broadcast(SPECIES, key[6]);
+        final IntVector j11 = IntVector.broadcast(SPECIES, key[7]);
+        final IntVector j12 = IntVector.broadcast(SPECIES, counter).add(LANE_INDEX);
+        final IntVector j13 = IntVector.broadcast(SPECIES, nonce[0]);
+        final IntVector j14 = IntVector.broadcast(SPECIES, nonce[1]);
+        final IntVector j15 = IntVector.broadcast(SPECIES, nonce[2]);
+
+        IntVector x0 = j0, x1 = j1, x2 = j2, x3 = j3;
+        IntVector x4 = j4, x5 = j5, x6 = j6, x7 = j7;
+        IntVector x8 = j8, x9 = j9, x10 = j10, x11 = j11;
+        IntVector x12 = j12, x13 = j13, x14 = j14, x15 = j15;
+
+        // 20, 12 или 8 рунда = 10, 6 или 4 double rounds
+        final int doubleRounds = rounds >> 1;
+        for (int i = 0; i < doubleRounds; i++) {
+            // Column rounds
+            x0 = x0.add(x4); x12 = x12.lanewise(XOR, x0).lanewise(ROL, 16);
+            x8 = x8.add(x12); x4 = x4.lanewise(XOR, x8).lanewise(ROL, 12);
+            x0 = x0.add(x4); x12 = x12.lanewise(XOR, x0).lanewise(ROL, 8);
+            x8 = x8.add(x12); x4 = x4.lanewise(XOR, x8).lanewise(ROL, 7);
+            x1 = x1.add(x5); x13 = x13.lanewise(XOR, x1).lanewise(ROL, 16);
+            x9 = x9.add(x13); x5 = x5.lanewise(XOR, x9).lanewise(ROL, 12);
+            x1 = x1.add(x5); x13 = x13.lanewise(XOR, x1).lanewise(ROL, 8);
+            x9 = x9.add(x13); x5 = x5.lanewise(XOR, x9).lanewise(ROL, 7);
+            x2 = x2.add(x6); x14 = x14.lanewise(XOR, x2).lanewise(ROL, 16);
+            x10 = x10.add(x14); x6 = x6.lanewise(XOR, x10).lanewise(ROL, 12);
+            x2 = x2.add(x6); x14 = x14.lanewise(XOR, x2).lanewise(ROL, 8);
+            x10 = x10.add(x14); x6 = x6.lanewise(XOR, x10).lanewise(ROL, 7);
+            x3 = x3.add(x7); x15 = x15.lanewise(XOR, x3).lanewise(ROL, 16);
+            x11 = x11.add(x15); x7 = x7.lanewise(XOR, x11).lanewise(ROL, 12);
+            x3 = x3.add(x7); x15 = x15.lanewise(XOR, x3).lanewise(ROL, 8);
+            x11 = x11.add(x15); x7 = x7.lanewise(XOR, x11).lanewise(ROL, 7);
+
+            // Diagonal rounds
+            x0 = x0.add(x5); x15 = x15.lanewise(XOR, x0).lanewise(ROL, 16);
+            x10 = x10.add(x15); x5 = x5.lanewise(XOR, x10).lanewise(ROL, 12);
+            x0 = x0.add(x5); x15 = x15.lanewise(XOR, x0).lanewise(ROL, 8);
+            x10 = x10.add(x15); x5 = x5.lanewise(XOR, x10).lanewise(ROL, 7);
+            x1 = x1.add(x6); x12 = x12.lanewise(XOR, x1).lanewise(ROL, 16);
+            x11 = x11.add(x12); x6 = x6.lanewise(XOR, x11).lanewise(ROL, 12);
+            x1 = x1.add(x6); x12 = x12.lanewise(XOR, x1).lanewise(ROL, 8);
+            x11 = x11.add(x12); x6 = x6.lanewise(XOR, x11).lanewise(ROL, 7);
+            x2 = x2.add(x7); x13 = x13.lanewise(XOR, x2).lanewise(ROL, 16);
+            x8 = x8.add(x13); x7 = x7.lanewise(XOR, x8).lanewise(ROL, 12);
+            x2 = x2.add(x7); x13 = x13.lanewise(XOR, x2).lanewise(ROL, 8);
+            x8 = x8.add(x13); x7 = x7.lanewise(XOR, x8).lanewise(ROL, 7);
+            x3 = x3.add(x4); x14 = x14.lanewise(XOR, x3).lanewise(ROL, 16);
+            x9 = x9.add(x14); x4 = x4.lanewise(XOR, x9).lanewise(ROL, 12);
+            x3 = x3.add(x4); x14 = x14.lanewise(XOR, x3).lanewise(ROL, 8);
+            x9 = x9.add(x14); x4 = x4.lanewise(XOR, x9).lanewise(ROL, 7);
+        }
+
+        // Добавяне на началното състояние; думата i на блок b е в words[i * LANES + b]
+        x0.add(j0).intoArray(words, 0 * LANES);
+        x1.add(j1).intoArray(words, 1 * LANES);
+        x2.add(j2).intoArray(words, 2 * LANES);
+        x3.add(j3).intoArray(words, 3 * LANES);
+        x4.add(j4).intoArray(words, 4 * LANES);
+        x5.add(j5).intoArray(words, 5 * LANES);
+        x6.add(j6).intoArray(words, 6 * LANES);
+        x7.add(j7).intoArray(words, 7 * LANES);
+        x8.add(j8).intoArray(words, 8 * LANES);
+        x9.add(j9).intoArray(words, 9 * LANES);
+        x10.add(j10).intoArray(words, 10 * LANES);
+        x11.add(j11).intoArray(words, 11 * LANES);
+        x12.add(j12).intoArray(words, 12 * LANES);
+        x13.add(j13).intoArray(words, 13 * LANES);
+        x14.add(j14).intoArray(words, 14 * LANES);
+        x15.add(j15).intoArray(words, 15 * LANES);
+
+        // XOR с данните, блок по блок (по две думи = 8 байта наведнъж)
+        for (int b = 0; b < LANES; b++) {
+            int blockIn = inOff + b * 64;
+            int blockOut = outOff + b * 64;
+            for (int i = 0; i < 16; i += 2) {
+                xorLong(words[i * LANES + b], words[(i + 1) * LANES + b], in, blockIn + i * 4, out, blockOut + i * 4);
+            }
+        }
+    }
+
+    /**
+     * Криптира/декриптира len байта от in в предоставен от извикващия буфер
+     * 
+     * Пакетите от LANES пълни блока минават през векторния път, а остатъкът
+     * от keystream на предишно извикване и краят на данните - през
+     * скаларната имплементация на ChaCha20.
+     * 
+     * @param in     входни данни
+     * @param inOff  начална позиция във входа
+     * @param len    брой байтове за обработка
+     * @param out    изходен буфер
+     * @param outOff начална позиция в изхода
+     * @throws IllegalArgumentException при невалидни offset/дължина
+     */
+    @Override
+    public void crypt(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        checkBounds(in, inOff, len, out, outOff);
+        int offset = 0;
+
+        // Остатък от keystream блока от предишното извикване (скаларно)
+        if (keystreamPos < 64) {
+            offset = Math.min(len, 64 - keystreamPos);
+            super.crypt(in, inOff, offset, out, outOff);
+        }
+
+        // Пакети от LANES блока (векторно)
+        while (len - offset >= BATCH_SIZE) {
+            chachaBlocks(in, inOff + offset, out, outOff + offset);
+            offset += BATCH_SIZE;
+            counter += LANES;
+        }
+
+        // Остатък (скаларно)
+        if (offset < len) {
+            super.crypt(in, inOff + offset, len - offset, out, outOff + offset);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Poly1305 Message Authentication Code
+ * 
+ * Poly1305 е еднократен MAC, разработен от Daniel J. Bernstein. Съобщението
+ * се разделя на 16-байтови блокове, всеки блок се интерпретира като число
+ * (с добавен бит 2^128) и се натрупва в акумулатор:
+ * 
+ * h = (h + блок) × r mod (2^130 - 5)
+ * 
+ * Накрая tag = (h + s) mod 2^128. Ключът (r, s) е 32 байта и трябва да се
+ * използва САМО ЗА ЕДНО съобщение - затова в AEAD конструкциите се извежда
+ * от keystream-а на шифъра за всеки nonce.
+ * 
+ * Спецификация: RFC 8439, раздел 2.5
+ * 
+ * Имплементацията държи акумулатора в 64-битови limb-ове (h0, h1 и малкия
+ * h2 над 2^128), а r в два 64-битови limb-а. Едно умножение на блок е
+ * 4 умножения 64 × 64 → 128 бита чрез Math.unsignedMultiplyHigh вместо 25
+ * умножения при 26-битови limb-ове. Блоковете се четат като два long-а
+ * (little-endian) през VarHandle. Поддържа инкрементални update извиквания
+ * с произволна дължина и не заделя памет след init.
+ * 
+ * @author Курсова работа по АSК
+ * @version 1.0
+ */
+public class Poly1305 {
+
+    public static final int KEY_LENGTH = 32;
+    public static final int TAG_LENGTH = 16;
+
+    // Четене на 8 байта като little-endian long (вместо 8 отделни байта)
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    // Клампнатото r = r0 + r1 × 2^64 и s1 = r1 + r1 / 4 (= 5 × r1 / 4, за редукцията mod 2^130 - 5)
+    private long r0, r1, s1;
+
+    // Акумулатор h = h0 + h1 × 2^64 + h2 × 2^128 (h2 е няколко бита)
+    private long h0, h1, h2;
+
+    // Втората половина на ключа, която се добавя към крайния резултат
+    private long pad0, pad1;
+
+    // Буфер за непълен 16-байтов блок между update извикванията
+    private final byte[] buffer = new byte[16];
+    private int bufferPos;
+
+    /**
+     * Създава MAC без ключ - трябва да се извика init преди update
+     */
+    public Poly1305() {
+    }
+
+    /**
+     * Създава MAC с даден еднократен ключ
+     * 
+     * @param key 32-байтов еднократен ключ (r || s)
+     * @throws IllegalArgumentException при невалиден размер
+     */
+    public Poly1305(byte[] key) {
+        init(key, 0);
+    }
+
+    /**
+     * (Пре)инициализира MAC с нов еднократен ключ, без заделяне на памет
+     * 
+     * @param key    масив, съдържащ 32-байтов ключ (r || s)
+     * @param keyOff начална позиция на ключа в масива
+     * @throws IllegalArgumentException при невалиден offset
+     */
+    public final void init(byte[] key, int keyOff) {
+        if (keyOff < 0 || keyOff > key.length - KEY_LENGTH) {
+            throw new IllegalArgumentException("Ключът трябва да е точно 32 байта (256 бита)");
+        }
+
+        // r &= 0x0ffffffc0ffffffc0ffffffc0fffffff (clamping)
+        r0 = (long) LONG_LE.get(key, keyOff) & 0x0ffffffc0fffffffL;
+        r1 = (long) LONG_LE.get(key, keyOff + 8) & 0x0ffffffc0ffffffcL;
+        s1 = r1 + (r1 >>> 2);
+
+        pad0 = (long) LONG_LE.get(key, keyOff + 16);
+        pad1 = (long) LONG_LE.get(key, keyOff + 24);
+
+        h0 = h1 = h2 = 0;
+        bufferPos = 0;
+    }
+
+    /**
+     * Добавя len байта от in към съобщението
+     * 
+     * Пълните 16-байтови блокове се обработват директно от входния масив,
+     * а непълният остатък се пази за следващото извикване.
+     * 
+     * @param in    входни данни
+     * @param inOff начална позиция във входа
+     * @param len   брой байтове
+     * @throws IllegalArgumentException при невалидни offset/дължина
+     */
+    public void update(byte[] in, int inOff, int len) {
+        if (len < 0 || inOff < 0 || inOff > in.length - len) {
+            throw new IllegalArgumentException("Невалиден offset или дължина на буфера");
+        }
+
+        // Допълване на непълния блок от предишното извикване
+        if (bufferPos > 0) {
+            int n = Math.min(len, 16 - bufferPos);
+            System.arraycopy(in, inOff, buffer, bufferPos, n);
+            bufferPos += n;
+            inOff += n;
+            len -= n;
+            if (bufferPos < 16) {
+                return;
+            }
+            processBlocks(buffer, 0, 1, 1);
+            bufferPos = 0;
+        }
+
+        // Пълни блокове директно от входа
+        int blocks = len >>> 4;
+        if (blocks > 0) {
+            processBlocks(in, inOff, blocks, 1);
+            inOff += blocks << 4;
+            len -= blocks << 4;
+        }
+
+        // Остатък за следващото извикване
+        if (len > 0) {
+            System.arraycopy(in, inOff, buffer, 0, len);
+            bufferPos = len;
+        }
+    }
+
+    /**
+     * Обработва последователни 16-байтови блокове:
+     * h = (h + блок + hibit × 2^128) × r mod (2^130 - 5)
+     * 
+     * Състоянието се държи в локални променливи за целия цикъл.
+     * 
+     * @param blocks брой блокове от off
+     * @param hibit  1 за пълен блок, 0 за последния непълен блок, който вече
+     *               съдържа своя бит 1
+     */
+    private void processBlocks(byte[] m, int off, int blocks, long hibit) {
+        final long r0 = this.r0, r1 = this.r1, s1 = this.s1;
+        long h0 = this.h0, h1 = this.h1, h2 = this.h2;
+
+        for (int b = 0; b < blocks; b++, off += 16) {
+            // h += блок (130-битово събиране с пренос)
+            long m0 = (long) LONG_LE.get(m, off);
+            long m1 = (long) LONG_LE.get(m, off + 8);
+            long t = h0 + m0;
+            long c = carry(h0, t);
+            h0 = t;
+            t = h1 + m1;
+            long c1 = carry(h1, t);
+            h1 = t + c;
+            h2 += c1 + carry(t, h1) + hibit;
+
+            // d0 = h0 × r0 + h1 × s1, d1 = h0 × r1 + h1 × r0 + h2 × s1 (128-битови)
+            long d0lo = h0 * r0;
+            long d0hi = Math.unsignedMultiplyHigh(h0, r0);
+            t = h1 * s1;
+            long lo = d0lo + t;
+            d0hi += Math.unsignedMultiplyHigh(h1, s1) + carry(d0lo, lo);
+            d0lo = lo;
+
+            long d1lo = h0 * r1;
+            long d1hi = Math.unsignedMultiplyHigh(h0, r1);
+            t = h1 * r0;
+            lo = d1lo + t;
+            d1hi += Math.unsignedMultiplyHigh(h1, r0) + carry(d1lo, lo);
+            d1lo = lo;
+            t = h2 * s1; // h2 е малко число - произведението се побира в 64 бита
+            lo = d1lo + t;
+            d1hi += carry(d1lo, lo);
+            d1lo = lo;
+
+            // Събиране на limb-овете: h = d0lo + (d1lo + d0hi) × 2^64 + (h2 × r0 + d1hi) × 2^128
+            h0 = d0lo;
+            h1 = d1lo + d0hi;
+            h2 = h2 * r0 + d1hi + carry(d1lo, h1);
+
+            // Частична редукция: битовете над 2^130 се връщат умножени по 5
+            c = (h2 >>> 2) + (h2 & ~3L);
+            h2 &= 3;
+            t = h0 + c;
+            c = carry(h0, t);
+            h0 = t;
+            t = h1 + c;
+            h2 += carry(h1, t);
+            h1 = t;
+        }
+
+        this.h0 = h0;
+        this.h1 = h1;
+        this.h2 = h2;
+    }
+
+    /**
+     * Пренос (0 или 1) от беззнаковото събиране sum = a + b (има пренос, ако sum < a)
+     * 
+     * Беззнаковото сравнение се компилира от JIT до флага за пренос на
+     * процесора - около 2 пъти по-бързо от побитовата формула
+     * ((a & b) | ((a | b) & ~sum)) >>> 63.
+     */
+    private static long carry(long a, long sum) {
+        return Long.compareUnsigned(sum, a) < 0 ? 1 : 0;
+    }
+
+    /**
+     * Завършва MAC-а и записва 16-байтовия tag в out
+     * След това обектът трябва да се инициализира отново с init
+     * 
+     * @param out    изходен буфер
+     * @param outOff позиция за tag-а
+     * @throws IllegalArgumentException ако няма място за tag-а
+     */
+    public void doFinal(byte[] out, int outOff) {
+        if (outOff < 0 || outOff > out.length - TAG_LENGTH) {
+            throw new IllegalArgumentException("Няма място за 16-байтовия tag");
+        }
+
+        // Последен непълен блок: добавя се байт 1 и нули, без бит 2^128
+        if (bufferPos > 0) {
+            buffer[bufferPos] = 1;
+            for (int k = bufferPos + 1; k < 16; k++) {
+                buffer[k] = 0;
+            }
+            processBlocks(buffer, 0, 1, 0);
+            bufferPos = 0;
+        }
+
+        // g = h + 5; ако g >= 2^130, то h >= p и резултатът е g - 2^130 (без разклонения)
+        long g0 = h0 + 5;
+        long c = carry(h0, g0);
+        long g1 = h1 + c;
+        c = carry(h1, g1);
+        long g2 = h2 + c;
+
+        long select = -(g2 >>> 2); // -1 ако h >= p, 0 иначе
+        long f0 = (h0 & ~select) | (g0 & select);
+        long f1 = (h1 & ~select) | (g1 & select);
+
+        // tag = (h + s) mod 2^128
+        long t = f0 + pad0;
+        f1 += pad1 + carry(f0, t);
+        LONG_LE.set(out, outOff, t);
+        LONG_LE.set(out, outOff + 8, f1);
+    }
+
+    /**
+     * Изчислява tag на цяло съобщение с еднократен ключ
+     * 
+     * @param key     32-байтов еднократен ключ
+     * @param message съобщението
+     * @return 16-байтов tag
+     */
+    public static byte[] mac(byte[] key, byte[] message) {
+        if (key.length != KEY_LENGTH) {
+            throw new IllegalArgumentException("Ключът трябва да е точно 32 байта (256 бита)");
+        }
+
+        Poly1305 poly = new Poly1305(key);
+        poly.update(message, 0, message.length);
+        byte[] tag = new byte[TAG_LENGTH];
+        poly.doFinal(tag, 0);
+        return tag;
+    }
+
+    /**
+     * Сравнява два tag-а за постоянно време (без ранен изход при разлика)
+     */
+    static boolean tagsEqual(byte[] a, int aOff, byte[] b, int bOff) {
+        int diff = 0;
+        for (int k = 0; k < TAG_LENGTH; k++) {
+            diff |= a[aOff + k] ^ b[bOff + k];
+        }
+        return diff == 0;
+    }
+}
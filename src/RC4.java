@@ -1,3 +1,10 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+
 /**
  * RC4 (Rivest Cipher 4) Stream Cipher Implementation
  * 
@@ -9,13 +16,25 @@
  * 
  * Тази имплементация е само за образователни цели и демонстрация.
  * 
+ * Оптимизации: S-box като byte[256], индексиране с & 0xFF и развит PRGA
+ * цикъл, който генерира keystream на порции от 8 байта.
+ * 
  * @author Курсова работа по АSК
  * @version 1.0
  */
 public class RC4 {
 
-    private int[] S; // Substitution box (state array) - 256 елемента
+    // Достъп до 8 байта от byte[] като един little-endian long (за XOR по 8 байта)
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    // Същият достъп в ByteBuffer (heap или direct), независимо от order() на буфера
+    private static final VarHandle BUFFER_LONG_LE = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    private final byte[] S = new byte[256]; // Substitution box (state array) - 256 байта
     private int i, j; // Индекси за PRGA алгоритъма
+    private int drop; // Брой пропуснати начални keystream байта (RC4-drop[n])
 
     /**
      * Конструктор - инициализира RC4 с даден ключ
@@ -29,13 +48,71 @@ public class RC4 {
         }
 
         // Инициализация на S-box (Key Scheduling Algorithm)
-        initializeState(key);
+        initializeState(key, S);
 
         // Инициализация на индексите
         this.i = 0;
         this.j = 0;
     }
 
+    /**
+     * Конструктор за RC4-drop[n] - пропуска първите drop байта от keystream
+     * 
+     * Първите байтове на RC4 keystream имат известни статистически
+     * отклонения (bias). Препоръката е да се пропуснат поне 768, а за
+     * по-консервативни системи - 3072 байта. Пропускането е в тесен цикъл
+     * без заделяне на памет и без XOR.
+     * 
+     * @param key  байтов масив съдържащ криптографския ключ
+     * @param drop брой начални keystream байтове за пропускане (напр. 768, 3072)
+     * @throws IllegalArgumentException ако ключът е празен или drop е отрицателен
+     */
+    public RC4(byte[] key, int drop) {
+        this(key);
+        if (drop < 0) {
+            throw new IllegalArgumentException("Броят пропуснати байтове не може да е отрицателен");
+        }
+
+        this.drop = drop;
+        skip(drop);
+    }
+
+    /**
+     * Конструктор, който взема състоянието след KSA от кеш
+     * При повторен ключ това е копие на 256 байта вместо пълен KSA
+     * 
+     * @param key   байтов масив съдържащ криптографския ключ
+     * @param cache кеш на състоянията след KSA
+     * @throws IllegalArgumentException ако ключът е празен или null
+     */
+    public RC4(byte[] key, RC4KeyScheduleCache cache) {
+        this(key, 0, cache);
+    }
+
+    /**
+     * RC4-drop[n] със състояние след KSA от кеш
+     * Пропускането на drop байта се прави и тук, и при всеки reset.
+     * 
+     * @param key   байтов масив съдържащ криптографския ключ
+     * @param drop  брой начални keystream байтове за пропускане
+     * @param cache кеш на състоянията след KSA
+     * @throws IllegalArgumentException ако ключът е празен или drop е отрицателен
+     */
+    public RC4(byte[] key, int drop, RC4KeyScheduleCache cache) {
+        if (key == null || key.length == 0) {
+            throw new IllegalArgumentException("Ключът не може да бъде празен");
+        }
+        if (drop < 0) {
+            throw new IllegalArgumentException("Броят пропуснати байтове не може да е отрицателен");
+        }
+
+        cache.initializeState(key, S);
+        this.i = 0;
+        this.j = 0;
+        this.drop = drop;
+        skip(drop);
+    }
+
     /**
      * Key Scheduling Algorithm (KSA)
      * Инициализира вътрешното състояние (S-box) въз основа на ключа
@@ -45,82 +122,267 @@ public class RC4 {
      * 2. Размесване на S въз основа на ключа
      * 
      * @param key криптографският ключ
+     * @param S   S-box (256 байта), който се запълва
      */
-    private void initializeState(byte[] key) {
-        S = new int[256];
+    static void initializeState(byte[] key, byte[] S) {
         int keyLength = key.length;
 
         // Стъпка 1: Инициализация на S с 0, 1, 2, ..., 255
         for (int i = 0; i < 256; i++) {
-            S[i] = i;
+            S[i] = (byte) i;
         }
 
         // Стъпка 2: Размесване на S въз основа на ключа
         int j = 0;
         for (int i = 0; i < 256; i++) {
-            // Изчисляване на новия индекс j
-            j = (j + S[i] + (key[i % keyLength] & 0xFF)) % 256;
-
-            // Размяна на S[i] и S[j]
-            swap(i, j);
+            // Изчисляване на новия индекс j и размяна на S[i] и S[j]
+            byte si = S[i];
+            j = (j + (si & 0xFF) + (key[i % keyLength] & 0xFF)) & 0xFF;
+            S[i] = S[j];
+            S[j] = si;
         }
     }
 
     /**
-     * Размяна на две позиции в S-box
+     * Криптира/декриптира данни
+     * RC4 използва XOR, така че криптирането и декриптирането са идентични
      * 
-     * @param i първи индекс
-     * @param j втори индекс
+     * @param data данните за криптиране/декриптиране
+     * @return криптираните/декриптирани данни
      */
-    private void swap(int i, int j) {
-        int temp = S[i];
-        S[i] = S[j];
-        S[j] = temp;
+    public byte[] crypt(byte[] data) {
+        byte[] result = new byte[data.length];
+        crypt(data, 0, data.length, result, 0);
+        return result;
     }
 
     /**
-     * Генерира следващия байт от keystream
-     * Pseudo-Random Generation Algorithm (PRGA)
+     * Криптира/декриптира len байта от in в предоставен от извикващия буфер
+     * Не заделя памет и поддържа работа на място (in == out и inOff == outOff)
      * 
-     * Алгоритъм:
-     * 1. i = (i + 1) mod 256
-     * 2. j = (j + S[i]) mod 256
-     * 3. swap(S[i], S[j])
-     * 4. K = S[(S[i] + S[j]) mod 256]
+     * @param in     входни данни
+     * @param inOff  начална позиция във входа
+     * @param len    брой байтове за обработка
+     * @param out    изходен буфер
+     * @param outOff начална позиция в изхода
+     * @throws IllegalArgumentException при невалидни offset/дължина
+     */
+    public void crypt(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        if (len < 0 || inOff < 0 || outOff < 0
+                || inOff > in.length - len || outOff > out.length - len) {
+            throw new IllegalArgumentException("Невалиден offset или дължина на буфера");
+        }
+
+        /*
+         * Pseudo-Random Generation Algorithm (PRGA) за всеки байт:
+         * 1. i = (i + 1) mod 256
+         * 2. j = (j + S[i]) mod 256
+         * 3. swap(S[i], S[j])
+         * 4. K = S[(S[i] + S[j]) mod 256]
+         * 
+         * Състоянието се държи в локални променливи, mod 256 е & 0xFF, а
+         * цикълът е развит на 8 байта keystream, които се XOR-ват наведнъж.
+         */
+        byte[] S = this.S;
+        int i = this.i;
+        int j = this.j;
+        int si;
+        int sj;
+        long keystream;
+        int k = 0;
+
+        for (; k <= len - 8; k += 8) {
+            i = (i + 1) & 0xFF;
+            si = S[i] & 0xFF;
+            j = (j + si) & 0xFF;
+            sj = S[j] & 0xFF;
+            S[i] = (byte) sj;
+            S[j] = (byte) si;
+            keystream = (long) (S[(si + sj) & 0xFF] & 0xFF);
+
+            i = (i + 1) & 0xFF;
+            si = S[i] & 0xFF;
+            j = (j + si) & 0xFF;
+            sj = S[j] & 0xFF;
+            S[i] = (byte) sj;
+            S[j] = (byte) si;
+            keystream |= (long) (S[(si + sj) & 0xFF] & 0xFF) << 8;
+
+            i = (i + 1) & 0xFF;
+            si = S[i] & 0xFF;
+            j = (j + si) & 0xFF;
+            sj = S[j] & 0xFF;
+            S[i] = (byte) sj;
+            S[j] = (byte) si;
+            keystream |= (long) (S[(si + sj) & 0xFF] & 0xFF) << 16;
+
+            i = (i + 1) & 0xFF;
+            si = S[i] & 0xFF;
+            j = (j + si) & 0xFF;
+            sj = S[j] & 0xFF;
+            S[i] = (byte) sj;
+            S[j] = (byte) si;
+            keystream |= (long) (S[(si + sj) & 0xFF] & 0xFF) << 24;
+
+            i = (i + 1) & 0xFF;
+            si = S[i] & 0xFF;
+            j = (j + si) & 0xFF;
+            sj = S[j] & 0xFF;
+            S[i] = (byte) sj;
+            S[j] = (byte) si;
+            keystream |= (long) (S[(si + sj) & 0xFF] & 0xFF) << 32;
+
+            i = (i + 1) & 0xFF;
+            si = S[i] & 0xFF;
+            j = (j + si) & 0xFF;
+            sj = S[j] & 0xFF;
+            S[i] = (byte) sj;
+            S[j] = (byte) si;
+            keystream |= (long) (S[(si + sj) & 0xFF] & 0xFF) << 40;
+
+            i = (i + 1) & 0xFF;
+            si = S[i] & 0xFF;
+            j = (j + si) & 0xFF;
+            sj = S[j] & 0xFF;
+            S[i] = (byte) sj;
+            S[j] = (byte) si;
+            keystream |= (long) (S[(si + sj) & 0xFF] & 0xFF) << 48;
+
+            i = (i + 1) & 0xFF;
+            si = S[i] & 0xFF;
+            j = (j + si) & 0xFF;
+            sj = S[j] & 0xFF;
+            S[i] = (byte) sj;
+            S[j] = (byte) si;
+            keystream |= (long) (S[(si + sj) & 0xFF] & 0xFF) << 56;
+
+            LONG_LE.set(out, outOff + k, (long) LONG_LE.get(in, inOff + k) ^ keystream);
+        }
+
+        // Остатък (по-малко от 8 байта)
+        for (; k < len; k++) {
+            i = (i + 1) & 0xFF;
+            si = S[i] & 0xFF;
+            j = (j + si) & 0xFF;
+            sj = S[j] & 0xFF;
+            S[i] = (byte) sj;
+            S[j] = (byte) si;
+            out[outOff + k] = (byte) (in[inOff + k] ^ S[(si + sj) & 0xFF]);
+        }
+
+        this.i = i;
+        this.j = j;
+    }
+
+    /**
+     * Криптира/декриптира src.remaining() байта от src в dst (NIO конвенции)
      * 
-     * @return следващ байт от ключовия поток
+     * Чете от src.position() до src.limit() и пише от dst.position(); след
+     * извикването двете позиции са преместени с броя обработени байтове,
+     * а limit-ите не се променят. При src == dst работи на място.
+     * 
+     * Буфери с достъпен масив (heap) минават през crypt(byte[], ...), а
+     * останалите (direct, read-only) се XOR-ват директно по 8 байта като
+     * little-endian long, без копиране в heap масив.
+     * 
+     * @param src входен буфер
+     * @param dst изходен буфер
+     * @return брой обработени байтове
+     * @throws BufferOverflowException ако в dst няма място за src.remaining() байта
+     * @throws ReadOnlyBufferException ако dst е само за четене
      */
-    private byte nextKeystreamByte() {
-        // Увеличаване на i
-        i = (i + 1) % 256;
+    public int crypt(ByteBuffer src, ByteBuffer dst) {
+        if (dst.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+        int len = src.remaining();
+        if (dst.remaining() < len) {
+            throw new BufferOverflowException();
+        }
+
+        int inPos = src.position();
+        int outPos = dst.position();
+
+        if (src.hasArray() && dst.hasArray()) {
+            crypt(src.array(), src.arrayOffset() + inPos, len, dst.array(), dst.arrayOffset() + outPos);
+        } else {
+            int k = 0;
+            for (; k <= len - 8; k += 8) {
+                BUFFER_LONG_LE.set(dst, outPos + k, (long) BUFFER_LONG_LE.get(src, inPos + k) ^ nextKeystream(8));
+            }
+            // Остатък (по-малко от 8 байта) - използват се само младшите байтове
+            if (k < len) {
+                long keystream = nextKeystream(len - k);
+                for (; k < len; k++, keystream >>>= 8) {
+                    dst.put(outPos + k, (byte) (src.get(inPos + k) ^ keystream));
+                }
+            }
+        }
 
-        // Изчисляване на j
-        j = (j + S[i]) % 256;
+        src.position(inPos + len);
+        dst.position(outPos + len);
+        return len;
+    }
 
-        // Размяна на S[i] и S[j]
-        swap(i, j);
+    /**
+     * Следващите n (1..8) байта keystream като little-endian long
+     * (първият байт е в младшите 8 бита)
+     */
+    private long nextKeystream(int n) {
+        byte[] S = this.S;
+        int i = this.i;
+        int j = this.j;
+        long keystream = 0;
+
+        for (int shift = 0; shift < n * 8; shift += 8) {
+            i = (i + 1) & 0xFF;
+            int si = S[i] & 0xFF;
+            j = (j + si) & 0xFF;
+            int sj = S[j] & 0xFF;
+            S[i] = (byte) sj;
+            S[j] = (byte) si;
+            keystream |= (long) (S[(si + sj) & 0xFF] & 0xFF) << shift;
+        }
 
-        // Генериране на изходен байт
-        int index = (S[i] + S[j]) % 256;
-        return (byte) S[index];
+        this.i = i;
+        this.j = j;
+        return keystream;
     }
 
     /**
-     * Криптира/декриптира данни
-     * RC4 използва XOR, така че криптирането и декриптирането са идентични
+     * Пропуска n байта от keystream (PRGA без изход)
+     * Използва се за RC4-drop[n]; не заделя памет и не XOR-ва данни
      * 
-     * @param data данните за криптиране/декриптиране
-     * @return криптираните/декриптирани данни
+     * @param n брой байтове за пропускане
+     * @throws IllegalArgumentException ако n е отрицателен
      */
-    public byte[] crypt(byte[] data) {
-        byte[] result = new byte[data.length];
+    public void discard(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Броят пропуснати байтове не може да е отрицателен");
+        }
 
-        for (int k = 0; k < data.length; k++) {
-            // XOR на всеки байт от данните с байт от keystream
-            result[k] = (byte) (data[k] ^ nextKeystreamByte());
+        skip(n);
+    }
+
+    /**
+     * PRGA без изход - общ за discard, конструкторите и reset
+     * (private, за да не може подклас да го подмени по време на конструиране)
+     */
+    private void skip(int n) {
+        byte[] S = this.S;
+        int i = this.i;
+        int j = this.j;
+
+        for (int k = 0; k < n; k++) {
+            i = (i + 1) & 0xFF;
+            byte si = S[i];
+            j = (j + (si & 0xFF)) & 0xFF;
+            S[i] = S[j];
+            S[j] = si;
         }
 
-        return result;
+        this.i = i;
+        this.j = j;
     }
 
     /**
@@ -146,13 +408,28 @@ public class RC4 {
     /**
      * Reset на шифъра със същия ключ
      * Полезно за криптиране на множество съобщения
+     * При RC4-drop[n] началните n байта отново се пропускат
      * 
      * @param key ключът за реинициализация
      */
     public void reset(byte[] key) {
-        initializeState(key);
+        initializeState(key, S);
+        this.i = 0;
+        this.j = 0;
+        skip(drop);
+    }
+
+    /**
+     * Reset на шифъра, като състоянието след KSA се взема от кеш
+     * 
+     * @param key   ключът за реинициализация
+     * @param cache кеш на състоянията след KSA
+     */
+    public void reset(byte[] key, RC4KeyScheduleCache cache) {
+        cache.initializeState(key, S);
         this.i = 0;
         this.j = 0;
+        skip(drop);
     }
 
     /**
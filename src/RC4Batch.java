@@ -0,0 +1,210 @@
+/**
+ * RC4 Batch - паралелна (interleaved) обработка на много RC4 потока
+ * 
+ * PRGA на RC4 е строго последователен: всеки байт зависи от предишната
+ * размяна в S-box-а, така че един поток не може да използва няколкото
+ * изпълнителни единици на процесора. Когато има много независими RC4
+ * сесии (различни ключове), този клас ги напредва по 4 едновременно в
+ * един цикъл. Веригите от зависимости на 4-те потока са независими и
+ * процесорът ги изпълнява застъпено (instruction-level parallelism).
+ * 
+ * Всички S-box-ове са в един общ масив (N × 256 байта), а всеки поток
+ * има собствени индекси i, j и собствени входен/изходен буфер.
+ * Keystream-ът на всеки поток е идентичен с RC4 със същия ключ, и
+ * състоянието продължава между извикванията.
+ * 
+ * ВНИМАНИЕ: RC4 е остарял - само за legacy съвместимост.
+ * 
+ * @author Курсова работа по АSК
+ * @version 1.0
+ */
+public class RC4Batch {
+
+    private final byte[] S; // S-box-ове на всички потоци, по 256 байта на поток
+    private final int[] i; // Индекс i за всеки поток
+    private final int[] j; // Индекс j за всеки поток
+
+    /**
+     * Конструктор - инициализира по един RC4 поток за всеки ключ
+     * 
+     * @param keys ключовете на потоците (по един на поток)
+     * @throws IllegalArgumentException ако няма ключове или някой ключ е празен
+     */
+    public RC4Batch(byte[][] keys) {
+        if (keys == null || keys.length == 0) {
+            throw new IllegalArgumentException("Трябва да има поне един ключ");
+        }
+
+        this.S = new byte[keys.length * 256];
+        this.i = new int[keys.length];
+        this.j = new int[keys.length];
+
+        byte[] state = new byte[256];
+        for (int s = 0; s < keys.length; s++) {
+            if (keys[s] == null || keys[s].length == 0) {
+                throw new IllegalArgumentException("Ключът не може да бъде празен");
+            }
+            RC4.initializeState(keys[s], state);
+            System.arraycopy(state, 0, S, s * 256, 256);
+        }
+    }
+
+    /**
+     * Брой потоци
+     */
+    public int size() {
+        return i.length;
+    }
+
+    /**
+     * Криптира/декриптира по един буфер за всеки поток
+     * 
+     * @param in  входни данни за всеки поток
+     * @param out изходни буфери (out[s] поне колкото in[s])
+     * @throws IllegalArgumentException при невалиден брой буфери или размери
+     */
+    public void crypt(byte[][] in, byte[][] out) {
+        int[] inOffs = new int[in.length];
+        int[] outOffs = new int[in.length];
+        int[] lens = new int[in.length];
+        for (int s = 0; s < in.length; s++) {
+            lens[s] = in[s].length;
+        }
+        crypt(in, inOffs, lens, out, outOffs);
+    }
+
+    /**
+     * Криптира/декриптира len[s] байта от in[s] в out[s] за всеки поток s
+     * Поддържа работа на място (in[s] == out[s] и inOff[s] == outOff[s]).
+     * 
+     * @param in      входни данни за всеки поток
+     * @param inOffs  начални позиции във входовете
+     * @param lens    брой байтове за всеки поток
+     * @param out     изходни буфери
+     * @param outOffs начални позиции в изходите
+     * @throws IllegalArgumentException при невалиден брой буфери или размери
+     */
+    public void crypt(byte[][] in, int[] inOffs, int[] lens, byte[][] out, int[] outOffs) {
+        int n = size();
+        if (in.length != n || inOffs.length != n || lens.length != n
+                || out.length != n || outOffs.length != n) {
+            throw new IllegalArgumentException("Броят на буферите трябва да е равен на броя потоци");
+        }
+        for (int s = 0; s < n; s++) {
+            if (lens[s] < 0 || inOffs[s] < 0 || outOffs[s] < 0
+                    || inOffs[s] > in[s].length - lens[s] || outOffs[s] > out[s].length - lens[s]) {
+                throw new IllegalArgumentException("Невалиден offset или дължина на буфера");
+            }
+        }
+
+        // Групи от по 4 потока - общата дължина се обработва застъпено
+        int s = 0;
+        for (; s + 4 <= n; s += 4) {
+            int common = Math.min(Math.min(lens[s], lens[s + 1]), Math.min(lens[s + 2], lens[s + 3]));
+            cryptInterleaved(s, s + 1, s + 2, s + 3, common, in, inOffs, out, outOffs);
+            for (int t = s; t < s + 4; t++) {
+                cryptSingle(t, common, lens[t], in[t], inOffs[t], out[t], outOffs[t]);
+            }
+        }
+
+        // Останалите (по-малко от 4) потока - поотделно
+        for (; s < n; s++) {
+            cryptSingle(s, 0, lens[s], in[s], inOffs[s], out[s], outOffs[s]);
+        }
+    }
+
+    /**
+     * Напредва 4 потока едновременно с по count байта
+     * Стъпките на 4-те потока са независими, така че процесорът ги застъпва
+     */
+    private void cryptInterleaved(int sa, int sb, int sc, int sd, int count,
+            byte[][] in, int[] inOffs, byte[][] out, int[] outOffs) {
+        final byte[] S = this.S;
+        final int basea = sa * 256;
+        final byte[] ina = in[sa], outa = out[sa];
+        final int inOffa = inOffs[sa], outOffa = outOffs[sa];
+        int ia = this.i[sa], ja = this.j[sa];
+        int sai, saj;
+        final int baseb = sb * 256;
+        final byte[] inb = in[sb], outb = out[sb];
+        final int inOffb = inOffs[sb], outOffb = outOffs[sb];
+        int ib = this.i[sb], jb = this.j[sb];
+        int sbi, sbj;
+        final int basec = sc * 256;
+        final byte[] inc = in[sc], outc = out[sc];
+        final int inOffc = inOffs[sc], outOffc = outOffs[sc];
+        int ic = this.i[sc], jc = this.j[sc];
+        int sci, scj;
+        final int based = sd * 256;
+        final byte[] ind = in[sd], outd = out[sd];
+        final int inOffd = inOffs[sd], outOffd = outOffs[sd];
+        int id = this.i[sd], jd = this.j[sd];
+        int sdi, sdj;
+
+        for (int k = 0; k < count; k++) {
+            ia = (ia + 1) & 0xFF;
+            sai = S[basea + ia] & 0xFF;
+            ja = (ja + sai) & 0xFF;
+            saj = S[basea + ja] & 0xFF;
+            S[basea + ia] = (byte) saj;
+            S[basea + ja] = (byte) sai;
+            outa[outOffa + k] = (byte) (ina[inOffa + k] ^ S[basea + ((sai + saj) & 0xFF)]);
+
+            ib = (ib + 1) & 0xFF;
+            sbi = S[baseb + ib] & 0xFF;
+            jb = (jb + sbi) & 0xFF;
+            sbj = S[baseb + jb] & 0xFF;
+            S[baseb + ib] = (byte) sbj;
+            S[baseb + jb] = (byte) sbi;
+            outb[outOffb + k] = (byte) (inb[inOffb + k] ^ S[baseb + ((sbi + sbj) & 0xFF)]);
+
+            ic = (ic + 1) & 0xFF;
+            sci = S[basec + ic] & 0xFF;
+            jc = (jc + sci) & 0xFF;
+            scj = S[basec + jc] & 0xFF;
+            S[basec + ic] = (byte) scj;
+            S[basec + jc] = (byte) sci;
+            outc[outOffc + k] = (byte) (inc[inOffc + k] ^ S[basec + ((sci + scj) & 0xFF)]);
+
+            id = (id + 1) & 0xFF;
+            sdi = S[based + id] & 0xFF;
+            jd = (jd + sdi) & 0xFF;
+            sdj = S[based + jd] & 0xFF;
+            S[based + id] = (byte) sdj;
+            S[based + jd] = (byte) sdi;
+            outd[outOffd + k] = (byte) (ind[inOffd + k] ^ S[based + ((sdi + sdj) & 0xFF)]);
+        }
+
+        this.i[sa] = ia;
+        this.j[sa] = ja;
+        this.i[sb] = ib;
+        this.j[sb] = jb;
+        this.i[sc] = ic;
+        this.j[sc] = jc;
+        this.i[sd] = id;
+        this.j[sd] = jd;
+    }
+
+    /**
+     * Обработва байтовете [from, to) на един поток
+     */
+    private void cryptSingle(int s, int from, int to, byte[] in, int inOff, byte[] out, int outOff) {
+        final byte[] S = this.S;
+        final int base = s * 256;
+        int i = this.i[s];
+        int j = this.j[s];
+
+        for (int k = from; k < to; k++) {
+            i = (i + 1) & 0xFF;
+            int si = S[base + i] & 0xFF;
+            j = (j + si) & 0xFF;
+            int sj = S[base + j] & 0xFF;
+            S[base + i] = (byte) sj;
+            S[base + j] = (byte) si;
+            out[outOff + k] = (byte) (in[inOff + k] ^ S[base + ((si + sj) & 0xFF)]);
+        }
+
+        this.i[s] = i;
+        this.j[s] = j;
+    }
+}
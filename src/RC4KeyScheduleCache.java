@@ -0,0 +1,159 @@
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Кеш на RC4 състояния след Key Scheduling Algorithm (KSA)
+ * 
+ * KSA изпълнява 256 итерации при всяко създаване или reset на RC4.
+ * Когато малък набор от ключове се използва многократно, кешът пази
+ * S-box-а след KSA за всеки ключ и новият шифър се получава с копие на
+ * 256 байта (плюс нулиране на i и j) вместо пълен KSA.
+ * 
+ * Кешът е ограничен по брой записи и изхвърля най-отдавна използвания
+ * ключ (LRU). Записите се търсят по SHA-256 на ключа - самите ключове
+ * не се пазят, а нападател, който подбира ключове, не може да натрупа
+ * колизии в един bucket на хеш таблицата. Броячите hits/misses показват
+ * колко ефективен е кешът. Класът е thread-safe.
+ * 
+ * ВНИМАНИЕ: S-box-ът след KSA е еквивалентен на ключа (от него се
+ * генерира същият keystream) - кешът трябва да се пази като ключ.
+ * 
+ * @author Курсова работа по АSК
+ * @version 1.0
+ */
+public class RC4KeyScheduleCache {
+
+    /**
+     * Ключ в кеша - SHA-256 на RC4 ключа като 4 × 64-bit думи
+     */
+    private static final class KeyDigest {
+        private final long d0, d1, d2, d3;
+
+        KeyDigest(byte[] digest) {
+            this.d0 = toLong(digest, 0);
+            this.d1 = toLong(digest, 8);
+            this.d2 = toLong(digest, 16);
+            this.d3 = toLong(digest, 24);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof KeyDigest)) {
+                return false;
+            }
+            KeyDigest o = (KeyDigest) other;
+            return d0 == o.d0 && d1 == o.d1 && d2 == o.d2 && d3 == o.d3;
+        }
+
+        @Override
+        public int hashCode() {
+            // Битовете на SHA-256 са равномерно разпределени - стигат първите 32
+            return (int) d0;
+        }
+
+        private static long toLong(byte[] b, int off) {
+            long v = 0;
+            for (int i = 7; i >= 0; i--) {
+                v = (v << 8) | (b[off + i] & 0xFF);
+            }
+            return v;
+        }
+    }
+
+    private final int capacity;
+    private final MessageDigest sha256;
+    private final LinkedHashMap<KeyDigest, byte[]> snapshots;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * Създава кеш с даден максимален брой ключове
+     * 
+     * @param capacity максимален брой кеширани ключове
+     * @throws IllegalArgumentException ако capacity не е положителен
+     */
+    public RC4KeyScheduleCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Капацитетът на кеша трябва да е положителен");
+        }
+
+        this.capacity = capacity;
+        try {
+            this.sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Всяка Java платформа е длъжна да поддържа SHA-256
+            throw new IllegalStateException("SHA-256 не е наличен", e);
+        }
+        // accessOrder = true -> итерацията е от най-отдавна до най-скоро използвания (LRU)
+        this.snapshots = new LinkedHashMap<KeyDigest, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<KeyDigest, byte[]> eldest) {
+                return size() > RC4KeyScheduleCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Запълва S със състоянието след KSA за дадения ключ
+     * При попадение копира кешираното състояние, иначе изпълнява KSA
+     * и запазва резултата
+     * 
+     * @param key RC4 ключът
+     * @param S   S-box (256 байта), който се запълва
+     */
+    synchronized void initializeState(byte[] key, byte[] S) {
+        KeyDigest digest = new KeyDigest(sha256.digest(key));
+        byte[] snapshot = snapshots.get(digest);
+
+        if (snapshot != null) {
+            hits++;
+            System.arraycopy(snapshot, 0, S, 0, 256);
+            return;
+        }
+
+        misses++;
+        RC4.initializeState(key, S);
+        snapshots.put(digest, S.clone());
+    }
+
+    /**
+     * Брой попадения в кеша
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * Брой пропуски (изпълнен пълен KSA)
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Процент попадения (0-100)
+     */
+    public synchronized double hitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : hits * 100.0 / total;
+    }
+
+    /**
+     * Текущ брой кеширани ключове
+     */
+    public synchronized int size() {
+        return snapshots.size();
+    }
+
+    /**
+     * Изчиства кеша и броячите
+     */
+    public synchronized void clear() {
+        snapshots.clear();
+        hits = 0;
+        misses = 0;
+    }
+}
@@ -1,3 +1,14 @@
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
 /**
  * Salsa20 Stream Cipher Implementation
  * 
@@ -23,13 +34,41 @@
 public class Salsa20 {
 
     // Salsa20 константи ("expand 32-byte k" в ASCII)
-    private static final int[] CONSTANTS = {
+    static final int[] CONSTANTS = {
             0x61707865, 0x3320646e, 0x79622d32, 0x6b206574
     };
 
-    private final int[] key; // 8 × 32-bit = 256-bit key
-    private final int[] nonce; // 2 × 32-bit = 64-bit nonce
-    private long counter; // 64-bit block counter
+    final int[] key; // 8 × 32-bit = 256-bit key
+    final int[] nonce; // 2 × 32-bit = 64-bit nonce
+    long counter; // 64-bit block counter
+    private long initialCounter; // counter на първия блок (позиция 0 при seek)
+    final int rounds; // брой рундове: 20 (Salsa20/20), 12 (Salsa20/12) или 8 (Salsa20/8)
+
+    // Минимален размер на сегмент при паралелно криптиране (по-малките не се разделят)
+    static final int PARALLEL_MIN_SEGMENT = 64 * 1024;
+
+    // 64 нулеви байта - XOR с тях дава чистия keystream
+    private static final byte[] ZERO_BLOCK = new byte[64];
+
+    // Достъп до 8 байта като един little-endian long - в byte[] и в ByteBuffer (вкл. direct)
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle BUFFER_LONG_LE = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    // 32-битова little-endian дума на произволен (неподравнен) адрес в MemorySegment
+    private static final ValueLayout.OfInt SEGMENT_INT_LE = ValueLayout.JAVA_INT_UNALIGNED
+            .withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    // Същата дума в byte[] (keystream буфера)
+    private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    // Буфер за keystream на непълен блок (преизползва се, без алокации)
+    private final byte[] keystream = new byte[64];
+
+    // Позиция на първия неизползван байт в keystream (64 = буферът е празен)
+    int keystreamPos = 64;
 
     /**
      * Конструктор на Salsa20
@@ -40,6 +79,22 @@ public class Salsa20 {
      * @throws IllegalArgumentException при невалидни размери
      */
     public Salsa20(byte[] key, byte[] nonce, long counter) {
+        this(key, nonce, counter, 20);
+    }
+
+    /**
+     * Конструктор с избран брой рундове
+     * 
+     * Salsa20/12 е в eSTREAM портфолиото и се смята за достатъчен;
+     * Salsa20/8 е най-бързият вариант с най-малка граница на сигурност.
+     * 
+     * @param key     32-байтов (256-битов) ключ
+     * @param nonce   8-байтов (64-битов) nonce
+     * @param counter начален counter (обикновено 0)
+     * @param rounds  брой рундове: 8, 12 или 20
+     * @throws IllegalArgumentException при невалидни размери или брой рундове
+     */
+    public Salsa20(byte[] key, byte[] nonce, long counter, int rounds) {
         if (key.length != 32) {
             throw new IllegalArgumentException("Ключът трябва да е точно 32 байта (256 бита)");
         }
@@ -50,6 +105,8 @@ public class Salsa20 {
         this.key = bytesToInts(key);
         this.nonce = bytesToInts(nonce);
         this.counter = counter;
+        this.initialCounter = counter;
+        this.rounds = checkRounds(rounds);
     }
 
     /**
@@ -59,10 +116,59 @@ public class Salsa20 {
         this(key, nonce, 0);
     }
 
+    /**
+     * Конструктор от вече конвертирани 32-битови думи на ключа и nonce-а
+     * Използва се от XSalsa20 с подключа, изведен чрез HSalsa20
+     */
+    Salsa20(int[] key, int[] nonce, long counter) {
+        this.key = key;
+        this.nonce = nonce;
+        this.counter = counter;
+        this.initialCounter = counter;
+        this.rounds = 20;
+    }
+
+    /**
+     * Копие със същия ключ и nonce, започващо от даден counter
+     * Използва се за независимите сегменти при паралелно криптиране
+     */
+    Salsa20(Salsa20 other, long counter) {
+        this.key = other.key;
+        this.nonce = other.nonce;
+        this.counter = counter;
+        this.initialCounter = other.initialCounter;
+        this.rounds = other.rounds;
+    }
+
+    /**
+     * Проверява дали броят рундове е един от стандартните варианти
+     */
+    static int checkRounds(int rounds) {
+        if (rounds != 8 && rounds != 12 && rounds != 20) {
+            throw new IllegalArgumentException("Броят рундове трябва да е 8, 12 или 20");
+        }
+        return rounds;
+    }
+
+    /**
+     * Брой рундове на шифъра (8, 12 или 20)
+     */
+    public int getRounds() {
+        return rounds;
+    }
+
+    /**
+     * Създава копие на шифъра за сегмент, започващ от даден counter
+     * Наследниците (напр. векторните версии) връщат копие от своя тип
+     */
+    Salsa20 copyAt(long counter) {
+        return new Salsa20(this, counter);
+    }
+
     /**
      * Конвертира байтов масив в масив от 32-битови integers (little-endian)
      */
-    private int[] bytesToInts(byte[] bytes) {
+    static int[] bytesToInts(byte[] bytes) {
         int[] ints = new int[bytes.length / 4];
         for (int i = 0; i < ints.length; i++) {
             ints[i] = bytesToInt(bytes, i * 4);
@@ -73,7 +179,7 @@ public class Salsa20 {
     /**
      * Конвертира 4 байта в 32-битов integer (little-endian)
      */
-    private int bytesToInt(byte[] bytes, int offset) {
+    static int bytesToInt(byte[] bytes, int offset) {
         return (bytes[offset] & 0xFF) |
                 ((bytes[offset + 1] & 0xFF) << 8) |
                 ((bytes[offset + 2] & 0xFF) << 16) |
@@ -81,149 +187,479 @@ public class Salsa20 {
     }
 
     /**
-     * Конвертира 32-битов integer в 4 байта (little-endian)
-     */
-    private void intToBytes(int value, byte[] bytes, int offset) {
-        bytes[offset] = (byte) (value & 0xFF);
-        bytes[offset + 1] = (byte) ((value >>> 8) & 0xFF);
-        bytes[offset + 2] = (byte) ((value >>> 16) & 0xFF);
-        bytes[offset + 3] = (byte) ((value >>> 24) & 0xFF);
-    }
-
-    /**
-     * Salsa20 Quarter Round операция
+     * Salsa20 блокова функция
+     * Генерира 64 байта keystream и ги XOR-ва директно с входните данни
+     * 
+     * Структура на състоянието (4x4 матрица от 32-битови думи):
+     * 
+     * cccccccc kkkkkkkk kkkkkkkk kkkkkkkk
+     * kkkkkkkk cccccccc nnnnnnnn nnnnnnnn
+     * bbbbbbbb bbbbbbbb cccccccc kkkkkkkk
+     * kkkkkkkk kkkkkkkk kkkkkkkk cccccccc
+     * 
+     * c = константи, k = ключ, n = nonce, b = block counter
+     * 
+     * Извършва rounds рунда (rounds / 2 double rounds = columnround + rowround).
+     * Всичките 16 думи се държат в локални променливи, а quarter round
+     * операциите са развити (unrolled) - без междинни извиквания и без
+     * алокация на памет за всеки блок.
      * 
-     * Малко различна от ChaCha20:
+     * Quarter round (малко различна от ChaCha20):
      * b ^= ((a + d) <<< 7);
      * c ^= ((b + a) <<< 9);
      * d ^= ((c + b) <<< 13);
      * a ^= ((d + c) <<< 18);
+     * 
+     * @param in     входни данни (поне 64 байта от inOff)
+     * @param inOff  начална позиция във входа
+     * @param out    изходен масив (поне 64 байта от outOff)
+     * @param outOff начална позиция в изхода
      */
-    private void quarterRound(int[] state, int a, int b, int c, int d) {
-        state[b] ^= Integer.rotateLeft(state[a] + state[d], 7);
-        state[c] ^= Integer.rotateLeft(state[b] + state[a], 9);
-        state[d] ^= Integer.rotateLeft(state[c] + state[b], 13);
-        state[a] ^= Integer.rotateLeft(state[d] + state[c], 18);
+    private void salsa20Block(byte[] in, int inOff, byte[] out, int outOff) {
+        // Начално състояние
+        final int j0 = CONSTANTS[0], j1 = key[0], j2 = key[1], j3 = key[2];
+        final int j4 = key[3], j5 = CONSTANTS[1], j6 = nonce[0], j7 = nonce[1];
+        final int j8 = (int) counter, j9 = (int) (counter >>> 32), j10 = CONSTANTS[2], j11 = key[4];
+        final int j12 = key[5], j13 = key[6], j14 = key[7], j15 = CONSTANTS[3];
+
+        int x0 = j0, x1 = j1, x2 = j2, x3 = j3;
+        int x4 = j4, x5 = j5, x6 = j6, x7 = j7;
+        int x8 = j8, x9 = j9, x10 = j10, x11 = j11;
+        int x12 = j12, x13 = j13, x14 = j14, x15 = j15;
+
+        // 20, 12 или 8 рунда = 10, 6 или 4 double rounds
+        final int doubleRounds = rounds >> 1;
+        for (int i = 0; i < doubleRounds; i++) {
+            // Columnround
+            x4 ^= Integer.rotateLeft(x0 + x12, 7);
+            x8 ^= Integer.rotateLeft(x4 + x0, 9);
+            x12 ^= Integer.rotateLeft(x8 + x4, 13);
+            x0 ^= Integer.rotateLeft(x12 + x8, 18);
+            x9 ^= Integer.rotateLeft(x5 + x1, 7);
+            x13 ^= Integer.rotateLeft(x9 + x5, 9);
+            x1 ^= Integer.rotateLeft(x13 + x9, 13);
+            x5 ^= Integer.rotateLeft(x1 + x13, 18);
+            x14 ^= Integer.rotateLeft(x10 + x6, 7);
+            x2 ^= Integer.rotateLeft(x14 + x10, 9);
+            x6 ^= Integer.rotateLeft(x2 + x14, 13);
+            x10 ^= Integer.rotateLeft(x6 + x2, 18);
+            x3 ^= Integer.rotateLeft(x15 + x11, 7);
+            x7 ^= Integer.rotateLeft(x3 + x15, 9);
+            x11 ^= Integer.rotateLeft(x7 + x3, 13);
+            x15 ^= Integer.rotateLeft(x11 + x7, 18);
+
+            // Rowround
+            x1 ^= Integer.rotateLeft(x0 + x3, 7);
+            x2 ^= Integer.rotateLeft(x1 + x0, 9);
+            x3 ^= Integer.rotateLeft(x2 + x1, 13);
+            x0 ^= Integer.rotateLeft(x3 + x2, 18);
+            x6 ^= Integer.rotateLeft(x5 + x4, 7);
+            x7 ^= Integer.rotateLeft(x6 + x5, 9);
+            x4 ^= Integer.rotateLeft(x7 + x6, 13);
+            x5 ^= Integer.rotateLeft(x4 + x7, 18);
+            x11 ^= Integer.rotateLeft(x10 + x9, 7);
+            x8 ^= Integer.rotateLeft(x11 + x10, 9);
+            x9 ^= Integer.rotateLeft(x8 + x11, 13);
+            x10 ^= Integer.rotateLeft(x9 + x8, 18);
+            x12 ^= Integer.rotateLeft(x15 + x14, 7);
+            x13 ^= Integer.rotateLeft(x12 + x15, 9);
+            x14 ^= Integer.rotateLeft(x13 + x12, 13);
+            x15 ^= Integer.rotateLeft(x14 + x13, 18);
+        }
+
+        // Добавяне на началното състояние и XOR с данните
+        xorLong(x0 + j0, x1 + j1, in, inOff, out, outOff);
+        xorLong(x2 + j2, x3 + j3, in, inOff + 8, out, outOff + 8);
+        xorLong(x4 + j4, x5 + j5, in, inOff + 16, out, outOff + 16);
+        xorLong(x6 + j6, x7 + j7, in, inOff + 24, out, outOff + 24);
+        xorLong(x8 + j8, x9 + j9, in, inOff + 32, out, outOff + 32);
+        xorLong(x10 + j10, x11 + j11, in, inOff + 40, out, outOff + 40);
+        xorLong(x12 + j12, x13 + j13, in, inOff + 48, out, outOff + 48);
+        xorLong(x14 + j14, x15 + j15, in, inOff + 56, out, outOff + 56);
     }
 
     /**
-     * Rowround - прилага quarter round на всеки ред
+     * HSalsa20 - извежда 256-битов подключ от ключ и 128-битов вход
+     * 
+     * Използва същото начално състояние и същите 20 рунда като Salsa20,
+     * но 128-битовият вход заема думите на nonce-а и counter-а (6..9).
+     * Няма добавяне на началното състояние - резултатът са думите на
+     * диагонала (0, 5, 10, 15) и на входа (6, 7, 8, 9).
+     * 
+     * Спецификация: "Extending the Salsa20 nonce" (D. J. Bernstein, 2008)
+     * 
+     * @param key    8 думи на ключа
+     * @param n0     думи 0..3 на 128-битовия вход (първите 16 байта от XSalsa20 nonce)
+     * @param subkey изходен масив от 8 думи за подключа
      */
-    private void rowRound(int[] state) {
-        quarterRound(state, 0, 1, 2, 3);
-        quarterRound(state, 5, 6, 7, 4);
-        quarterRound(state, 10, 11, 8, 9);
-        quarterRound(state, 15, 12, 13, 14);
+    static void hSalsa20(int[] key, int n0, int n1, int n2, int n3, int[] subkey) {
+        int x0 = CONSTANTS[0], x1 = key[0], x2 = key[1], x3 = key[2];
+        int x4 = key[3], x5 = CONSTANTS[1], x6 = n0, x7 = n1;
+        int x8 = n2, x9 = n3, x10 = CONSTANTS[2], x11 = key[4];
+        int x12 = key[5], x13 = key[6], x14 = key[7], x15 = CONSTANTS[3];
+
+        // 20 рунда = 10 double rounds
+        for (int i = 0; i < 10; i++) {
+            // Columnround
+            x4 ^= Integer.rotateLeft(x0 + x12, 7);
+            x8 ^= Integer.rotateLeft(x4 + x0, 9);
+            x12 ^= Integer.rotateLeft(x8 + x4, 13);
+            x0 ^= Integer.rotateLeft(x12 + x8, 18);
+            x9 ^= Integer.rotateLeft(x5 + x1, 7);
+            x13 ^= Integer.rotateLeft(x9 + x5, 9);
+            x1 ^= Integer.rotateLeft(x13 + x9, 13);
+            x5 ^= Integer.rotateLeft(x1 + x13, 18);
+            x14 ^= Integer.rotateLeft(x10 + x6, 7);
+            x2 ^= Integer.rotateLeft(x14 + x10, 9);
+            x6 ^= Integer.rotateLeft(x2 + x14, 13);
+            x10 ^= Integer.rotateLeft(x6 + x2, 18);
+            x3 ^= Integer.rotateLeft(x15 + x11, 7);
+            x7 ^= Integer.rotateLeft(x3 + x15, 9);
+            x11 ^= Integer.rotateLeft(x7 + x3, 13);
+            x15 ^= Integer.rotateLeft(x11 + x7, 18);
+
+            // Rowround
+            x1 ^= Integer.rotateLeft(x0 + x3, 7);
+            x2 ^= Integer.rotateLeft(x1 + x0, 9);
+            x3 ^= Integer.rotateLeft(x2 + x1, 13);
+            x0 ^= Integer.rotateLeft(x3 + x2, 18);
+            x6 ^= Integer.rotateLeft(x5 + x4, 7);
+            x7 ^= Integer.rotateLeft(x6 + x5, 9);
+            x4 ^= Integer.rotateLeft(x7 + x6, 13);
+            x5 ^= Integer.rotateLeft(x4 + x7, 18);
+            x11 ^= Integer.rotateLeft(x10 + x9, 7);
+            x8 ^= Integer.rotateLeft(x11 + x10, 9);
+            x9 ^= Integer.rotateLeft(x8 + x11, 13);
+            x10 ^= Integer.rotateLeft(x9 + x8, 18);
+            x12 ^= Integer.rotateLeft(x15 + x14, 7);
+            x13 ^= Integer.rotateLeft(x12 + x15, 9);
+            x14 ^= Integer.rotateLeft(x13 + x12, 13);
+            x15 ^= Integer.rotateLeft(x14 + x13, 18);
+        }
+
+        subkey[0] = x0;
+        subkey[1] = x5;
+        subkey[2] = x10;
+        subkey[3] = x15;
+        subkey[4] = x6;
+        subkey[5] = x7;
+        subkey[6] = x8;
+        subkey[7] = x9;
     }
 
     /**
-     * Columnround - прилага quarter round на всяка колона
+     * XOR-ва две 32-битови keystream думи с 8 входни байта наведнъж
+     * 
+     * Думите се комбинират в един little-endian long (lo са байтове 0..3,
+     * hi - 4..7) и се четат/пишат през LONG_LE: едно 8-байтово четене и
+     * едно записване вместо 8 отделни байтови операции.
      */
-    private void columnRound(int[] state) {
-        quarterRound(state, 0, 4, 8, 12);
-        quarterRound(state, 5, 9, 13, 1);
-        quarterRound(state, 10, 14, 2, 6);
-        quarterRound(state, 15, 3, 7, 11);
+    static void xorLong(int lo, int hi, byte[] in, int inOff, byte[] out, int outOff) {
+        long word = (lo & 0xFFFFFFFFL) | ((long) hi << 32);
+        LONG_LE.set(out, outOff, (long) LONG_LE.get(in, inOff) ^ word);
     }
 
     /**
-     * Doubleround - комбинация от columnround и rowround
+     * XOR-ва 8 байта с keystream буфера от keystreamPos и го премества напред
      */
-    private void doubleRound(int[] state) {
-        columnRound(state);
-        rowRound(state);
+    private void xorKeystream8(byte[] in, int inOff, byte[] out, int outOff) {
+        LONG_LE.set(out, outOff, (long) LONG_LE.get(in, inOff) ^ (long) LONG_LE.get(keystream, keystreamPos));
+        keystreamPos += 8;
     }
 
     /**
-     * Създава началното състояние на Salsa20
+     * Криптира/декриптира данни
      * 
-     * Структура (4x4 матрица от 32-битови думи):
+     * @param data данните за обработка
+     * @return криптирани/декриптирани данни
+     */
+    public byte[] crypt(byte[] data) {
+        byte[] result = new byte[data.length];
+        crypt(data, 0, data.length, result, 0);
+        return result;
+    }
+
+    /**
+     * Криптира/декриптира len байта от in в предоставен от извикващия буфер
      * 
-     * cccccccc kkkkkkkk kkkkkkkk kkkkkkkk
-     * kkkkkkkk cccccccc nnnnnnnn nnnnnnnn
-     * bbbbbbbb bbbbbbbb cccccccc kkkkkkkk
-     * kkkkkkkk kkkkkkkk kkkkkkkk cccccccc
+     * Не заделя памет. Неизползваният остатък от последния keystream блок
+     * се пази между извикванията, така че обработката на поток на парчета
+     * с произволен размер дава същия резултат като едно голямо извикване.
+     * Пълните 64-байтови блокове се XOR-ват директно в out.
+     * Поддържа работа на място (in == out и inOff == outOff).
      * 
-     * c = константи, k = ключ, n = nonce, b = block counter
+     * @param in     входни данни
+     * @param inOff  начална позиция във входа
+     * @param len    брой байтове за обработка
+     * @param out    изходен буфер
+     * @param outOff начална позиция в изхода
+     * @throws IllegalArgumentException при невалидни offset/дължина
      */
-    private int[] createInitialState() {
-        int[] state = new int[16];
+    public void crypt(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        checkBounds(in, inOff, len, out, outOff);
+        int offset = 0;
+
+        // Остатък от keystream блока от предишното извикване (по 8 байта, после по 1)
+        while (64 - keystreamPos >= 8 && len - offset >= 8) {
+            xorKeystream8(in, inOff + offset, out, outOff + offset);
+            offset += 8;
+        }
+        while (keystreamPos < 64 && offset < len) {
+            out[outOff + offset] = (byte) (in[inOff + offset] ^ keystream[keystreamPos++]);
+            offset++;
+        }
 
-        // Структура на Salsa20
-        state[0] = CONSTANTS[0];
-        state[1] = key[0];
-        state[2] = key[1];
-        state[3] = key[2];
-        state[4] = key[3];
-        state[5] = CONSTANTS[1];
-        state[6] = nonce[0];
-        state[7] = nonce[1];
-        state[8] = (int) counter; // Lower 32 bits
-        state[9] = (int) (counter >>> 32); // Upper 32 bits
-        state[10] = CONSTANTS[2];
-        state[11] = key[4];
-        state[12] = key[5];
-        state[13] = key[6];
-        state[14] = key[7];
-        state[15] = CONSTANTS[3];
+        // Пълни 64-байтови блокове
+        while (len - offset >= 64) {
+            salsa20Block(in, inOff + offset, out, outOff + offset);
+            offset += 64;
+            counter++; // Увеличаване на counter
+        }
 
-        return state;
+        // Непълен последен блок - неизползваната част остава за следващото извикване
+        if (offset < len) {
+            salsa20Block(ZERO_BLOCK, 0, keystream, 0);
+            counter++;
+            keystreamPos = 0;
+            while (len - offset >= 8) {
+                xorKeystream8(in, inOff + offset, out, outOff + offset);
+                offset += 8;
+            }
+            while (offset < len) {
+                out[outOff + offset] = (byte) (in[inOff + offset] ^ keystream[keystreamPos++]);
+                offset++;
+            }
+        }
     }
 
     /**
-     * Salsa20 блокова функция
-     * Генерира 64 байта keystream
+     * Криптира/декриптира src.remaining() байта от src в dst (NIO конвенции)
+     * 
+     * Чете от src.position() до src.limit() и пише от dst.position(); след
+     * извикването двете позиции са преместени с броя обработени байтове,
+     * а limit-ите не се променят. При src == dst работи на място.
+     * 
+     * Буфери с достъпен масив (heap) минават през crypt(byte[], ...), а
+     * останалите (direct, read-only) се четат и пишат директно като
+     * little-endian long-ове, без копиране в heap масив.
      * 
-     * Извършва 20 рунда (10 double rounds)
+     * @param src входен буфер
+     * @param dst изходен буфер
+     * @return брой обработени байтове
+     * @throws BufferOverflowException ако в dst няма място за src.remaining() байта
+     * @throws ReadOnlyBufferException ако dst е само за четене
      */
-    private byte[] salsa20Block() {
-        int[] workingState = createInitialState();
-        int[] initialState = workingState.clone();
+    public int crypt(ByteBuffer src, ByteBuffer dst) {
+        if (dst.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+        int len = src.remaining();
+        if (dst.remaining() < len) {
+            throw new BufferOverflowException();
+        }
 
-        // 20 рунда = 10 double rounds
-        for (int i = 0; i < 10; i++) {
-            doubleRound(workingState);
+        int inPos = src.position();
+        int outPos = dst.position();
+
+        if (src.hasArray() && dst.hasArray()) {
+            crypt(src.array(), src.arrayOffset() + inPos, len, dst.array(), dst.arrayOffset() + outPos);
+        } else {
+            cryptBuffer(src, inPos, len, dst, outPos);
+        }
+
+        src.position(inPos + len);
+        dst.position(outPos + len);
+        return len;
+    }
+
+    /**
+     * Директен път на crypt(ByteBuffer, ByteBuffer) - абсолютен достъп без промяна на позициите
+     * 
+     * Всеки блок keystream се генерира в keystream буфера (64 байта) и се
+     * XOR-ва с данните по 8 байта наведнъж.
+     */
+    private void cryptBuffer(ByteBuffer src, int inPos, int len, ByteBuffer dst, int outPos) {
+        int offset = 0;
+
+        // Остатък от keystream блока от предишното извикване
+        while (keystreamPos < 64 && offset < len) {
+            dst.put(outPos + offset, (byte) (src.get(inPos + offset) ^ keystream[keystreamPos++]));
+            offset++;
         }
 
-        // Добавяне на началното състояние
-        for (int i = 0; i < 16; i++) {
-            workingState[i] += initialState[i];
+        // Пълни 64-байтови блокове
+        while (len - offset >= 64) {
+            salsa20Block(ZERO_BLOCK, 0, keystream, 0);
+            counter++;
+            for (int k = 0; k < 64; k += 8) {
+                BUFFER_LONG_LE.set(dst, outPos + offset + k,
+                        (long) BUFFER_LONG_LE.get(src, inPos + offset + k) ^ (long) LONG_LE.get(keystream, k));
+            }
+            offset += 64;
         }
 
-        // Конвертиране в байтове
-        byte[] keystream = new byte[64];
-        for (int i = 0; i < 16; i++) {
-            intToBytes(workingState[i], keystream, i * 4);
+        // Непълен последен блок - неизползваната част остава за следващото извикване
+        if (offset < len) {
+            salsa20Block(ZERO_BLOCK, 0, keystream, 0);
+            counter++;
+            keystreamPos = 0;
+            while (offset < len) {
+                dst.put(outPos + offset, (byte) (src.get(inPos + offset) ^ keystream[keystreamPos++]));
+                offset++;
+            }
         }
+    }
 
-        return keystream;
+    /**
+     * Криптира/декриптира целия MemorySegment на място
+     * 
+     * @param segment off-heap памет или файл, изобразен в паметта (mapped)
+     * @throws IllegalArgumentException ако сегментът е само за четене
+     */
+    public void crypt(MemorySegment segment) {
+        crypt(segment, 0, segment.byteSize());
     }
 
     /**
-     * Криптира/декриптира данни
+     * Криптира/декриптира length байта от MemorySegment на място, от offset
+     * 
+     * Данните се четат и пишат директно като little-endian 32-битови думи
+     * (JAVA_INT_UNALIGNED), без копиране в heap. Offset-ът и дължината са
+     * long, така че сегментът може да е по-голям от 2 GB (ограничението на
+     * byte[] и ByteBuffer) - напр. целият файл, изобразен с FileChannel.map.
+     * Counter-ът е 64-битов, така че размерът на сегмента не е ограничен
+     * практически (напр. файлове от стотици GB в едно преминаване).
+     * 
+     * @param segment сегмент за обработка
+     * @param offset  начална позиция в сегмента
+     * @param length  брой байтове за обработка
+     * @throws IllegalArgumentException ако сегментът е само за четене
+     * @throws IndexOutOfBoundsException при offset/дължина извън сегмента
+     */
+    public void crypt(MemorySegment segment, long offset, long length) {
+        if (segment.isReadOnly()) {
+            throw new IllegalArgumentException("Сегментът е само за четене");
+        }
+        MemorySegment data = segment.asSlice(offset, length);
+        long position = 0;
+
+        // Остатък от keystream блока от предишното извикване
+        while (keystreamPos < 64 && position < length) {
+            data.set(ValueLayout.JAVA_BYTE, position,
+                    (byte) (data.get(ValueLayout.JAVA_BYTE, position) ^ keystream[keystreamPos++]));
+            position++;
+        }
+
+        // Пълни 64-байтови блокове - по 16 думи
+        while (length - position >= 64) {
+            salsa20Block(ZERO_BLOCK, 0, keystream, 0);
+            counter++;
+            for (int k = 0; k < 64; k += 4) {
+                data.set(SEGMENT_INT_LE, position + k,
+                        data.get(SEGMENT_INT_LE, position + k) ^ (int) INT_LE.get(keystream, k));
+            }
+            position += 64;
+        }
+
+        // Непълен последен блок - неизползваната част остава за следващото извикване
+        if (position < length) {
+            salsa20Block(ZERO_BLOCK, 0, keystream, 0);
+            counter++;
+            keystreamPos = 0;
+            while (position < length) {
+                data.set(ValueLayout.JAVA_BYTE, position,
+                        (byte) (data.get(ValueLayout.JAVA_BYTE, position) ^ keystream[keystreamPos++]));
+                position++;
+            }
+        }
+    }
+
+    /**
+     * Паралелно криптира/декриптира данни, използвайки всички нишки на pool
      * 
      * @param data данните за обработка
+     * @param pool ForkJoinPool за паралелната обработка
      * @return криптирани/декриптирани данни
      */
-    public byte[] crypt(byte[] data) {
+    public byte[] crypt(byte[] data, ForkJoinPool pool) {
         byte[] result = new byte[data.length];
+        crypt(data, 0, data.length, result, 0, pool);
+        return result;
+    }
+
+    /**
+     * Паралелно криптира/декриптира len байта от in в предоставен буфер
+     * 
+     * Блоковете са независими при известен counter, така че пълните блокове
+     * се разделят на сегменти, подравнени на 64 байта, и всеки сегмент се
+     * обработва от отделно копие на шифъра със съответния начален counter.
+     * Резултатът е байт по байт идентичен с последователния crypt, а
+     * остатъкът от keystream след последния непълен блок се пази в този
+     * обект както обикновено.
+     * 
+     * Данни под 2 × PARALLEL_MIN_SEGMENT се обработват последователно.
+     * 
+     * @param in     входни данни
+     * @param inOff  начална позиция във входа
+     * @param len    брой байтове за обработка
+     * @param out    изходен буфер
+     * @param outOff начална позиция в изхода
+     * @param pool   ForkJoinPool за паралелната обработка
+     * @throws IllegalArgumentException при невалидни offset/дължина
+     */
+    public void crypt(byte[] in, int inOff, int len, byte[] out, int outOff, ForkJoinPool pool) {
+        checkBounds(in, inOff, len, out, outOff);
         int offset = 0;
 
-        while (offset < data.length) {
-            // Генериране на 64-байтов keystream блок
-            byte[] keystream = salsa20Block();
+        // Остатък от keystream блока от предишното извикване
+        if (keystreamPos < 64) {
+            offset = Math.min(len, 64 - keystreamPos);
+            crypt(in, inOff, offset, out, outOff);
+        }
+
+        int blocks = (len - offset) / 64;
+        int segments = Math.min(pool.getParallelism(), blocks * 64 / PARALLEL_MIN_SEGMENT);
+
+        if (segments > 1) {
+            // Равни сегменти от пълни блокове; първите blocks % segments получават по един блок повече
+            ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[segments];
+            int segmentStart = offset;
+            long segmentCounter = counter;
+
+            for (int s = 0; s < segments; s++) {
+                int segmentBlocks = blocks / segments + (s < blocks % segments ? 1 : 0);
+                int start = segmentStart;
+                int length = segmentBlocks * 64;
+                Salsa20 worker = copyAt(segmentCounter);
 
-            // XOR на данните с keystream
-            int blockSize = Math.min(64, data.length - offset);
-            for (int i = 0; i < blockSize; i++) {
-                result[offset + i] = (byte) (data[offset + i] ^ keystream[i]);
+                tasks[s] = pool.submit(() -> worker.crypt(in, inOff + start, length, out, outOff + start));
+
+                segmentStart += length;
+                segmentCounter += segmentBlocks;
             }
 
-            offset += blockSize;
-            counter++; // Увеличаване на counter
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+
+            offset = segmentStart;
+            counter = segmentCounter;
         }
 
-        return result;
+        // Остатък (и всичко при малки данни) - последователно
+        if (offset < len) {
+            crypt(in, inOff + offset, len - offset, out, outOff + offset);
+        }
+    }
+
+    /**
+     * Проверява дали [off, off + len) е валиден диапазон за входа и изхода
+     */
+    static void checkBounds(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        if (len < 0 || inOff < 0 || outOff < 0
+                || inOff > in.length - len || outOff > out.length - len) {
+            throw new IllegalArgumentException("Невалиден offset или дължина на буфера");
+        }
     }
 
     /**
@@ -245,6 +681,94 @@ public class Salsa20 {
      */
     public void resetCounter() {
         this.counter = 0;
+        this.keystreamPos = 64;
+    }
+
+    /**
+     * Започва ново съобщение със същия ключ и нов nonce, без заделяне на памет
+     * 
+     * Думите на nonce-а се презаписват на място (2 записа), ключът остава.
+     * Подходящо за много кратки съобщения под един ключ - вместо нов обект
+     * за всяко съобщение.
+     * 
+     * @param nonce   8-байтов (64-битов) nonce
+     * @param counter начален counter (позиция 0 при seek)
+     * @throws IllegalArgumentException при невалиден размер на nonce
+     */
+    public void reinit(byte[] nonce, long counter) {
+        if (nonce.length != 8) {
+            throw new IllegalArgumentException("Nonce трябва да е точно 8 байта (64 бита)");
+        }
+
+        reinit(bytesToInt(nonce, 0), bytesToInt(nonce, 4), counter);
+    }
+
+    /**
+     * Сменя ключа и nonce-а на място, без заделяне на памет (counter = 0)
+     * 
+     * Думите на ключа и nonce-а се презаписват в съществуващите масиви;
+     * броят рундове се запазва. Резултатът е като от нов
+     * Salsa20(key, nonce, 0, getRounds()).
+     * 
+     * @param key   32-байтов (256-битов) ключ
+     * @param nonce 8-байтов (64-битов) nonce
+     * @throws IllegalArgumentException при невалидни размери
+     */
+    public void rekey(byte[] key, byte[] nonce) {
+        if (key.length != 32) {
+            throw new IllegalArgumentException("Ключът трябва да е точно 32 байта (256 бита)");
+        }
+
+        reinit(nonce, 0);
+        for (int i = 0; i < 8; i++) {
+            this.key[i] = bytesToInt(key, i * 4);
+        }
+    }
+
+    /**
+     * Ново съобщение със същия ключ: сменя nonce-а и counter-а на място
+     * 
+     * Не заделя памет - използва се от XSalsa20Poly1305 за всяко съобщение.
+     * 
+     * @param n0      първа дума на 64-битовия nonce
+     * @param n1      втора дума на 64-битовия nonce
+     * @param counter начален counter
+     */
+    void reinit(int n0, int n1, long counter) {
+        this.nonce[0] = n0;
+        this.nonce[1] = n1;
+        this.counter = counter;
+        this.initialCounter = counter;
+        this.keystreamPos = 64;
+    }
+
+    /**
+     * Премества keystream-а директно на произволна байтова позиция
+     * 
+     * Counter mode позволява всеки блок да се изчисли независимо, така че
+     * seek е O(1): изчислява се само блокът, в който попада позицията
+     * (ако тя не е в началото на блок).
+     * Позицията е относителна спрямо началния counter от конструктора,
+     * т.е. seek(0) връща в началото на съобщението.
+     * 
+     * @param byteOffset позиция в keystream-а (в байтове)
+     * @throws IllegalArgumentException при невалидна позиция
+     */
+    public void seek(long byteOffset) {
+        if (byteOffset < 0) {
+            throw new IllegalArgumentException("Позицията не може да е отрицателна");
+        }
+
+        counter = initialCounter + (byteOffset >>> 6);
+        keystreamPos = 64;
+
+        // Позиция в средата на блок - генерира се блокът и се пропускат байтовете преди нея
+        int blockOffset = (int) (byteOffset & 63);
+        if (blockOffset != 0) {
+            salsa20Block(ZERO_BLOCK, 0, keystream, 0);
+            counter++;
+            keystreamPos = blockOffset;
+        }
     }
 
     /**
@@ -323,9 +847,10 @@ public class Salsa20 {
         System.out.println("Варианти на Salsa20:");
         System.out.println("═══════════════════════════════════════════════════════════\n");
 
-        System.out.println("   • Salsa20/20 - пълна версия с 20 рунда (тази имплементация)");
+        System.out.println("   • Salsa20/20 - пълна версия с 20 рунда (по подразбиране)");
         System.out.println("   • Salsa20/12 - 12 рунда (по-бърз, все още сигурен)");
         System.out.println("   • Salsa20/8  - 8 рунда (много бърз, по-малко сигурен)");
+        System.out.println("   Избира се с конструктора Salsa20(key, nonce, counter, rounds)");
         System.out.println();
 
         // Производителност тест
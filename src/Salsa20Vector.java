@@ -0,0 +1,250 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+import static jdk.incubator.vector.VectorOperators.ROL;
+import static jdk.incubator.vector.VectorOperators.XOR;
+
+/**
+ * Salsa20 - SIMD имплементация с диагонално разположение на състоянието
+ * (Java Vector API)
+ * 
+ * 4x4 матрицата на всеки блок се пази в 4 вектора по диагонали:
+ * 
+ * a = (x0,  x5,  x10, x15)
+ * b = (x12, x1,  x6,  x11)
+ * c = (x8,  x13, x2,  x7)
+ * d = (x4,  x9,  x14, x3)
+ * 
+ * При това разположение columnround е 4 независими quarter round-а между
+ * lanes на a, b, c, d, а rowround става същото след завъртане на lanes
+ * на b, c и d с 1, 2 и 3 позиции. Всяка група от 4 lanes е отделен блок,
+ * така че 256-битов вектор обработва 2 блока, а 512-битов - 4 блока
+ * на итерация.
+ * 
+ * Изходът е побитово идентичен с Salsa20 - класът го наследява и използва
+ * скаларната имплементация за остатъци, по-къси от един пакет блокове.
+ * 
+ * Изисква модула jdk.incubator.vector:
+ * javac --add-modules jdk.incubator.vector *.java
+ * java --add-modules jdk.incubator.vector StreamCipherBenchmark
+ * 
+ * @author Курсова работа по АSК
+ * @version 1.0
+ */
+public class Salsa20Vector extends Salsa20 {
+
+    // Предпочитаната ширина на вектора (поне 4 lanes за един блок)
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED.length() >= 4
+            ? IntVector.SPECIES_PREFERRED
+            : IntVector.SPECIES_128;
+
+    private static final int LANES = SPECIES.length();
+
+    // Брой блокове, обработвани паралелно (по 4 lanes на блок)
+    private static final int BLOCKS = LANES / 4;
+
+    // Байтове, обработвани от една векторна итерация
+    private static final int BATCH_SIZE = BLOCKS * 64;
+
+    // Завъртане на lanes във всяка група от 4 с 1, 2 и 3 позиции наляво
+    private static final VectorShuffle<Integer> ROTATE_1 = rotateShuffle(1);
+    private static final VectorShuffle<Integer> ROTATE_2 = rotateShuffle(2);
+    private static final VectorShuffle<Integer> ROTATE_3 = rotateShuffle(3);
+
+    // Диагонални вектори на състоянието (преизползват се, без алокации)
+    private final int[] a = new int[LANES];
+    private final int[] b = new int[LANES];
+    private final int[] c = new int[LANES];
+    private final int[] d = new int[LANES];
+
+    /**
+     * Конструктор на Salsa20Vector
+     * 
+     * @param key     32-байтов (256-битов) ключ
+     * @param nonce   8-байтов (64-битов) nonce
+     * @param counter начален counter (обикновено 0)
+     * @throws IllegalArgumentException при невалидни размери
+     */
+    public Salsa20Vector(byte[] key, byte[] nonce, long counter) {
+        super(key, nonce, counter);
+    }
+
+    /**
+     * Конструктор с избран брой рундове (Salsa20/8, Salsa20/12 или Salsa20/20)
+     * 
+     * @param rounds брой рундове: 8, 12 или 20
+     * @throws IllegalArgumentException при невалидни размери или брой рундове
+     */
+    public Salsa20Vector(byte[] key, byte[] nonce, long counter, int rounds) {
+        super(key, nonce, counter, rounds);
+    }
+
+    /**
+     * Конструктор с counter = 0
+     */
+    public Salsa20Vector(byte[] key, byte[] nonce) {
+        this(key, nonce, 0);
+    }
+
+    /**
+     * Конструктор от вече конвертирани 32-битови думи на ключа и nonce-а
+     * Използва се от XSalsa20Poly1305 с подключа, изведен чрез HSalsa20
+     */
+    Salsa20Vector(int[] key, int[] nonce, long counter) {
+        super(key, nonce, counter);
+    }
+
+    /**
+     * Копие със същия ключ и nonce, започващо от даден counter
+     */
+    private Salsa20Vector(Salsa20Vector other, long counter) {
+        super(other, counter);
+    }
+
+    /**
+     * Сегментите при паралелно криптиране също използват векторния път
+     */
+    @Override
+    Salsa20Vector copyAt(long counter) {
+        return new Salsa20Vector(this, counter);
+    }
+
+    /**
+     * Брой блокове, които се изчисляват паралелно на текущия процесор
+     */
+    public static int blocksPerIteration() {
+        return BLOCKS;
+    }
+
+    /**
+     * Shuffle, който завърта всяка група от 4 lanes с k позиции наляво
+     */
+    private static VectorShuffle<Integer> rotateShuffle(int k) {
+        return VectorShuffle.fromOp(SPECIES, i -> (i & ~3) | ((i + k) & 3));
+    }
+
+    /**
+     * Многоблокова Salsa20 функция
+     * Генерира BLOCKS × 64 байта keystream и ги XOR-ва с входните данни
+     */
+    private void salsa20Blocks(byte[] in, int inOff, byte[] out, int outOff) {
+        // Начално състояние в диагонално разположение, по 4 lanes на блок
+        for (int blk = 0; blk < BLOCKS; blk++) {
+            long blockCounter = counter + blk;
+            int lane = blk * 4;
+
+            a[lane] = CONSTANTS[0];
+            a[lane + 1] = CONSTANTS[1];
+            a[lane + 2] = CONSTANTS[2];
+            a[lane + 3] = CONSTANTS[3];
+
+            b[lane] = key[5];
+            b[lane + 1] = key[0];
+            b[lane + 2] = nonce[0];
+            b[lane + 3] = key[4];
+
+            c[lane] = (int) blockCounter;
+            c[lane + 1] = key[6];
+            c[lane + 2] = key[1];
+            c[lane + 3] = nonce[1];
+
+            d[lane] = key[3];
+            d[lane + 1] = (int) (blockCounter >>> 32);
+            d[lane + 2] = key[7];
+            d[lane + 3] = key[2];
+        }
+
+        final IntVector ja = IntVector.fromArray(SPECIES, a, 0);
+        final IntVector jb = IntVector.fromArray(SPECIES, b, 0);
+        final IntVector jc = IntVector.fromArray(SPECIES, c, 0);
+        final IntVector jd = IntVector.fromArray(SPECIES, d, 0);
+
+        IntVector xa = ja, xb = jb, xc = jc, xd = jd;
+
+        // 20, 12 или 8 рунда = 10, 6 или 4 double rounds
+        final int doubleRounds = rounds >> 1;
+        for (int i = 0; i < doubleRounds; i++) {
+            // Columnround: (x0, x4, x8, x12), (x5, x9, x13, x1), ...
+            xd = xd.lanewise(XOR, xa.add(xb).lanewise(ROL, 7));
+            xc = xc.lanewise(XOR, xd.add(xa).lanewise(ROL, 9));
+            xb = xb.lanewise(XOR, xc.add(xd).lanewise(ROL, 13));
+            xa = xa.lanewise(XOR, xb.add(xc).lanewise(ROL, 18));
+
+            // Rowround: (x0, x1, x2, x3), (x5, x6, x7, x4), ...
+            xb = xb.rearrange(ROTATE_1);
+            xc = xc.rearrange(ROTATE_2);
+            xd = xd.rearrange(ROTATE_3);
+
+            xb = xb.lanewise(XOR, xa.add(xd).lanewise(ROL, 7));
+            xc = xc.lanewise(XOR, xb.add(xa).lanewise(ROL, 9));
+            xd = xd.lanewise(XOR, xc.add(xb).lanewise(ROL, 13));
+            xa = xa.lanewise(XOR, xd.add(xc).lanewise(ROL, 18));
+
+            // Връщане към диагоналното разположение
+            xb = xb.rearrange(ROTATE_3);
+            xc = xc.rearrange(ROTATE_2);
+            xd = xd.rearrange(ROTATE_1);
+        }
+
+        // Добавяне на началното състояние
+        xa.add(ja).intoArray(a, 0);
+        xb.add(jb).intoArray(b, 0);
+        xc.add(jc).intoArray(c, 0);
+        xd.add(jd).intoArray(d, 0);
+
+        // XOR с данните, като думите се връщат в стандартния ред
+        for (int blk = 0; blk < BLOCKS; blk++) {
+            int lane = blk * 4;
+            int blockIn = inOff + blk * 64;
+            int blockOut = outOff + blk * 64;
+
+            xorLong(a[lane], b[lane + 1], in, blockIn, out, blockOut);
+            xorLong(c[lane + 2], d[lane + 3], in, blockIn + 8, out, blockOut + 8);
+            xorLong(d[lane], a[lane + 1], in, blockIn + 16, out, blockOut + 16);
+            xorLong(b[lane + 2], c[lane + 3], in, blockIn + 24, out, blockOut + 24);
+            xorLong(c[lane], d[lane + 1], in, blockIn + 32, out, blockOut + 32);
+            xorLong(a[lane + 2], b[lane + 3], in, blockIn + 40, out, blockOut + 40);
+            xorLong(b[lane], c[lane + 1], in, blockIn + 48, out, blockOut + 48);
+            xorLong(d[lane + 2], a[lane + 3], in, blockIn + 56, out, blockOut + 56);
+        }
+    }
+
+    /**
+     * Криптира/декриптира len байта от in в предоставен от извикващия буфер
+     * 
+     * Пакетите от BLOCKS пълни блока минават през векторния път, а остатъкът
+     * от keystream на предишно извикване и краят на данните - през
+     * скаларната имплементация на Salsa20.
+     * 
+     * @param in     входни данни
+     * @param inOff  начална позиция във входа
+     * @param len    брой байтове за обработка
+     * @param out    изходен буфер
+     * @param outOff начална позиция в изхода
+     * @throws IllegalArgumentException при невалидни offset/дължина
+     */
+    @Override
+    public void crypt(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        checkBounds(in, inOff, len, out, outOff);
+        int offset = 0;
+
+        // Остатък от keystream блока от предишното извикване (скаларно)
+        if (keystreamPos < 64) {
+            offset = Math.min(len, 64 - keystreamPos);
+            super.crypt(in, inOff, offset, out, outOff);
+        }
+
+        // Пакети от BLOCKS блока (векторно)
+        while (len - offset >= BATCH_SIZE) {
+            salsa20Blocks(in, inOff + offset, out, outOff + offset);
+            offset += BATCH_SIZE;
+            counter += BLOCKS;
+        }
+
+        // Остатък (скаларно)
+        if (offset < len) {
+            super.crypt(in, inOff + offset, len - offset, out, outOff + offset);
+        }
+    }
+}
@@ -10,6 +10,7 @@ import java.security.SecureRandom;
  * 3. Correlation Analysis - корелация между plaintext и ciphertext
  * 4. Key Sensitivity - различни ключове дават различни outputs
  * 5. Nonce Reuse Detection - опасности от повторно използване
+ * 6. RC4-drop[n] - bias на началния keystream и цена на пропускането
  */
 public class SecurityAnalysis {
 
@@ -76,24 +77,8 @@ public class SecurityAnalysis {
      */
     public static double avalancheEffect(String algorithm, byte[] key1, byte[] key2, byte[] nonce,
             byte[] plaintext) {
-        byte[] cipher1, cipher2;
-
-        if (algorithm.equals("RC4")) {
-            RC4 rc4_1 = new RC4(key1);
-            RC4 rc4_2 = new RC4(key2);
-            cipher1 = rc4_1.encrypt(new String(plaintext));
-            cipher2 = rc4_2.encrypt(new String(plaintext));
-        } else if (algorithm.equals("ChaCha20")) {
-            ChaCha20 chacha1 = new ChaCha20(key1, nonce);
-            ChaCha20 chacha2 = new ChaCha20(key2, nonce);
-            cipher1 = chacha1.encrypt(new String(plaintext));
-            cipher2 = chacha2.encrypt(new String(plaintext));
-        } else { // Salsa20
-            Salsa20 salsa1 = new Salsa20(key1, nonce);
-            Salsa20 salsa2 = new Salsa20(key2, nonce);
-            cipher1 = salsa1.encrypt(new String(plaintext));
-            cipher2 = salsa2.encrypt(new String(plaintext));
-        }
+        byte[] cipher1 = newCipher(algorithm, key1, nonce).crypt(plaintext);
+        byte[] cipher2 = newCipher(algorithm, key2, nonce).crypt(plaintext);
 
         // Брой различни битове
         int differentBits = 0;
@@ -147,24 +132,8 @@ public class SecurityAnalysis {
      */
     public static double keySensitivity(String algorithm, byte[] key1, byte[] key2,
             byte[] nonce, byte[] plaintext) {
-        byte[] cipher1, cipher2;
-
-        if (algorithm.equals("RC4")) {
-            RC4 rc4_1 = new RC4(key1);
-            RC4 rc4_2 = new RC4(key2);
-            cipher1 = rc4_1.encrypt(new String(plaintext));
-            cipher2 = rc4_2.encrypt(new String(plaintext));
-        } else if (algorithm.equals("ChaCha20")) {
-            ChaCha20 chacha1 = new ChaCha20(key1, nonce);
-            ChaCha20 chacha2 = new ChaCha20(key2, nonce);
-            cipher1 = chacha1.encrypt(new String(plaintext));
-            cipher2 = chacha2.encrypt(new String(plaintext));
-        } else { // Salsa20
-            Salsa20 salsa1 = new Salsa20(key1, nonce);
-            Salsa20 salsa2 = new Salsa20(key2, nonce);
-            cipher1 = salsa1.encrypt(new String(plaintext));
-            cipher2 = salsa2.encrypt(new String(plaintext));
-        }
+        byte[] cipher1 = newCipher(algorithm, key1, nonce).crypt(plaintext);
+        byte[] cipher2 = newCipher(algorithm, key2, nonce).crypt(plaintext);
 
         int differentBits = 0;
         int totalBits = cipher1.length * 8;
@@ -189,24 +158,13 @@ public class SecurityAnalysis {
         byte[] key = new byte[32]; // 32 bytes
         for (int i = 0; i < 32; i++)
             key[i] = (byte) i;
-        byte[] nonce = algorithm.equals("Salsa20") ? new byte[8] : new byte[12]; // Еднакъв nonce!
+        byte[] nonce = new byte[StreamCipherRegistry.nonceLength(algorithm)]; // Еднакъв nonce!
 
         String message1 = "Attack at dawn";
         String message2 = "Attack at dusk";
 
-        byte[] cipher1, cipher2;
-
-        if (algorithm.equals("ChaCha20")) {
-            ChaCha20 chacha1 = new ChaCha20(key, nonce);
-            ChaCha20 chacha2 = new ChaCha20(key, nonce);
-            cipher1 = chacha1.encrypt(message1);
-            cipher2 = chacha2.encrypt(message2);
-        } else { // Salsa20
-            Salsa20 salsa1 = new Salsa20(key, nonce);
-            Salsa20 salsa2 = new Salsa20(key, nonce);
-            cipher1 = salsa1.encrypt(message1);
-            cipher2 = salsa2.encrypt(message2);
-        }
+        byte[] cipher1 = newCipher(algorithm, key, nonce).crypt(message1.getBytes());
+        byte[] cipher2 = newCipher(algorithm, key, nonce).crypt(message2.getBytes());
 
         System.out.println("\n❌ ОПАСНОСТ: Nonce Reuse Attack");
         System.out.println("═══════════════════════════════════════");
@@ -237,6 +195,72 @@ public class SecurityAnalysis {
         System.out.println("⚠️  Атакуващ може да извлече информация за plaintexts!");
     }
 
+    // ═══════════════════════════════════════════════════════════
+    // 6. RC4-DROP[n] АНАЛИЗ
+    // ═══════════════════════════════════════════════════════════
+
+    /**
+     * Bias на втория байт на RC4 (Mantin-Shamir): P[Z2 = 0] ≈ 2/256
+     * вместо 1/256. Връща съотношението P[Z2 = 0] / (1/256) за много
+     * произволни ключове - идеалната стойност е 1.0.
+     * 
+     * При RC4-drop[n] "вторият байт" е вторият байт след пропуснатите n.
+     */
+    public static double rc4SecondByteBias(int drop, int keyCount) {
+        SecureRandom random = new SecureRandom();
+        byte[] key = new byte[16];
+        byte[] zeros = new byte[2];
+        byte[] output = new byte[2];
+        int zeroCount = 0;
+
+        for (int k = 0; k < keyCount; k++) {
+            random.nextBytes(key);
+            new RC4(key, drop).crypt(zeros, 0, 2, output, 0);
+            if (output[1] == 0) {
+                zeroCount++;
+            }
+        }
+
+        return zeroCount * 256.0 / keyCount;
+    }
+
+    /**
+     * Chi-square на първите 16 байта от keystream-а, събрани от много ключове
+     * Силни отклонения в началото на RC4 keystream дават висок резултат.
+     */
+    public static double rc4InitialBytesChiSquare(int drop, int keyCount) {
+        SecureRandom random = new SecureRandom();
+        byte[] key = new byte[16];
+        byte[] zeros = new byte[16];
+        byte[] keystream = new byte[keyCount * 16];
+
+        for (int k = 0; k < keyCount; k++) {
+            random.nextBytes(key);
+            new RC4(key, drop).crypt(zeros, 0, 16, keystream, k * 16);
+        }
+
+        return chiSquareTest(keystream);
+    }
+
+    /**
+     * Средно време (в микросекунди) за създаване на RC4-drop[n] (KSA + пропускане)
+     */
+    public static double rc4SetupCostMicros(int drop, int iterations) {
+        byte[] key = new byte[16];
+        new SecureRandom().nextBytes(key);
+
+        // Warmup
+        for (int k = 0; k < iterations; k++) {
+            new RC4(key, drop);
+        }
+
+        long start = System.nanoTime();
+        for (int k = 0; k < iterations; k++) {
+            new RC4(key, drop);
+        }
+        return (System.nanoTime() - start) / 1000.0 / iterations;
+    }
+
     // ═══════════════════════════════════════════════════════════
     // ПОМОЩНИ ФУНКЦИИ
     // ═══════════════════════════════════════════════════════════
@@ -253,6 +277,23 @@ public class SecurityAnalysis {
         return sb.toString();
     }
 
+    /**
+     * Шифър от скаларния engine - резултатите не зависят от това кой engine
+     * е най-бърз на машината и не чакат измерването в StreamCipherRegistry
+     */
+    private static StreamCipher newCipher(String algorithm, byte[] key, byte[] nonce) {
+        return StreamCipherRegistry.newCipher(algorithm, "scalar", key, nonce);
+    }
+
+    /**
+     * Произволен nonce с дължината, която алгоритъмът изисква (празен за RC4)
+     */
+    private static byte[] randomNonce(String algorithm) {
+        byte[] nonce = new byte[StreamCipherRegistry.nonceLength(algorithm)];
+        new SecureRandom().nextBytes(nonce);
+        return nonce;
+    }
+
     private static byte[] flipOneBit(byte[] data, int position) {
         byte[] result = data.clone();
         int byteIndex = position / 8;
@@ -274,16 +315,13 @@ public class SecurityAnalysis {
 
         // Подготовка на тестови данни
         byte[] key = new byte[32];
-        byte[] nonce12 = new byte[12]; // За ChaCha20
-        byte[] nonce8 = new byte[8]; // За Salsa20
         new SecureRandom().nextBytes(key);
-        new SecureRandom().nextBytes(nonce12);
-        new SecureRandom().nextBytes(nonce8);
 
         byte[] plaintext = new byte[10000]; // 10 KB данни
         new SecureRandom().nextBytes(plaintext);
 
-        String[] algorithms = { "RC4", "ChaCha20", "Salsa20" };
+        // Включително вариантите с намален брой рундове
+        String[] algorithms = { "RC4", "ChaCha20", "ChaCha12", "ChaCha8", "Salsa20", "Salsa20/12", "Salsa20/8" };
 
         // ═══════════════════════════════════════════════════════════
         // ТЕСТ 1: RANDOMNESS (Chi-Square)
@@ -298,18 +336,7 @@ public class SecurityAnalysis {
         System.out.println();
 
         for (String algo : algorithms) {
-            byte[] ciphertext;
-
-            if (algo.equals("RC4")) {
-                RC4 rc4 = new RC4(key);
-                ciphertext = rc4.encrypt(new String(plaintext));
-            } else if (algo.equals("ChaCha20")) {
-                ChaCha20 chacha = new ChaCha20(key, nonce12);
-                ciphertext = chacha.encrypt(new String(plaintext));
-            } else {
-                Salsa20 salsa = new Salsa20(key, nonce8);
-                ciphertext = salsa.encrypt(new String(plaintext));
-            }
+            byte[] ciphertext = newCipher(algo, key, randomNonce(algo)).crypt(plaintext);
 
             double chiSquare = chiSquareTest(ciphertext);
             String evaluation = evaluateChiSquare(chiSquare);
@@ -336,7 +363,7 @@ public class SecurityAnalysis {
         byte[] modifiedKey = flipOneBit(key.clone(), 0); // Flip първия бит на ключа
 
         for (String algo : algorithms) {
-            byte[] nonceToUse = algo.equals("Salsa20") ? nonce8 : nonce12;
+            byte[] nonceToUse = randomNonce(algo);
             double avalanche = avalancheEffect(algo, key, modifiedKey, nonceToUse, testPlaintext);
             String evaluation = (avalanche >= 45 && avalanche <= 55) ? "✅ ОТЛИЧНО"
                     : (avalanche >= 40 && avalanche <= 60) ? "✅ ДОБРО" : "⚠️  СЛАБО";
@@ -360,18 +387,7 @@ public class SecurityAnalysis {
         System.out.println();
 
         for (String algo : algorithms) {
-            byte[] ciphertext;
-
-            if (algo.equals("RC4")) {
-                RC4 rc4 = new RC4(key);
-                ciphertext = rc4.encrypt(new String(testPlaintext));
-            } else if (algo.equals("ChaCha20")) {
-                ChaCha20 chacha = new ChaCha20(key, nonce12);
-                ciphertext = chacha.encrypt(new String(testPlaintext));
-            } else {
-                Salsa20 salsa = new Salsa20(key, nonce8);
-                ciphertext = salsa.encrypt(new String(testPlaintext));
-            }
+            byte[] ciphertext = newCipher(algo, key, randomNonce(algo)).crypt(testPlaintext);
 
             double correlation = correlationAnalysis(testPlaintext, ciphertext);
             String evaluation = (correlation < 0.1) ? "✅ ОТЛИЧНО" : (correlation < 0.2) ? "✅ ДОБРО" : "⚠️  СЛАБО";
@@ -397,7 +413,7 @@ public class SecurityAnalysis {
         byte[] key2 = flipOneBit(key, 0);
 
         for (String algo : algorithms) {
-            byte[] nonceToUse = algo.equals("Salsa20") ? nonce8 : nonce12;
+            byte[] nonceToUse = randomNonce(algo);
             double sensitivity = keySensitivity(algo, key, key2, nonceToUse, testPlaintext);
             String evaluation = (sensitivity >= 45 && sensitivity <= 55) ? "✅ ОТЛИЧНО"
                     : (sensitivity >= 40 && sensitivity <= 60) ? "✅ ДОБРО" : "⚠️  СЛАБО";
@@ -418,6 +434,33 @@ public class SecurityAnalysis {
 
         nonceReuseAttack("ChaCha20");
 
+        // ═══════════════════════════════════════════════════════════
+        // ТЕСТ 6: RC4-DROP[n]
+        // ═══════════════════════════════════════════════════════════
+
+        System.out.println();
+        System.out.println("╔════════════════════════════════════════════════════════════╗");
+        System.out.println("║   ТЕСТ 6: RC4-DROP[n] - BIAS И ЦЕНА НА ИНИЦИАЛИЗАЦИЯ       ║");
+        System.out.println("╚════════════════════════════════════════════════════════════╝");
+        System.out.println();
+        System.out.println("Пропускане на първите n байта от RC4 keystream");
+        System.out.println("Z2 bias: P[Z2 = 0] / (1/256) - идеално 1.00 (RC4 без drop ≈ 2.00)");
+        System.out.println("Chi-Square: първите 16 байта от 20 000 ключа");
+        System.out.println();
+        System.out.println("Drop  | Z2 bias | Chi-Square | Инициализация | Оценка");
+        System.out.println("-----------------------------------------------------------------");
+
+        int[] dropValues = { 0, 256, 512, 768, 1024, 2048, 3072, 4096 };
+        for (int drop : dropValues) {
+            double bias = rc4SecondByteBias(drop, 200_000);
+            double chi = rc4InitialBytesChiSquare(drop, 20_000);
+            double setup = rc4SetupCostMicros(drop, 20_000);
+            String evaluation = bias < 1.3 ? "✅ БЕЗ ВИДИМ BIAS" : "❌ BIAS";
+
+            System.out.printf("%-5d | %7.2f | %10.2f | %9.2f µs  | %s%n",
+                    drop, bias, chi, setup, evaluation);
+        }
+
         // ═══════════════════════════════════════════════════════════
         // ОБОБЩЕНИЕ
         // ═══════════════════════════════════════════════════════════
@@ -437,6 +480,8 @@ public class SecurityAnalysis {
         System.out.println("   • Малка промяна в ключа → голяма промяна в output");
         System.out.println("   • ChaCha20/Salsa20 постигат близо 50% (отличен avalanche effect)");
         System.out.println("   • RC4 също показва добра дифузия");
+        System.out.println("   • Вариантите с 12 и 8 рунда са статистически неразличими от 20 рунда -");
+        System.out.println("     тези тестове не измерват границата на сигурност (8 рунда е най-тясна)");
         System.out.println();
         System.out.println("3. КОРЕЛАЦИЯ:");
         System.out.println("   • Всички алгоритми имат ниска корелация (добро)");
@@ -451,6 +496,11 @@ public class SecurityAnalysis {
         System.out.println("   • Води до пълен компромис на сигурността");
         System.out.println("   • XOR на ciphertexts дава XOR на plaintexts");
         System.out.println();
+        System.out.println("6. RC4-DROP[n]:");
+        System.out.println("   • Пропускането на началния keystream премахва bias-а на Z2");
+        System.out.println("   • Цената е еднократна: n PRGA стъпки при инициализация");
+        System.out.println("   • За legacy RC4 използвайте поне RC4-drop[768], по-добре [3072]");
+        System.out.println();
         System.out.println("🎯 ПРЕПОРЪКИ:");
         System.out.println("   ✅ ChaCha20 - Най-сигурен, без известни уязвимости");
         System.out.println("   ✅ Salsa20  - Сигурен, доказана конструкция");
@@ -0,0 +1,107 @@
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Общ интерфейс (SPI) за поточните шифри
+ * 
+ * Всички поточни шифри генерират keystream и го XOR-ват с данните, така
+ * че криптирането и декриптирането са една и съща операция. Интерфейсът
+ * покрива общия жизнен цикъл:
+ * - init   - ключ и nonce за ново съобщение
+ * - crypt  - обработка на данни (на парчета с произволен размер)
+ * - seek   - преместване на произволна позиция в keystream-а
+ * - reset  - връщане в началото на съобщението (= seek(0))
+ * 
+ * Имплементациите се получават от StreamCipherRegistry, който избира
+ * най-бързия валиден engine за алгоритъма - извикващият код не зависи от
+ * конкретните класове (RC4, ChaCha20, ChaCha20Vector, ...).
+ * 
+ * Имплементациите НЕ са thread-safe - използвайте по една за всяка нишка.
+ * 
+ * @author Курсова работа по АSК
+ * @version 1.0
+ */
+public interface StreamCipher {
+
+    /**
+     * Име на алгоритъма (напр. "ChaCha20", "Salsa20/12", "RC4")
+     */
+    String getAlgorithm();
+
+    /**
+     * Дължина на nonce-а в байтове (0 за шифри без nonce, като RC4)
+     */
+    int getNonceLength();
+
+    /**
+     * Инициализира шифъра с ключ и nonce - keystream-ът започва от позиция 0
+     * 
+     * @param key   ключ
+     * @param nonce nonce с дължина getNonceLength() (null или празен при RC4)
+     * @throws IllegalArgumentException при невалидни размери
+     */
+    void init(byte[] key, byte[] nonce);
+
+    /**
+     * Криптира/декриптира len байта от in в out
+     * Поддържа работа на място (in == out и inOff == outOff).
+     * 
+     * @throws IllegalArgumentException при невалидни offset/дължина
+     * @throws IllegalStateException    ако init не е извикан
+     */
+    void crypt(byte[] in, int inOff, int len, byte[] out, int outOff);
+
+    /**
+     * Криптира/декриптира данни в нов масив
+     */
+    default byte[] crypt(byte[] data) {
+        byte[] result = new byte[data.length];
+        crypt(data, 0, data.length, result, 0);
+        return result;
+    }
+
+    /**
+     * Криптира/декриптира src.remaining() байта от src в dst (NIO конвенции)
+     * Позициите на двата буфера се преместват с броя обработени байтове.
+     * 
+     * По подразбиране данните се копират през heap масив; RC4, ChaCha20 и
+     * Salsa20 работят директно с буферите (вкл. direct).
+     * 
+     * @return брой обработени байтове
+     * @throws BufferOverflowException ако в dst няма място
+     */
+    default int crypt(ByteBuffer src, ByteBuffer dst) {
+        int len = src.remaining();
+        if (dst.remaining() < len) {
+            throw new BufferOverflowException();
+        }
+        byte[] data = new byte[len];
+        src.get(data);
+        crypt(data, 0, len, data, 0);
+        dst.put(data);
+        return len;
+    }
+
+    /**
+     * Паралелно криптиране, ако алгоритъмът го позволява
+     * По подразбиране (напр. RC4) обработката е последователна.
+     */
+    default void crypt(byte[] in, int inOff, int len, byte[] out, int outOff, ForkJoinPool pool) {
+        crypt(in, inOff, len, out, outOff);
+    }
+
+    /**
+     * Премества keystream-а на позиция byteOffset от началото на съобщението
+     * 
+     * @throws IllegalArgumentException при отрицателна позиция
+     */
+    void seek(long byteOffset);
+
+    /**
+     * Връща keystream-а в началото на съобщението
+     */
+    default void reset() {
+        seek(0);
+    }
+}
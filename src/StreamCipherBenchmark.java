@@ -187,61 +187,1434 @@ public class StreamCipherBenchmark {
         return result;
     }
 
+    /**
+     * Benchmark на ChaCha20 с Java Vector API (няколко блока паралелно)
+     */
+    private static BenchmarkResult benchmarkChaCha20Vector(int dataSize) {
+        byte[] data = new byte[dataSize];
+        new java.util.Random().nextBytes(data);
+
+        byte[] key = new byte[32];
+        byte[] nonce = new byte[12];
+        new java.security.SecureRandom().nextBytes(key);
+        new java.security.SecureRandom().nextBytes(nonce);
+
+        // Warmup
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            ChaCha20Vector cipher = new ChaCha20Vector(key, nonce, 0);
+            cipher.crypt(data);
+        }
+
+        // Actual test
+        double[] times = new double[TEST_ITERATIONS];
+        for (int i = 0; i < TEST_ITERATIONS; i++) {
+            ChaCha20Vector cipher = new ChaCha20Vector(key, nonce, 0);
+
+            long start = System.nanoTime();
+            cipher.crypt(data);
+            long end = System.nanoTime();
+
+            times[i] = (end - start) / 1_000_000.0;
+        }
+
+        // Calculate statistics
+        double avgTime = 0;
+        double minTime = Double.MAX_VALUE;
+        double maxTime = 0;
+
+        for (double t : times) {
+            avgTime += t;
+            minTime = Math.min(minTime, t);
+            maxTime = Math.max(maxTime, t);
+        }
+        avgTime /= TEST_ITERATIONS;
+
+        double stdDev = calculateStdDev(times, avgTime);
+        double throughput = (dataSize / (1024.0 * 1024.0)) / (avgTime / 1000.0);
+
+        BenchmarkResult result = new BenchmarkResult();
+        result.cipherName = "ChaCha20-V";
+        result.dataSize = dataSize;
+        result.avgTimeMs = avgTime;
+        result.throughputMBps = throughput;
+        result.minTime = minTime;
+        result.maxTime = maxTime;
+        result.stdDev = stdDev;
+
+        return result;
+    }
+
     /**
      * Benchmark на Salsa20
      */
-    private static BenchmarkResult benchmarkSalsa20(int dataSize) {
+    private static BenchmarkResult benchmarkSalsa20(int dataSize) {
+        byte[] data = new byte[dataSize];
+        new java.util.Random().nextBytes(data);
+
+        byte[] key = new byte[32];
+        byte[] nonce = new byte[8];
+        new java.security.SecureRandom().nextBytes(key);
+        new java.security.SecureRandom().nextBytes(nonce);
+
+        // Warmup
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            Salsa20 cipher = new Salsa20(key, nonce, 0);
+            cipher.crypt(data);
+        }
+
+        // Actual test
+        double[] times = new double[TEST_ITERATIONS];
+        for (int i = 0; i < TEST_ITERATIONS; i++) {
+            Salsa20 cipher = new Salsa20(key, nonce, 0);
+
+            long start = System.nanoTime();
+            cipher.crypt(data);
+            long end = System.nanoTime();
+
+            times[i] = (end - start) / 1_000_000.0;
+        }
+
+        // Calculate statistics
+        double avgTime = 0;
+        double minTime = Double.MAX_VALUE;
+        double maxTime = 0;
+
+        for (double t : times) {
+            avgTime += t;
+            minTime = Math.min(minTime, t);
+            maxTime = Math.max(maxTime, t);
+        }
+        avgTime /= TEST_ITERATIONS;
+
+        double stdDev = calculateStdDev(times, avgTime);
+        double throughput = (dataSize / (1024.0 * 1024.0)) / (avgTime / 1000.0);
+
+        BenchmarkResult result = new BenchmarkResult();
+        result.cipherName = "Salsa20";
+        result.dataSize = dataSize;
+        result.avgTimeMs = avgTime;
+        result.throughputMBps = throughput;
+        result.minTime = minTime;
+        result.maxTime = maxTime;
+        result.stdDev = stdDev;
+
+        return result;
+    }
+
+    /**
+     * Benchmark на Salsa20 с Java Vector API (диагонално разположение)
+     */
+    private static BenchmarkResult benchmarkSalsa20Vector(int dataSize) {
+        byte[] data = new byte[dataSize];
+        new java.util.Random().nextBytes(data);
+
+        byte[] key = new byte[32];
+        byte[] nonce = new byte[8];
+        new java.security.SecureRandom().nextBytes(key);
+        new java.security.SecureRandom().nextBytes(nonce);
+
+        // Warmup
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            Salsa20Vector cipher = new Salsa20Vector(key, nonce, 0);
+            cipher.crypt(data);
+        }
+
+        // Actual test
+        double[] times = new double[TEST_ITERATIONS];
+        for (int i = 0; i < TEST_ITERATIONS; i++) {
+            Salsa20Vector cipher = new Salsa20Vector(key, nonce, 0);
+
+            long start = System.nanoTime();
+            cipher.crypt(data);
+            long end = System.nanoTime();
+
+            times[i] = (end - start) / 1_000_000.0;
+        }
+
+        // Calculate statistics
+        double avgTime = 0;
+        double minTime = Double.MAX_VALUE;
+        double maxTime = 0;
+
+        for (double t : times) {
+            avgTime += t;
+            minTime = Math.min(minTime, t);
+            maxTime = Math.max(maxTime, t);
+        }
+        avgTime /= TEST_ITERATIONS;
+
+        double stdDev = calculateStdDev(times, avgTime);
+        double throughput = (dataSize / (1024.0 * 1024.0)) / (avgTime / 1000.0);
+
+        BenchmarkResult result = new BenchmarkResult();
+        result.cipherName = "Salsa20-V";
+        result.dataSize = dataSize;
+        result.avgTimeMs = avgTime;
+        result.throughputMBps = throughput;
+        result.minTime = minTime;
+        result.maxTime = maxTime;
+        result.stdDev = stdDev;
+
+        return result;
+    }
+
+    /**
+     * Engine-ите в StreamCipherRegistry: резултат от KAT, измерена
+     * производителност и избраният (най-бърз валиден) engine за всеки алгоритъм
+     */
+    private static void benchmarkEngineRegistry() {
+        System.out.println("╔════════════════════════════════════════════════════════════╗");
+        System.out.println("║          ENGINE РЕГИСТЪР (KAT + ИЗБОР)                     ║");
+        System.out.println("╚════════════════════════════════════════════════════════════╝\n");
+
+        System.out.println("Алгоритъм  | Engine   | KAT      | Производ-ност  | Избран");
+        System.out.println("---------------------------------------------------------------");
+
+        for (String algorithm : StreamCipherRegistry.algorithms()) {
+            StreamCipherRegistry.Engine selected = StreamCipherRegistry.select(algorithm);
+            for (StreamCipherRegistry.Engine engine : StreamCipherRegistry.engines(algorithm)) {
+                System.out.printf("%-10s | %-8s | %-8s | %s | %s%n",
+                        algorithm, engine.getName(), engine.isValid() ? "✓ PASS" : "✗ FAIL",
+                        engine.getThroughputMBps() > 0 ? String.format("%9.2f MB/s", engine.getThroughputMBps())
+                                : "      -       ",
+                        engine == selected ? "◀" : engine.isValid() ? "" : engine.getFailure());
+            }
+        }
+        System.out.println();
+    }
+
+    /**
+     * Benchmark на вариант с намален брой рундове (ChaCha8/12/20, Salsa20/8/12/20)
+     * 
+     * @param engine   engine от StreamCipherRegistry (скаларен или векторен)
+     * @param dataSize размер на данните
+     */
+    private static BenchmarkResult benchmarkRounds(StreamCipherRegistry.Engine engine, int dataSize) {
+        byte[] data = new byte[dataSize];
+        byte[] output = new byte[dataSize];
+        new java.util.Random().nextBytes(data);
+
+        byte[] key = new byte[32];
+        byte[] nonce = new byte[StreamCipherRegistry.nonceLength(engine.getAlgorithm())];
+        new java.security.SecureRandom().nextBytes(key);
+        new java.security.SecureRandom().nextBytes(nonce);
+
+        double[] times = new double[TEST_ITERATIONS];
+        for (int i = -WARMUP_ITERATIONS; i < TEST_ITERATIONS; i++) {
+            StreamCipher cipher = engine.newInstance(key, nonce);
+
+            long start = System.nanoTime();
+            cipher.crypt(data, 0, dataSize, output, 0);
+            long end = System.nanoTime();
+
+            if (i >= 0) {
+                times[i] = (end - start) / 1_000_000.0;
+            }
+        }
+
+        double avgTime = 0;
+        for (double t : times) {
+            avgTime += t;
+        }
+        avgTime /= TEST_ITERATIONS;
+
+        BenchmarkResult result = new BenchmarkResult();
+        result.cipherName = engine.getAlgorithm() + " (" + engine.getName() + ")";
+        result.dataSize = dataSize;
+        result.avgTimeMs = avgTime;
+        result.throughputMBps = (dataSize / (1024.0 * 1024.0)) / (avgTime / 1000.0);
+        result.stdDev = calculateStdDev(times, avgTime);
+
+        return result;
+    }
+
+    /**
+     * Сравнява производителността на всички варианти по брой рундове
+     * (скаларни и векторни), спрямо пълните 20 рунда
+     */
+    private static void benchmarkReducedRounds() {
+        System.out.println("╔════════════════════════════════════════════════════════════╗");
+        System.out.println("║          НАМАЛЕН БРОЙ РУНДОВЕ (8 / 12 / 20)                ║");
+        System.out.println("╚════════════════════════════════════════════════════════════╝\n");
+
+        int dataSize = 1024 * 1024;
+        String[][] families = { { "ChaCha20", "ChaCha12", "ChaCha8" }, { "Salsa20", "Salsa20/12", "Salsa20/8" } };
+
+        System.out.println("Шифър               | Размер   | Време       | Производ-ност  | Откл.   | Ускорение");
+        System.out.println("--------------------------------------------------------------------------------------");
+
+        for (String[] family : families) {
+            for (StreamCipherRegistry.Engine fullRounds : StreamCipherRegistry.engines(family[0])) {
+                if (!fullRounds.isValid()) {
+                    continue;
+                }
+                StreamCipherRegistry.Engine[] engines = new StreamCipherRegistry.Engine[family.length];
+                for (int v = 0; v < family.length; v++) {
+                    engines[v] = StreamCipherRegistry.engine(family[v], fullRounds.getName());
+                }
+
+                // Загряване на всички варианти, за да не се облагодетелства последният
+                for (StreamCipherRegistry.Engine engine : engines) {
+                    benchmarkRounds(engine, dataSize);
+                }
+
+                double fullRoundsSpeed = 0;
+                for (StreamCipherRegistry.Engine engine : engines) {
+                    BenchmarkResult result = benchmarkRounds(engine, dataSize);
+                    if (engine == engines[0]) {
+                        fullRoundsSpeed = result.throughputMBps;
+                    }
+                    System.out.printf("%-19s | %8s | %8.2f ms | %10.2f MB/s | σ=%.2f  | %.2fx%n",
+                            result.cipherName, formatSize(dataSize), result.avgTimeMs,
+                            result.throughputMBps, result.stdDev, result.throughputMBps / fullRoundsSpeed);
+                }
+            }
+        }
+        System.out.println();
+    }
+
+    /**
+     * Benchmark на поточна обработка на парчета (chunked) за ChaCha20/Salsa20
+     * 
+     * Данните се подават на парчета с размер chunkSize през
+     * crypt(in, inOff, len, out, outOff) в предварително заделен буфер.
+     * При chunkSize == dataSize това е едно голямо извикване.
+     */
+    private static BenchmarkResult benchmarkChunked(String cipherName, int dataSize, int chunkSize) {
+        byte[] data = new byte[dataSize];
+        byte[] output = new byte[dataSize];
+        new java.util.Random().nextBytes(data);
+
+        byte[] key = new byte[32];
+        byte[] nonce = new byte[StreamCipherRegistry.nonceLength(cipherName)];
+        new java.security.SecureRandom().nextBytes(key);
+        new java.security.SecureRandom().nextBytes(nonce);
+
+        double[] times = new double[TEST_ITERATIONS];
+        for (int i = -WARMUP_ITERATIONS; i < TEST_ITERATIONS; i++) {
+            StreamCipher cipher = StreamCipherRegistry.newCipher(cipherName, key, nonce);
+
+            long start = System.nanoTime();
+            for (int offset = 0; offset < dataSize; offset += chunkSize) {
+                cipher.crypt(data, offset, Math.min(chunkSize, dataSize - offset), output, offset);
+            }
+            long end = System.nanoTime();
+
+            if (i >= 0) {
+                times[i] = (end - start) / 1_000_000.0;
+            }
+        }
+
+        double avgTime = 0;
+        for (double t : times) {
+            avgTime += t;
+        }
+        avgTime /= TEST_ITERATIONS;
+
+        BenchmarkResult result = new BenchmarkResult();
+        result.cipherName = cipherName;
+        result.dataSize = dataSize;
+        result.avgTimeMs = avgTime;
+        result.throughputMBps = (dataSize / (1024.0 * 1024.0)) / (avgTime / 1000.0);
+        result.stdDev = calculateStdDev(times, avgTime);
+
+        return result;
+    }
+
+    /**
+     * Проверява, че криптиране на парчета дава същия резултат като едно извикване
+     */
+    private static boolean testChunkedConsistency(String cipherName, int chunkSize) {
+        byte[] data = new byte[10_000];
+        new java.util.Random().nextBytes(data);
+        byte[] key = new byte[32];
+        byte[] nonce = new byte[StreamCipherRegistry.nonceLength(cipherName)];
+        new java.security.SecureRandom().nextBytes(key);
+
+        byte[] whole = StreamCipherRegistry.newCipher(cipherName, key, nonce).crypt(data);
+        byte[] chunked = new byte[data.length];
+        StreamCipher cipher = StreamCipherRegistry.newCipher(cipherName, key, nonce);
+        for (int offset = 0; offset < data.length; offset += chunkSize) {
+            cipher.crypt(data, offset, Math.min(chunkSize, data.length - offset), chunked, offset);
+        }
+        return java.util.Arrays.equals(whole, chunked);
+    }
+
+    /**
+     * Сравнява производителността на поточна обработка на парчета
+     * с едно голямо извикване
+     */
+    private static void benchmarkChunkedStreaming() {
+        System.out.println("╔════════════════════════════════════════════════════════════╗");
+        System.out.println("║          ПОТОЧНА ОБРАБОТКА НА ПАРЧЕТА (CHUNKED)            ║");
+        System.out.println("╚════════════════════════════════════════════════════════════╝\n");
+
+        int[] chunkSizes = { 1, 61, 1000, 4093, 64 * 1024 };
+        System.out.print("Консистентност (парчета = едно извикване): ");
+        boolean consistent = true;
+        for (String cipherName : new String[] { "ChaCha20", "Salsa20" }) {
+            for (int chunkSize : chunkSizes) {
+                consistent &= testChunkedConsistency(cipherName, chunkSize);
+            }
+        }
+        System.out.println(consistent ? "✓ PASS" : "✗ FAIL");
+        System.out.println();
+
+        int dataSize = 10 * 1024 * 1024;
+        int[] benchChunkSizes = { dataSize, 1024 * 1024, 64 * 1024, 4093, 1000, 61 };
+
+        for (String cipherName : new String[] { "ChaCha20", "Salsa20" }) {
+            System.out.println("Шифър: " + cipherName + " (" + StreamCipherRegistry.select(cipherName).getName()
+                    + " engine, " + formatSize(dataSize) + ")");
+            System.out.println("Парче     | Време       | Производ-ност  | Спрямо едно извикване");
+            System.out.println("---------------------------------------------------------------");
+
+            double single = 0;
+            for (int chunkSize : benchChunkSizes) {
+                BenchmarkResult r = benchmarkChunked(cipherName, dataSize, chunkSize);
+                if (chunkSize == dataSize) {
+                    single = r.throughputMBps;
+                }
+                System.out.printf("%-9s | %8.2f ms | %10.2f MB/s | %+6.1f%%%n",
+                        chunkSize == dataSize ? "цялото"
+                                : chunkSize % 1024 == 0 ? formatSize(chunkSize) : chunkSize + " B",
+                        r.avgTimeMs, r.throughputMBps, (r.throughputMBps / single - 1) * 100);
+            }
+            System.out.println();
+        }
+    }
+
+    /**
+     * Benchmark на паралелно криптиране с даден брой нишки
+     */
+    private static BenchmarkResult benchmarkParallel(String cipherName, byte[] data, byte[] output,
+            java.util.concurrent.ForkJoinPool pool) {
+        byte[] key = new byte[32];
+        byte[] nonce = new byte[StreamCipherRegistry.nonceLength(cipherName)];
+        new java.security.SecureRandom().nextBytes(key);
+        new java.security.SecureRandom().nextBytes(nonce);
+
+        double[] times = new double[TEST_ITERATIONS];
+        for (int i = -WARMUP_ITERATIONS; i < TEST_ITERATIONS; i++) {
+            StreamCipher cipher = StreamCipherRegistry.newCipher(cipherName, key, nonce);
+
+            long start = System.nanoTime();
+            cipher.crypt(data, 0, data.length, output, 0, pool);
+            long end = System.nanoTime();
+
+            if (i >= 0) {
+                times[i] = (end - start) / 1_000_000.0;
+            }
+        }
+
+        double avgTime = 0;
+        for (double t : times) {
+            avgTime += t;
+        }
+        avgTime /= TEST_ITERATIONS;
+
+        BenchmarkResult result = new BenchmarkResult();
+        result.cipherName = cipherName;
+        result.dataSize = data.length;
+        result.avgTimeMs = avgTime;
+        result.throughputMBps = (data.length / (1024.0 * 1024.0)) / (avgTime / 1000.0);
+        result.stdDev = calculateStdDev(times, avgTime);
+
+        return result;
+    }
+
+    /**
+     * Мащабиране на паралелното криптиране спрямо броя нишки
+     */
+    private static void benchmarkParallelScaling() {
+        System.out.println("╔════════════════════════════════════════════════════════════╗");
+        System.out.println("║          ПАРАЛЕЛНО КРИПТИРАНЕ (МНОГО ЯДРА)                 ║");
+        System.out.println("╚════════════════════════════════════════════════════════════╝\n");
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        byte[] key = new byte[32];
+        new java.security.SecureRandom().nextBytes(key);
+
+        // Коректност: паралелният резултат трябва да съвпада с последователния
+        System.out.print("Консистентност (паралелно = последователно): ");
+        byte[] sample = new byte[3 * 1024 * 1024 + 17];
+        new java.util.Random().nextBytes(sample);
+        java.util.concurrent.ForkJoinPool checkPool = new java.util.concurrent.ForkJoinPool(Math.max(4, cores));
+        boolean identical = java.util.Arrays.equals(
+                new ChaCha20(key, new byte[12], 0).crypt(sample),
+                new ChaCha20(key, new byte[12], 0).crypt(sample, checkPool))
+                && java.util.Arrays.equals(
+                        new Salsa20(key, new byte[8], 0).crypt(sample),
+                        new Salsa20(key, new byte[8], 0).crypt(sample, checkPool));
+        checkPool.shutdown();
+        System.out.println(identical ? "✓ PASS" : "✗ FAIL");
+        System.out.println();
+
+        for (int size : new int[] { 1024 * 1024, 10 * 1024 * 1024 }) {
+            byte[] data = new byte[size];
+            byte[] output = new byte[size];
+            new java.util.Random().nextBytes(data);
+
+            for (String cipherName : new String[] { "ChaCha20", "Salsa20" }) {
+                System.out.println("Шифър: " + cipherName + " (" + formatSize(size) + ")");
+                System.out.println("Нишки     | Време       | Производ-ност  | Ускорение");
+                System.out.println("---------------------------------------------------------------");
+
+                double single = 0;
+                for (int threads = 1; threads <= cores; threads *= 2) {
+                    java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool(threads);
+                    BenchmarkResult r = benchmarkParallel(cipherName, data, output, pool);
+                    pool.shutdown();
+
+                    if (threads == 1) {
+                        single = r.throughputMBps;
+                    }
+                    System.out.printf("%-9d | %8.2f ms | %10.2f MB/s | %5.2fx%n",
+                            threads, r.avgTimeMs, r.throughputMBps, r.throughputMBps / single);
+                }
+                System.out.println();
+            }
+        }
+    }
+
+    /**
+     * Сравнява създаването на RC4 с пълен KSA и с кеш на състоянията след KSA
+     * при многократна реинициализация с малък набор от ключове
+     */
+    private static void benchmarkRC4KeyScheduleCache() {
+        System.out.println("╔════════════════════════════════════════════════════════════╗");
+        System.out.println("║          RC4 KSA КЕШ (ПОВТАРЯЩИ СЕ КЛЮЧОВЕ)                ║");
+        System.out.println("╚════════════════════════════════════════════════════════════╝\n");
+
+        int keyCount = 16;
+        int operations = 1_000_000;
+        byte[][] keys = new byte[keyCount][16];
+        for (byte[] key : keys) {
+            new java.security.SecureRandom().nextBytes(key);
+        }
+        byte[] message = new byte[64];
+        byte[] output = new byte[64];
+        RC4KeyScheduleCache cache = new RC4KeyScheduleCache(keyCount);
+
+        // Коректност
+        boolean identical = true;
+        for (byte[] key : keys) {
+            identical &= java.util.Arrays.equals(new RC4(key).crypt(message),
+                    new RC4(key, cache).crypt(message));
+            identical &= java.util.Arrays.equals(new RC4(key).crypt(message),
+                    new RC4(key, cache).crypt(message));
+        }
+        System.out.println("Консистентност (кеш = пълен KSA): " + (identical ? "✓ PASS" : "✗ FAIL"));
+        cache.clear();
+
+        double[] nsPerOp = new double[2];
+        for (int iteration = 0; iteration < WARMUP_ITERATIONS + 1; iteration++) {
+            long start = System.nanoTime();
+            for (int k = 0; k < operations; k++) {
+                new RC4(keys[k % keyCount]).crypt(message, 0, message.length, output, 0);
+            }
+            nsPerOp[0] = (System.nanoTime() - start) / (double) operations;
+
+            start = System.nanoTime();
+            for (int k = 0; k < operations; k++) {
+                new RC4(keys[k % keyCount], cache).crypt(message, 0, message.length, output, 0);
+            }
+            nsPerOp[1] = (System.nanoTime() - start) / (double) operations;
+        }
+
+        System.out.printf("%d ключа, %d инициализации + 64 B криптиране%n", keyCount, operations);
+        System.out.printf("   Пълен KSA:  %8.1f ns/операция%n", nsPerOp[0]);
+        System.out.printf("   С кеш:      %8.1f ns/операция (%.2fx)%n", nsPerOp[1], nsPerOp[0] / nsPerOp[1]);
+        System.out.printf("   Кеш: %d попадения, %d пропуска (%.2f%% hit rate)%n",
+                cache.hits(), cache.misses(), cache.hitRate());
+        System.out.println();
+    }
+
+    /**
+     * Сравнява N независими RC4 сесии: N последователни RC4.crypt извиквания
+     * срещу един RC4Batch, който напредва потоците застъпено
+     */
+    private static void benchmarkRC4Batch() {
+        System.out.println("╔════════════════════════════════════════════════════════════╗");
+        System.out.println("║          RC4 BATCH (МНОГО НЕЗАВИСИМИ СЕСИИ)                ║");
+        System.out.println("╚════════════════════════════════════════════════════════════╝\n");
+
+        int sessions = 32;
+        int sessionSize = 64 * 1024;
+        byte[][] keys = new byte[sessions][16];
+        byte[][] data = new byte[sessions][sessionSize];
+        byte[][] output = new byte[sessions][sessionSize];
+        for (int s = 0; s < sessions; s++) {
+            new java.security.SecureRandom().nextBytes(keys[s]);
+            new java.util.Random().nextBytes(data[s]);
+        }
+
+        // Коректност
+        RC4Batch check = new RC4Batch(keys);
+        check.crypt(data, output);
+        boolean identical = true;
+        for (int s = 0; s < sessions; s++) {
+            identical &= java.util.Arrays.equals(new RC4(keys[s]).crypt(data[s]), output[s]);
+        }
+        System.out.println("Консистентност (batch = отделни RC4): " + (identical ? "✓ PASS" : "✗ FAIL"));
+
+        double[] sequentialTimes = new double[TEST_ITERATIONS];
+        double[] batchTimes = new double[TEST_ITERATIONS];
+        for (int iteration = -WARMUP_ITERATIONS; iteration < TEST_ITERATIONS; iteration++) {
+            long start = System.nanoTime();
+            for (int s = 0; s < sessions; s++) {
+                new RC4(keys[s]).crypt(data[s], 0, sessionSize, output[s], 0);
+            }
+            long middle = System.nanoTime();
+            new RC4Batch(keys).crypt(data, output);
+            long end = System.nanoTime();
+
+            if (iteration >= 0) {
+                sequentialTimes[iteration] = (middle - start) / 1_000_000.0;
+                batchTimes[iteration] = (end - middle) / 1_000_000.0;
+            }
+        }
+
+        double sequentialAvg = 0;
+        double batchAvg = 0;
+        for (int k = 0; k < TEST_ITERATIONS; k++) {
+            sequentialAvg += sequentialTimes[k];
+            batchAvg += batchTimes[k];
+        }
+        sequentialAvg /= TEST_ITERATIONS;
+        batchAvg /= TEST_ITERATIONS;
+
+        double totalMB = sessions * (double) sessionSize / (1024.0 * 1024.0);
+        System.out.printf("%d сесии × %s%n", sessions, formatSize(sessionSize));
+        System.out.printf("   %d × RC4.crypt: %8.2f ms | %8.2f MB/s%n",
+                sessions, sequentialAvg, totalMB / (sequentialAvg / 1000.0));
+        System.out.printf("   RC4Batch:       %8.2f ms | %8.2f MB/s (%.2fx)%n",
+                batchAvg, totalMB / (batchAvg / 1000.0), sequentialAvg / batchAvg);
+        System.out.println();
+    }
+
+    /**
+     * Латентност на малки съобщения: ChaCha20 срещу XChaCha20
+     * XChaCha20 плаща един допълнителен HChaCha20 блок за всяко съобщение,
+     * освен ако подключът не се преизползва за общ nonce префикс
+     */
+    private static void benchmarkXChaCha20SmallMessages() {
+        System.out.println("╔════════════════════════════════════════════════════════════╗");
+        System.out.println("║          XCHACHA20 - ЛАТЕНТНОСТ НА МАЛКИ СЪОБЩЕНИЯ         ║");
+        System.out.println("╚════════════════════════════════════════════════════════════╝\n");
+
+        int[] messageSizes = { 64, 256, 1024 };
+        int messages = 200_000;
+        byte[] key = new byte[32];
+        byte[] nonce = new byte[12];
+        byte[] xnonce = new byte[24];
+        new java.security.SecureRandom().nextBytes(key);
+        new java.security.SecureRandom().nextBytes(nonce);
+        new java.security.SecureRandom().nextBytes(xnonce);
+        XChaCha20.Subkey subkey = XChaCha20.deriveSubkey(key, xnonce);
+
+        System.out.println("Размер   | ChaCha20    | XChaCha20   | XChaCha20 (кеширан подключ)");
+        System.out.println("---------------------------------------------------------------");
+
+        for (int size : messageSizes) {
+            byte[] message = new byte[size];
+            byte[] output = new byte[size];
+            double[] nsPerMessage = new double[3];
+
+            for (int iteration = 0; iteration < WARMUP_ITERATIONS + 1; iteration++) {
+                long start = System.nanoTime();
+                for (int m = 0; m < messages; m++) {
+                    new ChaCha20(key, nonce, m).crypt(message, 0, size, output, 0);
+                }
+                nsPerMessage[0] = (System.nanoTime() - start) / (double) messages;
+
+                start = System.nanoTime();
+                for (int m = 0; m < messages; m++) {
+                    new XChaCha20(key, xnonce, m).crypt(message, 0, size, output, 0);
+                }
+                nsPerMessage[1] = (System.nanoTime() - start) / (double) messages;
+
+                start = System.nanoTime();
+                for (int m = 0; m < messages; m++) {
+                    new XChaCha20(subkey, xnonce, m).crypt(message, 0, size, output, 0);
+                }
+                nsPerMessage[2] = (System.nanoTime() - start) / (double) messages;
+            }
+
+            System.out.printf("%-8s | %8.1f ns | %8.1f ns | %8.1f ns (%.2fx спрямо ChaCha20)%n",
+                    formatSize(size), nsPerMessage[0], nsPerMessage[1], nsPerMessage[2],
+                    nsPerMessage[2] / nsPerMessage[0]);
+        }
+        System.out.println();
+    }
+
+    /**
+     * Латентност на малки съобщения: Salsa20 срещу XSalsa20
+     * XSalsa20 плаща един допълнителен HSalsa20 блок за всяко съобщение,
+     * освен ако подключът не се преизползва за batch съобщения с общ
+     * 16-байтов nonce префикс (различават се само последните 8 байта)
+     */
+    private static void benchmarkXSalsa20SmallMessages() {
+        System.out.println("╔════════════════════════════════════════════════════════════╗");
+        System.out.println("║          XSALSA20 - ЛАТЕНТНОСТ НА МАЛКИ СЪОБЩЕНИЯ          ║");
+        System.out.println("╚════════════════════════════════════════════════════════════╝\n");
+
+        int[] messageSizes = { 64, 256, 1024 };
+        int messages = 200_000;
+        byte[] key = new byte[32];
+        byte[] nonce = new byte[8];
+        byte[] xnonce = new byte[24];
+        new java.security.SecureRandom().nextBytes(key);
+        new java.security.SecureRandom().nextBytes(nonce);
+        new java.security.SecureRandom().nextBytes(xnonce);
+        XSalsa20.Subkey subkey = XSalsa20.deriveSubkey(key, xnonce);
+
+        System.out.println("Размер   | Salsa20    | XSalsa20   | XSalsa20 (кеширан подключ)");
+        System.out.println("---------------------------------------------------------------");
+
+        for (int size : messageSizes) {
+            byte[] message = new byte[size];
+            byte[] output = new byte[size];
+            double[] nsPerMessage = new double[3];
+
+            for (int iteration = 0; iteration < WARMUP_ITERATIONS + 1; iteration++) {
+                long start = System.nanoTime();
+                for (int m = 0; m < messages; m++) {
+                    new Salsa20(key, nonce, 0).crypt(message, 0, size, output, 0);
+                }
+                nsPerMessage[0] = (System.nanoTime() - start) / (double) messages;
+
+                start = System.nanoTime();
+                for (int m = 0; m < messages; m++) {
+                    new XSalsa20(key, xnonce, 0).crypt(message, 0, size, output, 0);
+                }
+                nsPerMessage[1] = (System.nanoTime() - start) / (double) messages;
+
+                start = System.nanoTime();
+                for (int m = 0; m < messages; m++) {
+                    xnonce[16] = (byte) m;
+                    xnonce[17] = (byte) (m >>> 8);
+                    xnonce[18] = (byte) (m >>> 16);
+                    new XSalsa20(subkey, xnonce, 0).crypt(message, 0, size, output, 0);
+                }
+                nsPerMessage[2] = (System.nanoTime() - start) / (double) messages;
+            }
+
+            System.out.printf("%-8s | %8.1f ns | %8.1f ns | %8.1f ns (%.2fx спрямо Salsa20)%n",
+                    formatSize(size), nsPerMessage[0], nsPerMessage[1], nsPerMessage[2],
+                    nsPerMessage[2] / nsPerMessage[0]);
+        }
+        System.out.println();
+    }
+
+    /**
+     * XSalsa20-Poly1305 secretbox за малки съобщения (64 байта - 1 KB)
+     * 
+     * Сравнява нов обект за всяко съобщение, преизползван обект с нов
+     * произволен nonce, sealInPlace с общ nonce префикс (без HSalsa20)
+     * и sealBatch за BATCH съобщения наведнъж.
+     */
+    private static void benchmarkSecretbox() {
+        System.out.println("╔════════════════════════════════════════════════════════════╗");
+        System.out.println("║          XSALSA20-POLY1305 SECRETBOX                       ║");
+        System.out.println("╚════════════════════════════════════════════════════════════╝\n");
+
+        int[] messageSizes = { 64, 256, 1024 };
+        int messages = 200_000;
+        int batch = 1000;
+        byte[] key = new byte[32];
+        new java.security.SecureRandom().nextBytes(key);
+        XSalsa20Poly1305 secretbox = new XSalsa20Poly1305(key);
+
+        // Произволни nonce-ове (различни префикси - HSalsa20 за всяко съобщение)
+        byte[][] nonces = new byte[batch][];
+        for (int i = 0; i < batch; i++) {
+            nonces[i] = XSalsa20Poly1305.generateNonce();
+        }
+        byte[] counterNonce = XSalsa20Poly1305.generateNonce();
+
+        System.out.println("Размер   | нов обект  | преизползван | на място*  | batch      | MB/s (на място)");
+        System.out.println("-------------------------------------------------------------------------------");
+
+        for (int size : messageSizes) {
+            byte[] message = new byte[size];
+            byte[] box = new byte[size + XSalsa20Poly1305.TAG_LENGTH];
+            byte[][] batchMessages = new byte[batch][size];
+            byte[][] batchBoxes = new byte[batch][size + XSalsa20Poly1305.TAG_LENGTH];
+            double[] nsPerMessage = new double[4];
+
+            for (int iteration = 0; iteration < WARMUP_ITERATIONS + 1; iteration++) {
+                long start = System.nanoTime();
+                for (int m = 0; m < messages; m++) {
+                    new XSalsa20Poly1305(key).seal(nonces[m % batch], message, 0, size, box, 0);
+                }
+                nsPerMessage[0] = (System.nanoTime() - start) / (double) messages;
+
+                start = System.nanoTime();
+                for (int m = 0; m < messages; m++) {
+                    secretbox.seal(nonces[m % batch], message, 0, size, box, 0);
+                }
+                nsPerMessage[1] = (System.nanoTime() - start) / (double) messages;
+
+                start = System.nanoTime();
+                for (int m = 0; m < messages; m++) {
+                    counterNonce[16] = (byte) m;
+                    counterNonce[17] = (byte) (m >>> 8);
+                    counterNonce[18] = (byte) (m >>> 16);
+                    secretbox.sealInPlace(counterNonce, box, 0, size);
+                }
+                nsPerMessage[2] = (System.nanoTime() - start) / (double) messages;
+
+                start = System.nanoTime();
+                for (int m = 0; m < messages; m += batch) {
+                    secretbox.sealBatch(nonces, batchMessages, batchBoxes);
+                }
+                nsPerMessage[3] = (System.nanoTime() - start) / (double) messages;
+            }
+
+            System.out.printf("%-8s | %8.1f ns | %10.1f ns | %8.1f ns | %8.1f ns | %.2f%n",
+                    formatSize(size), nsPerMessage[0], nsPerMessage[1], nsPerMessage[2], nsPerMessage[3],
+                    size / nsPerMessage[2] * 1e9 / (1024 * 1024));
+        }
+        System.out.println("* общ 16-байтов nonce префикс + брояч - подключът се извежда веднъж");
+        System.out.println();
+    }
+
+    /**
+     * Поточен AEAD на парчета срещу едно AEAD съобщение върху целите данни
+     * 
+     * Поточното криптиране/декриптиране минава през InputStream/OutputStream
+     * с постоянна памет; паралелното декриптиране проверява парчетата
+     * независимо в ForkJoinPool.commonPool().
+     */
+    private static void benchmarkStreamingAead() {
+        System.out.println("╔════════════════════════════════════════════════════════════╗");
+        System.out.println("║          ПОТОЧЕН AEAD НА ПАРЧЕТА (SECRETSTREAM)            ║");
+        System.out.println("╚════════════════════════════════════════════════════════════╝\n");
+
+        int dataSize = 64 * 1024 * 1024;
+        byte[] key = new byte[32];
+        byte[] nonce = new byte[12];
+        new java.security.SecureRandom().nextBytes(key);
         byte[] data = new byte[dataSize];
         new java.util.Random().nextBytes(data);
+        java.util.concurrent.ForkJoinPool pool = java.util.concurrent.ForkJoinPool.commonPool();
+
+        try {
+            // Коректност: поток -> обратно, отрязан поток се отхвърля
+            java.io.ByteArrayOutputStream sealed = new java.io.ByteArrayOutputStream();
+            ChaCha20Poly1305Stream.encrypt(key, ChaCha20Poly1305Stream.DEFAULT_CHUNK_SIZE,
+                    new java.io.ByteArrayInputStream(data, 0, 1_000_000), sealed);
+            byte[] encrypted = sealed.toByteArray();
+            java.io.ByteArrayOutputStream opened = new java.io.ByteArrayOutputStream();
+            ChaCha20Poly1305Stream.decrypt(key, ChaCha20Poly1305Stream.DEFAULT_CHUNK_SIZE,
+                    new java.io.ByteArrayInputStream(encrypted), opened);
+            boolean ok = java.util.Arrays.equals(opened.toByteArray(), java.util.Arrays.copyOf(data, 1_000_000));
+            try {
+                int truncated = ChaCha20Poly1305Stream.HEADER_LENGTH
+                        + 3 * (ChaCha20Poly1305Stream.DEFAULT_CHUNK_SIZE + ChaCha20Poly1305Stream.TAG_LENGTH);
+                ChaCha20Poly1305Stream.decrypt(key, ChaCha20Poly1305Stream.DEFAULT_CHUNK_SIZE,
+                        new java.io.ByteArrayInputStream(encrypted, 0, truncated), java.io.OutputStream.nullOutputStream());
+                ok = false;
+            } catch (IllegalArgumentException e) {
+                // очаквано - липсва последното парче
+            }
+            System.out.println("Коректност (round trip + отрязан поток): " + (ok ? "✓ PASS" : "✗ FAIL"));
+            System.out.println();
+
+            int[] chunkSizes = { 4 * 1024, 16 * 1024, 64 * 1024, 1024 * 1024 };
+            ChaCha20Poly1305 aead = new ChaCha20Poly1305(key);
+            byte[] whole = new byte[dataSize + ChaCha20Poly1305.TAG_LENGTH];
+
+            double aeadMBps = 0;
+            for (int iteration = 0; iteration < WARMUP_ITERATIONS + 1; iteration++) {
+                long start = System.nanoTime();
+                aead.seal(nonce, null, data, 0, dataSize, whole, 0);
+                aeadMBps = (dataSize / (1024.0 * 1024.0)) / ((System.nanoTime() - start) / 1e9);
+            }
+            System.out.printf("Едно AEAD съобщение (%s): %.2f MB/s%n%n", formatSize(dataSize), aeadMBps);
+
+            System.out.println("Парче    | Поточно крипт. | Поточно декрипт. | Паралелно декрипт. | Памет");
+            System.out.println("-------------------------------------------------------------------------------");
+
+            for (int chunkSize : chunkSizes) {
+                byte[] header = ChaCha20Poly1305Stream.generateHeader();
+                ChaCha20Poly1305Stream stream = new ChaCha20Poly1305Stream(key, header, chunkSize);
+                byte[] chunks = new byte[(int) ChaCha20Poly1305Stream.encryptedLength(dataSize, chunkSize)];
+                byte[] plain = new byte[dataSize];
+                double[] mbps = new double[3];
+
+                for (int iteration = 0; iteration < WARMUP_ITERATIONS + 1; iteration++) {
+                    java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream(chunks.length + 64);
+                    long start = System.nanoTime();
+                    ChaCha20Poly1305Stream.encrypt(key, chunkSize, new java.io.ByteArrayInputStream(data), out);
+                    mbps[0] = (dataSize / (1024.0 * 1024.0)) / ((System.nanoTime() - start) / 1e9);
+
+                    byte[] encryptedStream = out.toByteArray();
+                    start = System.nanoTime();
+                    ChaCha20Poly1305Stream.decrypt(key, chunkSize, new java.io.ByteArrayInputStream(encryptedStream),
+                            java.io.OutputStream.nullOutputStream());
+                    mbps[1] = (dataSize / (1024.0 * 1024.0)) / ((System.nanoTime() - start) / 1e9);
+
+                    stream.encrypt(data, 0, dataSize, chunks, 0, pool);
+                    start = System.nanoTime();
+                    stream.decrypt(chunks, 0, chunks.length, plain, 0, pool);
+                    mbps[2] = (dataSize / (1024.0 * 1024.0)) / ((System.nanoTime() - start) / 1e9);
+                }
+
+                System.out.printf("%-8s | %9.2f MB/s | %11.2f MB/s | %13.2f MB/s | %s%n",
+                        formatSize(chunkSize), mbps[0], mbps[1], mbps[2], formatSize(3 * chunkSize));
+            }
+            System.out.println("Паралелно: " + pool.getParallelism() + " нишки; памет = буферите при поточна обработка");
+        } catch (java.io.IOException e) {
+            System.out.println("⚠️  Грешка при поточната обработка: " + e.getMessage());
+        }
+        System.out.println();
+    }
+
+    /**
+     * Производителност на Poly1305 MAC (init + update + doFinal) за различни
+     * размери на съобщението, сравнена с HmacSHA256 от JDK
+     */
+    private static void benchmarkPoly1305() {
+        System.out.println("╔════════════════════════════════════════════════════════════╗");
+        System.out.println("║          POLY1305 MAC                                      ║");
+        System.out.println("╚════════════════════════════════════════════════════════════╝\n");
 
         byte[] key = new byte[32];
-        byte[] nonce = new byte[8];
+        byte[] tag = new byte[32];
         new java.security.SecureRandom().nextBytes(key);
-        new java.security.SecureRandom().nextBytes(nonce);
+        Poly1305 poly = new Poly1305();
 
-        // Warmup
-        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
-            Salsa20 cipher = new Salsa20(key, nonce, 0);
-            cipher.crypt(data);
+        try {
+            javax.crypto.Mac hmac = javax.crypto.Mac.getInstance("HmacSHA256");
+            hmac.init(new javax.crypto.spec.SecretKeySpec(key, "HmacSHA256"));
+
+            int[] sizes = { 64, 1024, 64 * 1024, 1024 * 1024 };
+            System.out.println("Размер   | Poly1305        | HmacSHA256 (JDK) | Poly1305 / HMAC");
+            System.out.println("---------------------------------------------------------------");
+
+            for (int size : sizes) {
+                byte[] data = new byte[size];
+                new java.util.Random().nextBytes(data);
+                int messages = Math.max(1, 256 * 1024 * 1024 / size);
+                double[] mbps = new double[2];
+
+                for (int iteration = 0; iteration < WARMUP_ITERATIONS + 1; iteration++) {
+                    long start = System.nanoTime();
+                    for (int m = 0; m < messages; m++) {
+                        poly.init(key, 0);
+                        poly.update(data, 0, size);
+                        poly.doFinal(tag, 0);
+                    }
+                    long end = System.nanoTime();
+                    mbps[0] = messages * (size / (1024.0 * 1024.0)) / ((end - start) / 1e9);
+
+                    start = System.nanoTime();
+                    for (int m = 0; m < messages / 4; m++) {
+                        hmac.update(data, 0, size);
+                        hmac.doFinal(tag, 0);
+                    }
+                    end = System.nanoTime();
+                    mbps[1] = (messages / 4) * (size / (1024.0 * 1024.0)) / ((end - start) / 1e9);
+                }
+
+                System.out.printf("%-8s | %10.2f MB/s | %11.2f MB/s | %.2fx%n",
+                        formatSize(size), mbps[0], mbps[1], mbps[0] / mbps[1]);
+            }
+        } catch (java.security.GeneralSecurityException e) {
+            System.out.println("⚠️  HmacSHA256 не е наличен: " + e.getMessage());
         }
+        System.out.println();
+    }
 
-        // Actual test
-        double[] times = new double[TEST_ITERATIONS];
-        for (int i = 0; i < TEST_ITERATIONS; i++) {
-            Salsa20 cipher = new Salsa20(key, nonce, 0);
+    /**
+     * crypt(ByteBuffer, ByteBuffer) с direct буфери спрямо досегашния начин -
+     * копиране от direct буфер в heap масив, crypt(byte[]) и обратно копиране
+     */
+    private static void benchmarkByteBuffers() {
+        System.out.println("╔════════════════════════════════════════════════════════════╗");
+        System.out.println("║          BYTEBUFFER (NIO) - DIRECT БУФЕРИ                  ║");
+        System.out.println("╚════════════════════════════════════════════════════════════╝\n");
+
+        byte[] key = new byte[32];
+        new java.security.SecureRandom().nextBytes(key);
+        int size = 1024 * 1024;
+        int messages = 64;
+
+        java.nio.ByteBuffer src = java.nio.ByteBuffer.allocateDirect(size);
+        java.nio.ByteBuffer dst = java.nio.ByteBuffer.allocateDirect(size);
+        byte[] heap = new byte[size];
+        byte[] check = new byte[size];
+        new java.util.Random().nextBytes(heap);
+        src.put(heap).flip();
+
+        // Коректност: direct буферите дават същото като byte[]
+        new ChaCha20(key, new byte[12]).crypt(heap, 0, size, check, 0);
+        new ChaCha20(key, new byte[12]).crypt(src.duplicate(), dst.duplicate());
+        byte[] direct = new byte[size];
+        dst.duplicate().get(direct);
+        System.out.println("Консистентност (direct = byte[]): "
+                + (java.util.Arrays.equals(check, direct) ? "✓ PASS" : "✗ FAIL") + "\n");
+
+        String[] names = { "RC4", "ChaCha20", "Salsa20" };
+        System.out.println("Шифър      | Копиране + byte[] | Direct ByteBuffer | Ускорение");
+        System.out.println("----------------------------------------------------------------");
+
+        for (String name : names) {
+            double copyMBps = 0;
+            double directMBps = 0;
+
+            for (int iteration = 0; iteration < WARMUP_ITERATIONS + 1; iteration++) {
+                RC4 rc4 = new RC4(key);
+                ChaCha20 chacha = new ChaCha20(key, new byte[12]);
+                Salsa20 salsa = new Salsa20(key, new byte[8]);
+
+                // Досегашният начин: direct -> heap -> crypt -> direct
+                long start = System.nanoTime();
+                for (int m = 0; m < messages; m++) {
+                    src.duplicate().get(heap);
+                    switch (name) {
+                        case "RC4" -> rc4.crypt(heap, 0, size, heap, 0);
+                        case "ChaCha20" -> chacha.crypt(heap, 0, size, heap, 0);
+                        default -> salsa.crypt(heap, 0, size, heap, 0);
+                    }
+                    dst.duplicate().put(heap);
+                }
+                long end = System.nanoTime();
+                copyMBps = messages * (size / (1024.0 * 1024.0)) / ((end - start) / 1e9);
+
+                // Директно върху direct буферите
+                start = System.nanoTime();
+                for (int m = 0; m < messages; m++) {
+                    switch (name) {
+                        case "RC4" -> rc4.crypt(src.duplicate(), dst.duplicate());
+                        case "ChaCha20" -> chacha.crypt(src.duplicate(), dst.duplicate());
+                        default -> salsa.crypt(src.duplicate(), dst.duplicate());
+                    }
+                }
+                end = System.nanoTime();
+                directMBps = messages * (size / (1024.0 * 1024.0)) / ((end - start) / 1e9);
+            }
+
+            System.out.printf("%-10s | %12.2f MB/s | %12.2f MB/s | %.2fx%n",
+                    name, copyMBps, directMBps, directMBps / copyMBps);
+        }
+        System.out.println();
+    }
+
+    /**
+     * crypt(MemorySegment) върху off-heap памет и файл, изобразен в паметта,
+     * спрямо crypt(byte[]) със същия обем данни
+     */
+    private static void benchmarkMemorySegments() {
+        System.out.println("╔════════════════════════════════════════════════════════════╗");
+        System.out.println("║          MEMORYSEGMENT (FOREIGN MEMORY) - НА МЯСТО         ║");
+        System.out.println("╚════════════════════════════════════════════════════════════╝\n");
+
+        byte[] key = new byte[32];
+        new java.security.SecureRandom().nextBytes(key);
+        int size = 16 * 1024 * 1024;
+        byte[] heap = new byte[size];
+        new java.util.Random().nextBytes(heap);
+
+        try (java.lang.foreign.Arena arena = java.lang.foreign.Arena.ofConfined()) {
+            java.lang.foreign.MemorySegment segment = arena.allocate(size, 64);
+            java.lang.foreign.MemorySegment.copy(heap, 0, segment, java.lang.foreign.ValueLayout.JAVA_BYTE, 0, size);
+
+            // Коректност: off-heap резултатът съвпада с byte[]
+            byte[] expected = new Salsa20(key, new byte[8]).crypt(heap);
+            new Salsa20(key, new byte[8]).crypt(segment);
+            boolean consistent = java.util.Arrays.equals(expected, segment.toArray(java.lang.foreign.ValueLayout.JAVA_BYTE));
+            new Salsa20(key, new byte[8]).crypt(segment);
+
+            // Коректност: файл, изобразен в паметта - криптиране и декриптиране на място
+            java.nio.file.Path file = java.nio.file.Files.createTempFile("segment", ".bin");
+            try (java.nio.channels.FileChannel channel = java.nio.channels.FileChannel.open(file,
+                    java.nio.file.StandardOpenOption.READ, java.nio.file.StandardOpenOption.WRITE)) {
+                channel.write(java.nio.ByteBuffer.wrap(heap));
+                java.lang.foreign.MemorySegment mapped = channel.map(
+                        java.nio.channels.FileChannel.MapMode.READ_WRITE, 0, size, arena);
+                new ChaCha20(key, new byte[12]).crypt(mapped);
+                mapped.force();
+                new ChaCha20(key, new byte[12]).crypt(mapped);
+                consistent &= java.util.Arrays.equals(heap, mapped.toArray(java.lang.foreign.ValueLayout.JAVA_BYTE));
+            } finally {
+                java.nio.file.Files.delete(file);
+            }
+            System.out.println("Консистентност (off-heap и mapped = byte[]): " + (consistent ? "✓ PASS" : "✗ FAIL") + "\n");
+
+            String[] names = { "ChaCha20", "Salsa20" };
+            System.out.println("Шифър      | byte[] (heap)   | MemorySegment   | Отношение");
+            System.out.println("--------------------------------------------------------------");
+
+            for (String name : names) {
+                double heapMBps = 0;
+                double segmentMBps = 0;
+
+                for (int iteration = 0; iteration < WARMUP_ITERATIONS + 1; iteration++) {
+                    long start = System.nanoTime();
+                    if (name.equals("ChaCha20")) {
+                        new ChaCha20(key, new byte[12]).crypt(heap, 0, size, heap, 0);
+                    } else {
+                        new Salsa20(key, new byte[8]).crypt(heap, 0, size, heap, 0);
+                    }
+                    long end = System.nanoTime();
+                    heapMBps = (size / (1024.0 * 1024.0)) / ((end - start) / 1e9);
+
+                    start = System.nanoTime();
+                    if (name.equals("ChaCha20")) {
+                        new ChaCha20(key, new byte[12]).crypt(segment);
+                    } else {
+                        new Salsa20(key, new byte[8]).crypt(segment);
+                    }
+                    end = System.nanoTime();
+                    segmentMBps = (size / (1024.0 * 1024.0)) / ((end - start) / 1e9);
+                }
+
+                System.out.printf("%-10s | %10.2f MB/s | %10.2f MB/s | %.2fx%n",
+                        name, heapMBps, segmentMBps, segmentMBps / heapMBps);
+            }
+        } catch (java.io.IOException e) {
+            System.out.println("⚠️  Временният файл не може да се създаде: " + e.getMessage());
+        }
+        System.out.println();
+    }
+
+    /**
+     * Много кратки съобщения под един ключ: нов обект за всяко съобщение
+     * спрямо reinit (нов nonce на място) - време и заделена памет
+     */
+    private static void benchmarkReinit() {
+        System.out.println("╔════════════════════════════════════════════════════════════╗");
+        System.out.println("║     КРАТКИ СЪОБЩЕНИЯ - НОВ ОБЕКТ / REINIT БЕЗ АЛОКАЦИИ     ║");
+        System.out.println("╚════════════════════════════════════════════════════════════╝\n");
+
+        byte[] key = new byte[32];
+        byte[] chachaNonce = new byte[12];
+        byte[] salsaNonce = new byte[8];
+        byte[] message = new byte[64];
+        new java.security.SecureRandom().nextBytes(key);
+        int messages = 1_000_000;
+
+        // Коректност: reinit/rekey дават същото като нов обект
+        ChaCha20 chacha = new ChaCha20(new byte[32], new byte[12]);
+        chacha.rekey(key, chachaNonce);
+        Salsa20 salsa = new Salsa20(new byte[32], new byte[8]);
+        salsa.rekey(key, salsaNonce);
+        boolean consistent = java.util.Arrays.equals(chacha.crypt(message), new ChaCha20(key, chachaNonce).crypt(message))
+                && java.util.Arrays.equals(salsa.crypt(message), new Salsa20(key, salsaNonce).crypt(message));
+        System.out.println("Консистентност (rekey = нов обект): " + (consistent ? "✓ PASS" : "✗ FAIL") + "\n");
+
+        // Заделена памет от текущата нишка (ако JVM-ът я отчита)
+        java.lang.management.ThreadMXBean threads = java.lang.management.ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocations = threads instanceof com.sun.management.ThreadMXBean
+                ? (com.sun.management.ThreadMXBean) threads : null;
+        long thread = Thread.currentThread().threadId();
+
+        System.out.println("Шифър      | Нов обект        | reinit           | Ускорение");
+        System.out.println("---------------------------------------------------------------");
+
+        String[] names = { "ChaCha20", "Salsa20" };
+        for (String name : names) {
+            double[] nanos = new double[2];
+            long[] bytes = new long[2];
 
+            for (int iteration = 0; iteration < WARMUP_ITERATIONS + 1; iteration++) {
+                for (int mode = 0; mode < 2; mode++) {
+                    long allocated = allocations != null ? allocations.getThreadAllocatedBytes(thread) : 0;
+                    long start = System.nanoTime();
+                    for (int m = 0; m < messages; m++) {
+                        chachaNonce[0] = (byte) m;
+                        salsaNonce[0] = (byte) m;
+                        if (name.equals("ChaCha20")) {
+                            if (mode == 0) {
+                                new ChaCha20(key, chachaNonce).crypt(message, 0, message.length, message, 0);
+                            } else {
+                                chacha.reinit(chachaNonce, 0);
+                                chacha.crypt(message, 0, message.length, message, 0);
+                            }
+                        } else {
+                            if (mode == 0) {
+                                new Salsa20(key, salsaNonce).crypt(message, 0, message.length, message, 0);
+                            } else {
+                                salsa.reinit(salsaNonce, 0);
+                                salsa.crypt(message, 0, message.length, message, 0);
+                            }
+                        }
+                    }
+                    nanos[mode] = (double) (System.nanoTime() - start) / messages;
+                    bytes[mode] = allocations != null
+                            ? (allocations.getThreadAllocatedBytes(thread) - allocated) / messages : -1;
+                }
+            }
+
+            System.out.printf("%-10s | %6.0f ns %4d B | %6.0f ns %4d B | %.2fx%n",
+                    name, nanos[0], bytes[0], nanos[1], bytes[1], nanos[0] / nanos[1]);
+        }
+        System.out.println("(време и заделени байтове за едно 64-байтово съобщение)");
+        System.out.println();
+    }
+
+    /**
+     * Изолира цената на сериализацията на keystream думите + XOR с данните:
+     * по байт (4 записа на дума, предишният начин) спрямо по 8 байта
+     * (ChaCha20.xorLong през byteArrayViewVarHandle), и дела ѝ в целия блок
+     */
+    private static void benchmarkWordSerialization() {
+        System.out.println("╔════════════════════════════════════════════════════════════╗");
+        System.out.println("║   СЕРИАЛИЗАЦИЯ НА KEYSTREAM + XOR (ПО БАЙТ / ПО LONG)      ║");
+        System.out.println("╚════════════════════════════════════════════════════════════╝\n");
+
+        int size = 1024 * 1024;
+        int blocks = size / 64;
+        int rounds = 64;
+        byte[] key = new byte[32];
+        byte[] data = new byte[size];
+        int[] words = new int[16];
+        java.util.Random random = new java.util.Random();
+        random.nextBytes(key);
+        random.nextBytes(data);
+        for (int i = 0; i < words.length; i++) {
+            words[i] = random.nextInt();
+        }
+
+        double bytewiseNs = 0;
+        double wideNs = 0;
+        double chachaNs = 0;
+        double salsaNs = 0;
+
+        for (int iteration = 0; iteration < WARMUP_ITERATIONS + 1; iteration++) {
+            // По байт - 16 думи × 4 байтови записа
             long start = System.nanoTime();
-            cipher.crypt(data);
-            long end = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                for (int b = 0; b < blocks; b++) {
+                    int off = b * 64;
+                    for (int i = 0; i < 16; i++) {
+                        xorWordBytewise(words[i] ^ b, data, off + i * 4, data, off + i * 4);
+                    }
+                }
+            }
+            bytewiseNs = (double) (System.nanoTime() - start) / ((long) rounds * blocks);
 
-            times[i] = (end - start) / 1_000_000.0;
+            // По 8 байта - 8 long-а
+            start = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                for (int b = 0; b < blocks; b++) {
+                    int off = b * 64;
+                    for (int i = 0; i < 16; i += 2) {
+                        ChaCha20.xorLong(words[i] ^ b, words[i + 1], data, off + i * 4, data, off + i * 4);
+                    }
+                }
+            }
+            wideNs = (double) (System.nanoTime() - start) / ((long) rounds * blocks);
+
+            // Целият блок (рундове + сериализация + XOR)
+            ChaCha20 chacha = new ChaCha20(key, new byte[12]);
+            start = System.nanoTime();
+            for (int r = 0; r < rounds / 8; r++) {
+                chacha.crypt(data, 0, size, data, 0);
+            }
+            chachaNs = (double) (System.nanoTime() - start) / ((long) rounds / 8 * blocks);
+
+            Salsa20 salsa = new Salsa20(key, new byte[8]);
+            start = System.nanoTime();
+            for (int r = 0; r < rounds / 8; r++) {
+                salsa.crypt(data, 0, size, data, 0);
+            }
+            salsaNs = (double) (System.nanoTime() - start) / ((long) rounds / 8 * blocks);
         }
 
-        // Calculate statistics
-        double avgTime = 0;
-        double minTime = Double.MAX_VALUE;
-        double maxTime = 0;
+        System.out.printf("Сериализация + XOR на 64-байтов блок: по байт %.2f ns, по 8 байта %.2f ns (%.1fx)%n%n",
+                bytewiseNs, wideNs, bytewiseNs / wideNs);
+        System.out.println("Шифър     | Блок (сега) | Дял преди | Дял сега | Блок преди (оценка)");
+        System.out.println("----------------------------------------------------------------------");
 
-        for (double t : times) {
-            avgTime += t;
-            minTime = Math.min(minTime, t);
-            maxTime = Math.max(maxTime, t);
+        String[] names = { "ChaCha20", "Salsa20" };
+        double[] blockNs = { chachaNs, salsaNs };
+        for (int c = 0; c < names.length; c++) {
+            double before = blockNs[c] - wideNs + bytewiseNs;
+            System.out.printf("%-9s | %8.2f ns | %8.1f%% | %7.1f%% | %8.2f ns%n",
+                    names[c], blockNs[c], 100 * bytewiseNs / before, 100 * wideNs / blockNs[c], before);
         }
-        avgTime /= TEST_ITERATIONS;
+        System.out.println();
+    }
 
-        double stdDev = calculateStdDev(times, avgTime);
-        double throughput = (dataSize / (1024.0 * 1024.0)) / (avgTime / 1000.0);
+    /**
+     * Предишната сериализация: 32-битова дума като 4 отделни байтови XOR-а
+     */
+    private static void xorWordBytewise(int word, byte[] in, int inOff, byte[] out, int outOff) {
+        out[outOff] = (byte) (in[inOff] ^ word);
+        out[outOff + 1] = (byte) (in[inOff + 1] ^ (word >>> 8));
+        out[outOff + 2] = (byte) (in[inOff + 2] ^ (word >>> 16));
+        out[outOff + 3] = (byte) (in[inOff + 3] ^ (word >>> 24));
+    }
 
-        BenchmarkResult result = new BenchmarkResult();
-        result.cipherName = "Salsa20";
-        result.dataSize = dataSize;
-        result.avgTimeMs = avgTime;
-        result.throughputMBps = throughput;
-        result.minTime = minTime;
-        result.maxTime = maxTime;
-        result.stdDev = stdDev;
+    /**
+     * ChaCha20Adaptive - прагове на автоматичния избор и латентност/производителност
+     * спрямо чисто скаларния и чисто векторния ChaCha20 при различни размери
+     */
+    private static void benchmarkAdaptiveDispatch() {
+        System.out.println("╔════════════════════════════════════════════════════════════╗");
+        System.out.println("║     CHACHA20 - АВТОМАТИЧЕН ИЗБОР ПО РАЗМЕР НА ДАННИТЕ      ║");
+        System.out.println("╚════════════════════════════════════════════════════════════╝\n");
 
-        return result;
+        byte[] key = new byte[32];
+        byte[] nonce = ChaCha20.generateNonce();
+        new java.security.SecureRandom().nextBytes(key);
+
+        // Първият обект зарежда праговете от файла или ги калибрира
+        long start = System.nanoTime();
+        ChaCha20Adaptive adaptive = new ChaCha20Adaptive(key, nonce);
+        long setup = System.nanoTime() - start;
+        int vectorThreshold = ChaCha20Adaptive.vectorThreshold();
+        int parallelThreshold = ChaCha20Adaptive.parallelThreshold();
+
+        System.out.printf("Прагове (%.1f ms за зареждане/калибриране):%n", setup / 1e6);
+        System.out.println("  Векторен път:  " + (vectorThreshold == Integer.MAX_VALUE ? "изключен" : "от " + formatSize(vectorThreshold)));
+        System.out.println("  Паралелен път: " + (parallelThreshold == Integer.MAX_VALUE ? "изключен" : "от " + formatSize(parallelThreshold)));
+
+        // Коректност: парчета с различни размери минават по различни пътища
+        byte[] data = new byte[3 * 1024 * 1024];
+        new java.util.Random().nextBytes(data);
+        byte[] expected = new ChaCha20(key, nonce).crypt(data);
+        byte[] actual = new byte[data.length];
+        int[] pieces = { 7, 100, 5000, 70000, 400000 };
+        for (int offset = 0, p = 0; offset < data.length; p++) {
+            int len = Math.min(pieces[p % pieces.length], data.length - offset);
+            adaptive.crypt(data, offset, len, actual, offset);
+            offset += len;
+        }
+        byte[] whole = new ChaCha20Adaptive(key, nonce).crypt(data);
+        boolean consistent = java.util.Arrays.equals(expected, actual) && java.util.Arrays.equals(expected, whole);
+        System.out.println("\nКонсистентност (= скаларен ChaCha20): " + (consistent ? "✓ PASS" : "✗ FAIL"));
+
+        int[] sizes = { 16, 256, 1024, 4 * 1024, 64 * 1024, 1024 * 1024, 8 * 1024 * 1024 };
+        ChaCha20[] ciphers = { new ChaCha20(key, nonce), new ChaCha20Vector(key, nonce), adaptive };
+        byte[] buffer = new byte[sizes[sizes.length - 1]];
+
+        System.out.println("\nРазмер   | Скаларен        | Векторен        | Адаптивен       | Адаптивен път");
+        System.out.println("-------------------------------------------------------------------------------");
+
+        for (int size : sizes) {
+            int calls = Math.max(1, 16 * 1024 * 1024 / size);
+            double[] nanos = new double[ciphers.length];
+
+            for (int iteration = 0; iteration < WARMUP_ITERATIONS + 1; iteration++) {
+                for (int c = 0; c < ciphers.length; c++) {
+                    long begin = System.nanoTime();
+                    for (int i = 0; i < calls; i++) {
+                        ciphers[c].crypt(buffer, 0, size, buffer, 0);
+                    }
+                    nanos[c] = (double) (System.nanoTime() - begin) / calls;
+                }
+            }
+
+            String path = size < vectorThreshold ? "скаларен" : size < parallelThreshold ? "векторен" : "паралелен";
+            System.out.printf("%-8s | %s | %s | %s | %s%n", formatSize(size),
+                    formatLatency(nanos[0], size), formatLatency(nanos[1], size), formatLatency(nanos[2], size), path);
+        }
+        System.out.println();
+    }
+
+    /**
+     * Време за едно извикване (до 100 KB) или производителност (за по-големи)
+     */
+    private static String formatLatency(double nanos, int size) {
+        if (size <= 100 * 1024) {
+            return String.format("%10.0f ns  ", nanos);
+        }
+        return String.format("%10.2f MB/s", size / (1024.0 * 1024.0) / (nanos / 1e9));
+    }
+
+    /**
+     * Сравнява ChaCha20-Poly1305 AEAD с вградения в JDK "ChaCha20-Poly1305"
+     * (javax.crypto.Cipher), както и с чистото ChaCha20 криптиране без MAC
+     */
+    private static void benchmarkAead() {
+        System.out.println("╔════════════════════════════════════════════════════════════╗");
+        System.out.println("║          CHACHA20-POLY1305 AEAD СРЕЩУ JDK                  ║");
+        System.out.println("╚════════════════════════════════════════════════════════════╝\n");
+
+        byte[] key = new byte[32];
+        byte[] nonce = new byte[12];
+        byte[] aad = new byte[16];
+        new java.security.SecureRandom().nextBytes(key);
+        new java.security.SecureRandom().nextBytes(aad);
+        ChaCha20Poly1305 aead = new ChaCha20Poly1305(key);
+        ChaCha20Vector chacha = new ChaCha20Vector(key, nonce, 1);
+        javax.crypto.spec.SecretKeySpec jdkKey = new javax.crypto.spec.SecretKeySpec(key, "ChaCha20");
+
+        try {
+            javax.crypto.Cipher jdk = javax.crypto.Cipher.getInstance("ChaCha20-Poly1305");
+
+            // Коректност: еднакъв ciphertext и tag с JDK, open отхвърля променени данни
+            byte[] message = new byte[10_000];
+            new java.util.Random().nextBytes(message);
+            jdk.init(javax.crypto.Cipher.ENCRYPT_MODE, jdkKey, new javax.crypto.spec.IvParameterSpec(nonce));
+            jdk.updateAAD(aad);
+            byte[] sealed = aead.seal(nonce, aad, message);
+            boolean identical = java.util.Arrays.equals(sealed, jdk.doFinal(message))
+                    && java.util.Arrays.equals(message, aead.open(nonce, aad, sealed));
+            sealed[0] ^= 1;
+            try {
+                aead.open(nonce, aad, sealed);
+                identical = false;
+            } catch (IllegalArgumentException expected) {
+                // Промененият ciphertext трябва да бъде отхвърлен
+            }
+            System.out.println("Консистентност (= JDK, отхвърля променени данни): " + (identical ? "✓ PASS" : "✗ FAIL"));
+            System.out.println();
+
+            int[] sizes = { 1024, 16 * 1024, 1024 * 1024 };
+            System.out.println("Размер   | ChaCha20-V (без MAC) | Наш AEAD        | JDK AEAD        | Наш / JDK");
+            System.out.println("------------------------------------------------------------------------------------");
+
+            for (int size : sizes) {
+                byte[] data = new byte[size];
+                byte[] output = new byte[size + ChaCha20Poly1305.TAG_LENGTH];
+                int messages = Math.max(1, 64 * 1024 * 1024 / size);
+                double[] mbps = new double[3];
+
+                for (int iteration = 0; iteration < WARMUP_ITERATIONS + 1; iteration++) {
+                    long start = System.nanoTime();
+                    for (int m = 0; m < messages; m++) {
+                        chacha.crypt(data, 0, size, output, 0);
+                    }
+                    long end = System.nanoTime();
+                    mbps[0] = messages * (size / (1024.0 * 1024.0)) / ((end - start) / 1e9);
+
+                    start = System.nanoTime();
+                    for (int m = 0; m < messages; m++) {
+                        nonce[0] = (byte) m;
+                        nonce[1] = (byte) (m >>> 8);
+                        nonce[2] = (byte) iteration;
+                        aead.seal(nonce, aad, data, 0, size, output, 0);
+                    }
+                    end = System.nanoTime();
+                    mbps[1] = messages * (size / (1024.0 * 1024.0)) / ((end - start) / 1e9);
+
+                    // JDK забранява повторен nonce с един ключ, затова всяко съобщение е с нов nonce
+                    start = System.nanoTime();
+                    for (int m = 0; m < messages; m++) {
+                        nonce[0] = (byte) m;
+                        nonce[1] = (byte) (m >>> 8);
+                        nonce[2] = (byte) (iteration + 100);
+                        jdk.init(javax.crypto.Cipher.ENCRYPT_MODE, jdkKey, new javax.crypto.spec.IvParameterSpec(nonce));
+                        jdk.updateAAD(aad);
+                        jdk.doFinal(data, 0, size, output, 0);
+                    }
+                    end = System.nanoTime();
+                    mbps[2] = messages * (size / (1024.0 * 1024.0)) / ((end - start) / 1e9);
+                }
+
+                System.out.printf("%-8s | %15.2f MB/s | %10.2f MB/s | %10.2f MB/s | %.2fx%n",
+                        formatSize(size), mbps[0], mbps[1], mbps[2], mbps[1] / mbps[2]);
+            }
+        } catch (java.security.GeneralSecurityException e) {
+            System.out.println("⚠️  JDK ChaCha20-Poly1305 не е наличен: " + e.getMessage());
+        }
+        System.out.println();
     }
 
     /**
@@ -291,6 +1664,109 @@ public class StreamCipherBenchmark {
         boolean salsaOk = java.util.Arrays.equals(testData, salsaDecrypted);
         System.out.println(salsaOk ? "✓ PASS" : "✗ FAIL");
 
+        // XChaCha20 - HChaCha20 тестов вектор (draft-irtf-cfrg-xchacha, 2.2.1) + криптиране/декриптиране
+        System.out.print("XChaCha20: ");
+        byte[] hchachaKey = new byte[32];
+        for (int k = 0; k < 32; k++) {
+            hchachaKey[k] = (byte) k;
+        }
+        byte[] hchachaNonce = {
+                0x00, 0x00, 0x00, 0x09, 0x00, 0x00, 0x00, 0x4a,
+                0x00, 0x00, 0x00, 0x00, 0x31, 0x41, 0x59, 0x27
+        };
+        int[] expectedSubkey = {
+                0x423b4182, 0xfe7bb227, 0x50420ed3, 0x737d878a,
+                0xd5e4f9a0, 0x53a8748a, 0x13c42ec1, 0xdcecd326
+        };
+        boolean xchachaOk = java.util.Arrays.equals(
+                XChaCha20.deriveSubkey(hchachaKey, hchachaNonce).words, expectedSubkey);
+        byte[] xchachaNonce = XChaCha20.generateNonce();
+        byte[] xchachaEncrypted = new XChaCha20(chachaKey, xchachaNonce, 0).crypt(testData);
+        xchachaOk &= java.util.Arrays.equals(testData,
+                new XChaCha20(chachaKey, xchachaNonce, 0).crypt(xchachaEncrypted));
+        System.out.println(xchachaOk ? "✓ PASS" : "✗ FAIL");
+
+        // XSalsa20 - HSalsa20 тестов вектор (NaCl, core1) + криптиране/декриптиране
+        System.out.print("XSalsa20:  ");
+        byte[] hsalsaKey = {
+                0x4a, 0x5d, (byte) 0x9d, 0x5b, (byte) 0xa4, (byte) 0xce, 0x2d, (byte) 0xe1,
+                0x72, (byte) 0x8e, 0x3b, (byte) 0xf4, (byte) 0x80, 0x35, 0x0f, 0x25,
+                (byte) 0xe0, 0x7e, 0x21, (byte) 0xc9, 0x47, (byte) 0xd1, (byte) 0x9e, 0x33,
+                0x76, (byte) 0xf0, (byte) 0x9b, 0x3c, 0x1e, 0x16, 0x17, 0x42
+        };
+        int[] expectedSalsaSubkey = {
+                0x6455271b, 0xd485e973, 0x1951cd62, 0xc7469a7a,
+                0x9e540960, 0xf27464ac, 0x08eec406, 0x8983f644
+        };
+        boolean xsalsaOk = java.util.Arrays.equals(
+                XSalsa20.deriveSubkey(hsalsaKey, new byte[16]).words, expectedSalsaSubkey);
+        byte[] xsalsaNonce = XSalsa20.generateNonce();
+        byte[] xsalsaEncrypted = new XSalsa20(salsaKey, xsalsaNonce, 0).crypt(testData);
+        xsalsaOk &= java.util.Arrays.equals(testData,
+                new XSalsa20(salsaKey, xsalsaNonce, 0).crypt(xsalsaEncrypted));
+        System.out.println(xsalsaOk ? "✓ PASS" : "✗ FAIL");
+
+        // ChaCha20-Poly1305 - Poly1305 тестов вектор (RFC 8439, 2.5.2) + seal/open
+        System.out.print("AEAD:     ");
+        byte[] polyKey = {
+                (byte) 0x85, (byte) 0xd6, (byte) 0xbe, 0x78, 0x57, 0x55, 0x6d, 0x33,
+                0x7f, 0x44, 0x52, (byte) 0xfe, 0x42, (byte) 0xd5, 0x06, (byte) 0xa8,
+                0x01, 0x03, (byte) 0x80, (byte) 0x8a, (byte) 0xfb, 0x0d, (byte) 0xb2, (byte) 0xfd,
+                0x4a, (byte) 0xbf, (byte) 0xf6, (byte) 0xaf, 0x41, 0x49, (byte) 0xf5, 0x1b
+        };
+        byte[] expectedTag = {
+                (byte) 0xa8, 0x06, 0x1d, (byte) 0xc1, 0x30, 0x51, 0x36, (byte) 0xc6,
+                (byte) 0xc2, 0x2b, (byte) 0x8b, (byte) 0xaf, 0x0c, 0x01, 0x27, (byte) 0xa9
+        };
+        boolean aeadOk = java.util.Arrays.equals(expectedTag,
+                Poly1305.mac(polyKey, "Cryptographic Forum Research Group".getBytes()));
+        ChaCha20Poly1305 aead = new ChaCha20Poly1305(chachaKey);
+        byte[] aad = "header".getBytes();
+        aeadOk &= java.util.Arrays.equals(testData,
+                aead.open(chachaNonce, aad, aead.seal(chachaNonce, aad, testData)));
+        System.out.println(aeadOk ? "✓ PASS" : "✗ FAIL");
+
+        // XSalsa20-Poly1305 secretbox - tag от референтна имплементация + seal/open на място
+        System.out.print("Secretbox: ");
+        byte[] secretboxNonce = new byte[24];
+        for (int i = 0; i < secretboxNonce.length; i++) {
+            secretboxNonce[i] = (byte) i;
+        }
+        byte[] expectedSecretboxTag = {
+                (byte) 0xd6, (byte) 0x9d, 0x67, (byte) 0x94, 0x3b, 0x72, (byte) 0xc5, 0x0a,
+                (byte) 0xbd, 0x0e, 0x22, (byte) 0xe6, 0x67, (byte) 0xc7, (byte) 0xb9, (byte) 0x99
+        };
+        XSalsa20Poly1305 secretbox = new XSalsa20Poly1305(hsalsaKey);
+        byte[] sealedBox = secretbox.seal(secretboxNonce, "Cryptographic Forum Research Group".getBytes());
+        boolean secretboxOk = java.util.Arrays.equals(expectedSecretboxTag,
+                java.util.Arrays.copyOf(sealedBox, XSalsa20Poly1305.TAG_LENGTH));
+        byte[] inPlace = new byte[testData.length + XSalsa20Poly1305.TAG_LENGTH];
+        System.arraycopy(testData, 0, inPlace, XSalsa20Poly1305.TAG_LENGTH, testData.length);
+        secretbox.sealInPlace(secretboxNonce, inPlace, 0, testData.length);
+        secretboxOk &= java.util.Arrays.equals(testData, secretbox.open(secretboxNonce, inPlace));
+        System.out.println(secretboxOk ? "✓ PASS" : "✗ FAIL");
+
+        // Seek - декриптиране на диапазон от средата без обработка от началото
+        System.out.print("Seek:     ");
+        byte[] largeData = new byte[100_000];
+        new java.util.Random().nextBytes(largeData);
+        int from = 54_321;
+        int length = 4096;
+        byte[] range = new byte[length];
+
+        byte[] chachaFull = new ChaCha20(chachaKey, chachaNonce, 1).crypt(largeData);
+        ChaCha20 chachaSeek = new ChaCha20(chachaKey, chachaNonce, 1);
+        chachaSeek.seek(from);
+        chachaSeek.crypt(chachaFull, from, length, range, 0);
+        boolean seekOk = java.util.Arrays.equals(range, java.util.Arrays.copyOfRange(largeData, from, from + length));
+
+        byte[] salsaFull = new Salsa20(salsaKey, salsaNonce, 1).crypt(largeData);
+        Salsa20 salsaSeek = new Salsa20(salsaKey, salsaNonce, 1);
+        salsaSeek.seek(from);
+        salsaSeek.crypt(salsaFull, from, length, range, 0);
+        seekOk &= java.util.Arrays.equals(range, java.util.Arrays.copyOfRange(largeData, from, from + length));
+        System.out.println(seekOk ? "✓ PASS" : "✗ FAIL");
+
         System.out.println();
     }
 
@@ -315,6 +1791,9 @@ public class StreamCipherBenchmark {
         // Correctness test
         testCorrectness();
 
+        // Engine registry (KAT + selection)
+        benchmarkEngineRegistry();
+
         // Performance benchmarks
         System.out.println("╔════════════════════════════════════════════════════════════╗");
         System.out.println("║          BENCHMARK ТЕСТОВЕ                                 ║");
@@ -322,6 +1801,9 @@ public class StreamCipherBenchmark {
 
         System.out.println("Извършване на " + TEST_ITERATIONS + " итерации за всеки тест...\n");
 
+        // Резултатите за най-големия размер - за обобщението накрая
+        BenchmarkResult[] largest = null;
+
         for (int size : TEST_SIZES) {
             System.out.println("═══════════════════════════════════════════════════════════");
             System.out.println("Размер на данни: " + formatSize(size));
@@ -337,11 +1819,20 @@ public class StreamCipherBenchmark {
             BenchmarkResult chacha = benchmarkChaCha20(size);
             System.out.println("\r" + chacha);
 
+            System.out.print("Тестване ChaCha20-V..");
+            BenchmarkResult chachaVector = benchmarkChaCha20Vector(size);
+            System.out.println("\r" + chachaVector);
+
             System.out.print("Тестване Salsa20...  ");
             BenchmarkResult salsa = benchmarkSalsa20(size);
             System.out.println("\r" + salsa);
 
+            System.out.print("Тестване Salsa20-V...");
+            BenchmarkResult salsaVector = benchmarkSalsa20Vector(size);
+            System.out.println("\r" + salsaVector);
+
             System.out.println();
+            largest = new BenchmarkResult[] { rc4, chacha, chachaVector, salsa, salsaVector };
 
             // Comparison
             double rc4Speed = rc4.throughputMBps;
@@ -364,6 +1855,14 @@ public class StreamCipherBenchmark {
                 System.out.printf("   RC4 е %.2fx по-бавен от Salsa20%n", salsaSpeed / rc4Speed);
             }
             
+            // ChaCha20 Vector API vs скаларна ChaCha20
+            System.out.printf("   ChaCha20-V (%d блока/итерация) е %.2fx спрямо скаларната ChaCha20%n",
+                    ChaCha20Vector.lanes(), chachaVector.throughputMBps / chachaSpeed);
+
+            // Salsa20 Vector API vs скаларна Salsa20
+            System.out.printf("   Salsa20-V (%d блока/итерация) е %.2fx спрямо скаларната Salsa20%n",
+                    Salsa20Vector.blocksPerIteration(), salsaVector.throughputMBps / salsaSpeed);
+
             // Salsa20 vs ChaCha20
             if (salsaSpeed > chachaSpeed) {
                 System.out.printf("   Salsa20 е %.2fx по-бърз от ChaCha20%n", salsaSpeed / chachaSpeed);
@@ -374,6 +1873,54 @@ public class StreamCipherBenchmark {
             System.out.println();
         }
 
+        // Reduced-round variants
+        benchmarkReducedRounds();
+
+        // Poly1305 MAC
+        benchmarkPoly1305();
+
+        // Authenticated encryption
+        benchmarkAead();
+
+        // XSalsa20-Poly1305 secretbox
+        benchmarkSecretbox();
+
+        // Per-message reinit vs new instance
+        benchmarkReinit();
+
+        // Keystream serialization + XOR cost
+        benchmarkWordSerialization();
+
+        // Size-adaptive ChaCha20 dispatch
+        benchmarkAdaptiveDispatch();
+
+        // NIO ByteBuffer API
+        benchmarkByteBuffers();
+
+        // Foreign memory (MemorySegment) API
+        benchmarkMemorySegments();
+
+        // Chunked streaming
+        benchmarkChunkedStreaming();
+
+        // Chunked streaming AEAD
+        benchmarkStreamingAead();
+
+        // Parallel scaling
+        benchmarkParallelScaling();
+
+        // RC4 key schedule cache
+        benchmarkRC4KeyScheduleCache();
+
+        // RC4 interleaved batch
+        benchmarkRC4Batch();
+
+        // XChaCha20 small-message latency
+        benchmarkXChaCha20SmallMessages();
+
+        // XSalsa20 small-message latency
+        benchmarkXSalsa20SmallMessages();
+
         // Summary
         System.out.println("╔════════════════════════════════════════════════════════════╗");
         System.out.println("║          ОБОБЩЕНИЕ И ИЗВОДИ                                ║");
@@ -381,11 +1928,19 @@ public class StreamCipherBenchmark {
 
         System.out.println("🔍 АНАЛИЗ НА РЕЗУЛТАТИТЕ:\n");
 
-        System.out.println("1. СКОРОСТ:");
-        System.out.println("   • Salsa20 е най-бърз (~450 MB/s)");
-        System.out.println("   • ChaCha20 е втори (~425 MB/s)");
-        System.out.println("   • RC4 е най-бавен (~270 MB/s) и НЕСИГУРЕН!");
-        System.out.println("   • Модерните ARX шифри (ChaCha20/Salsa20) са по-бързи от RC4\n");
+        // Класиране по измерената производителност (не по очаквани стойности)
+        System.out.println("1. СКОРОСТ (измерена при " + formatSize(largest[0].dataSize) + "):");
+        BenchmarkResult[] ranking = largest.clone();
+        java.util.Arrays.sort(ranking, (a, b) -> Double.compare(b.throughputMBps, a.throughputMBps));
+        for (int i = 0; i < ranking.length; i++) {
+            System.out.printf("   %d. %-10s %10.2f MB/s%s%n", i + 1, ranking[i].cipherName,
+                    ranking[i].throughputMBps, ranking[i] == largest[0] ? " (НЕСИГУРЕН!)" : "");
+        }
+        double rc4Speed = largest[0].throughputMBps;
+        double arxSpeed = Math.max(largest[1].throughputMBps, largest[3].throughputMBps);
+        System.out.printf("   • По-бързият скаларен ARX шифър (ChaCha20/Salsa20) е %.2fx %s от RC4%n%n",
+                arxSpeed >= rc4Speed ? arxSpeed / rc4Speed : rc4Speed / arxSpeed,
+                arxSpeed >= rc4Speed ? "по-бърз" : "по-бавен");
 
         System.out.println("2. СИГУРНОСТ:");
         System.out.println("   ❌ RC4 - НЕ използвайте (множество уязвимости)");
@@ -0,0 +1,624 @@
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Регистър на имплементациите (engines) на поточните шифри
+ * 
+ * За всеки алгоритъм може да има няколко engine-а - напр. скаларен и
+ * векторен (jdk.incubator.vector). При първото поискване на алгоритъм
+ * регистърът:
+ * 1. проверява всеки engine с known-answer тест (KAT): SHA-256 на първите
+ * 1024 байта keystream за фиксиран ключ и nonce, генерирани на парчета
+ * с различен размер, плюс проверка на seek и reset
+ * 2. отхвърля engine-ите, които дават грешен резултат или не могат да
+ * се заредят на текущата JVM (напр. липсващ модул)
+ * 3. измерва производителността на валидните и избира най-бързия
+ * 
+ * Резултатът се кешира, така че нов engine, регистриран тук, достига до
+ * всички извикващи (benchmark-ите) без промени в кода им.
+ * 
+ * Изборът се заключва поотделно за всеки алгоритъм: докато се измерва
+ * един алгоритъм, newCipher за вече избраните и за останалите не чака.
+ * Когато резултатът трябва да е възпроизводим (SecurityAnalysis), engine-ът
+ * се посочва по име - тогава се прави само KAT, без измерване.
+ * 
+ * @author Курсова работа по АSК
+ * @version 1.0
+ */
+public final class StreamCipherRegistry {
+
+    /**
+     * Една имплементация на алгоритъм
+     */
+    public static final class Engine {
+
+        private final String algorithm;
+        private final String name;
+        private final Supplier<StreamCipher> factory;
+
+        // KAT се пише под lock-а на engine-а, измерването - под lock-а на алгоритъма
+        private volatile boolean validated;
+        private volatile boolean valid;
+        private volatile String failure;
+        private volatile double throughputMBps;
+
+        private Engine(String algorithm, String name, Supplier<StreamCipher> factory) {
+            this.algorithm = algorithm;
+            this.name = name;
+            this.factory = factory;
+        }
+
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Дали engine-ът е минал KAT на текущата JVM
+         */
+        public boolean isValid() {
+            return valid;
+        }
+
+        /**
+         * Причина за отхвърляне (null, ако engine-ът е валиден)
+         */
+        public String getFailure() {
+            return failure;
+        }
+
+        /**
+         * Измерена производителност в MB/s (0, ако не е измервана)
+         */
+        public double getThroughputMBps() {
+            return throughputMBps;
+        }
+
+        /**
+         * Нов, неинициализиран шифър от този engine
+         */
+        public StreamCipher newInstance() {
+            return factory.get();
+        }
+
+        /**
+         * Нов шифър, инициализиран с ключ и nonce
+         */
+        public StreamCipher newInstance(byte[] key, byte[] nonce) {
+            StreamCipher cipher = factory.get();
+            cipher.init(key, nonce);
+            return cipher;
+        }
+    }
+
+    // Размер на KAT keystream-а и парчетата, на които се генерира
+    private static final int KAT_LENGTH = 1024;
+    private static final int[] KAT_PIECES = { 1, 63, 200, 760 };
+
+    // Измерване на производителността: 16 KB на извикване, интервали по 10 ms,
+    // край след 30 интервала без подобрение или след 2 секунди
+    private static final int MEASURE_SIZE = 16 * 1024;
+    private static final long MEASURE_INTERVAL_NANOS = 10_000_000L;
+    private static final int MEASURE_PATIENCE = 30;
+    private static final long MEASURE_MAX_NANOS = 2_000_000_000L;
+
+    // Попълват се само в static блока; списъкът с engine-и е и lock-ът на алгоритъма
+    private static final Map<String, List<Engine>> ENGINES = new LinkedHashMap<>();
+    private static final Map<String, Integer> NONCE_LENGTHS = new HashMap<>();
+    private static final Map<String, String> KAT_DIGESTS = new HashMap<>();
+    private static final Map<String, Engine> SELECTED = new ConcurrentHashMap<>();
+
+    static {
+        // KAT: ключ 00..1f, nonce 40 41 42 ..., SHA-256 на 1024 байта keystream
+        // (изчислени с независима референтна имплементация)
+        algorithm("RC4", 0, "3e9b293697a1472d8e5924f6008df628ea6de07f03bdefe3b65db5dfb5b71f04");
+        algorithm("ChaCha20", 12, "562578f29c9f97898134ba6f9fe6575b22a8016fe1813f460508582f3d8eb125");
+        algorithm("ChaCha12", 12, "3be89a3cf1c4ee4cf063aaef597862f6ab7ac4b44506e29e00878db276a7842f");
+        algorithm("ChaCha8", 12, "cc2c0cbac30895f27917004a4e75cd41c36f65535bfb5575393bccf8a8e12c7b");
+        algorithm("Salsa20", 8, "90f3628f3ab25268d268cefa1a720aec8694da431bb5a8de336f29db54ead108");
+        algorithm("Salsa20/12", 8, "43aa4df6ccd53becad51af557bb874a173a353246eef3e19982308c26de960ae");
+        algorithm("Salsa20/8", 8, "cb858f3426dc87dfe31c8fe4f922489751066a055bcf0b366c3cff91b6b498f9");
+        algorithm("XChaCha20", 24, "aacc92f78ef90b22ec415a785aad2725443d130bd1e4a8d78d85ec23b17bde8f");
+        algorithm("XSalsa20", 24, "6f48942dbc868e515ef6664e233bfe6b38388563f85dc49b25a1e483d7674450");
+
+        register("RC4", "scalar", RC4Cipher::new);
+
+        for (int rounds : new int[] { 20, 12, 8 }) {
+            String chacha = "ChaCha" + rounds;
+            String salsa = rounds == 20 ? "Salsa20" : "Salsa20/" + rounds;
+
+            register(chacha, "scalar", () -> new ChaChaCipher(chacha, 12,
+                    (key, nonce) -> new ChaCha20(key, nonce, 0, rounds)));
+            register(chacha, "vector", () -> new ChaChaCipher(chacha, 12,
+                    (key, nonce) -> new ChaCha20Vector(key, nonce, 0, rounds)));
+            register(chacha, "adaptive", () -> new ChaChaCipher(chacha, 12,
+                    (key, nonce) -> new ChaCha20Adaptive(key, nonce, 0, rounds)));
+            register(salsa, "scalar", () -> new SalsaCipher(salsa, 8,
+                    (key, nonce) -> new Salsa20(key, nonce, 0, rounds)));
+            register(salsa, "vector", () -> new SalsaCipher(salsa, 8,
+                    (key, nonce) -> new Salsa20Vector(key, nonce, 0, rounds)));
+        }
+
+        register("XChaCha20", "scalar", () -> new ChaChaCipher("XChaCha20", 24, XChaCha20::new));
+        register("XSalsa20", "scalar", () -> new SalsaCipher("XSalsa20", 24, XSalsa20::new));
+    }
+
+    private StreamCipherRegistry() {
+    }
+
+    /**
+     * Добавя алгоритъм с дължината на nonce-а и KAT резултата му
+     */
+    private static void algorithm(String algorithm, int nonceLength, String katDigest) {
+        NONCE_LENGTHS.put(algorithm, nonceLength);
+        KAT_DIGESTS.put(algorithm, katDigest);
+        ENGINES.put(algorithm, new CopyOnWriteArrayList<>());
+    }
+
+    /**
+     * Регистрира нов engine за съществуващ алгоритъм
+     * 
+     * Engine-ът минава KAT и измерване при следващия избор за алгоритъма.
+     * 
+     * @param algorithm име на алгоритъма (напр. "ChaCha20")
+     * @param name      име на engine-а (напр. "scalar", "vector")
+     * @param factory   създава нови, неинициализирани шифри
+     * @throws IllegalArgumentException при непознат алгоритъм (без KAT)
+     */
+    public static void register(String algorithm, String name, Supplier<StreamCipher> factory) {
+        List<Engine> engines = ENGINES.get(algorithm);
+        if (engines == null) {
+            throw new IllegalArgumentException("Непознат алгоритъм (няма KAT): " + algorithm);
+        }
+
+        synchronized (engines) {
+            engines.add(new Engine(algorithm, name, factory));
+            SELECTED.remove(algorithm);
+        }
+    }
+
+    /**
+     * Имената на всички регистрирани алгоритми
+     */
+    public static Set<String> algorithms() {
+        return Collections.unmodifiableSet(ENGINES.keySet());
+    }
+
+    /**
+     * Дължина на nonce-а на алгоритъма в байтове (0 за RC4)
+     * 
+     * @throws IllegalArgumentException при непознат алгоритъм
+     */
+    public static int nonceLength(String algorithm) {
+        Integer length = NONCE_LENGTHS.get(algorithm);
+        if (length == null) {
+            throw new IllegalArgumentException("Непознат алгоритъм: " + algorithm);
+        }
+        return length;
+    }
+
+    /**
+     * Всички engine-и на алгоритъма, проверени с KAT и измерени
+     * 
+     * @throws IllegalArgumentException при непознат алгоритъм
+     */
+    public static List<Engine> engines(String algorithm) {
+        select(algorithm);
+        return Collections.unmodifiableList(ENGINES.get(algorithm));
+    }
+
+    /**
+     * Конкретен engine по име (напр. "scalar") - само KAT, без измерване
+     * 
+     * @throws IllegalArgumentException ако няма такъв валиден engine
+     */
+    public static Engine engine(String algorithm, String name) {
+        for (Engine engine : enginesOf(algorithm)) {
+            if (engine.name.equals(name) && checked(engine)) {
+                return engine;
+            }
+        }
+        throw new IllegalArgumentException("Няма валиден engine " + name + " за " + algorithm);
+    }
+
+    /**
+     * Най-бързият валиден engine за алгоритъма (изборът се кешира)
+     * 
+     * Първото извикване за алгоритъм измерва engine-ите (до 2 секунди) под
+     * lock-а на този алгоритъм; следващите само четат кеширания избор.
+     * 
+     * @throws IllegalArgumentException при непознат алгоритъм или ако нито
+     *                                  един engine не е минал KAT
+     */
+    public static Engine select(String algorithm) {
+        Engine selected = SELECTED.get(algorithm);
+        if (selected != null) {
+            return selected;
+        }
+
+        List<Engine> engines = enginesOf(algorithm);
+        synchronized (engines) {
+            selected = SELECTED.get(algorithm);
+            if (selected != null) {
+                return selected;
+            }
+
+            List<Engine> valid = new ArrayList<>();
+            for (Engine engine : engines) {
+                if (checked(engine)) {
+                    valid.add(engine);
+                }
+            }
+            if (valid.isEmpty()) {
+                throw new IllegalArgumentException("Нито един engine за " + algorithm + " не е минал KAT");
+            }
+
+            // Измерване само когато има избор
+            selected = valid.get(0);
+            if (valid.size() > 1) {
+                for (Engine engine : valid) {
+                    if (engine.throughputMBps == 0) {
+                        engine.throughputMBps = measure(engine);
+                    }
+                    if (engine.throughputMBps > selected.throughputMBps) {
+                        selected = engine;
+                    }
+                }
+            }
+
+            SELECTED.put(algorithm, selected);
+            return selected;
+        }
+    }
+
+    /**
+     * Нов шифър от най-бързия валиден engine, инициализиран с ключ и nonce
+     * 
+     * @throws IllegalArgumentException при непознат алгоритъм или невалидни размери
+     */
+    public static StreamCipher newCipher(String algorithm, byte[] key, byte[] nonce) {
+        return select(algorithm).newInstance(key, nonce);
+    }
+
+    /**
+     * Нов шифър от посочен engine (напр. "scalar") - без измерване,
+     * за детерминиран избор на имплементацията
+     * 
+     * @throws IllegalArgumentException при непознат алгоритъм или engine,
+     *                                  или при невалидни размери
+     */
+    public static StreamCipher newCipher(String algorithm, String engineName, byte[] key, byte[] nonce) {
+        return engine(algorithm, engineName).newInstance(key, nonce);
+    }
+
+    /**
+     * Списъкът с engine-и на алгоритъма (и lock-ът за избора му)
+     */
+    private static List<Engine> enginesOf(String algorithm) {
+        List<Engine> engines = ENGINES.get(algorithm);
+        if (engines == null) {
+            throw new IllegalArgumentException("Непознат алгоритъм: " + algorithm);
+        }
+        return engines;
+    }
+
+    /**
+     * Дали engine-ът минава KAT (тестът се изпълнява веднъж, под lock-а на engine-а)
+     */
+    private static boolean checked(Engine engine) {
+        synchronized (engine) {
+            if (!engine.validated) {
+                validate(engine);
+            }
+            return engine.valid;
+        }
+    }
+
+    /**
+     * Known-answer тест: keystream на парчета, seek и reset
+     */
+    private static void validate(Engine engine) {
+        engine.validated = true;
+        try {
+            byte[] key = new byte[32];
+            for (int i = 0; i < key.length; i++) {
+                key[i] = (byte) i;
+            }
+            byte[] nonce = new byte[NONCE_LENGTHS.get(engine.algorithm)];
+            for (int i = 0; i < nonce.length; i++) {
+                nonce[i] = (byte) (0x40 + i);
+            }
+
+            StreamCipher cipher = engine.newInstance(key, nonce);
+            byte[] keystream = new byte[KAT_LENGTH];
+            int offset = 0;
+            for (int piece : KAT_PIECES) {
+                cipher.crypt(keystream, offset, piece, keystream, offset);
+                offset += piece;
+            }
+
+            if (!toHex(MessageDigest.getInstance("SHA-256").digest(keystream))
+                    .equals(KAT_DIGESTS.get(engine.algorithm))) {
+                engine.failure = "грешен keystream (KAT)";
+                return;
+            }
+
+            // seek в средата на блок и reset трябва да дадат същите байтове
+            byte[] check = new byte[300];
+            cipher.seek(500);
+            cipher.crypt(check, 0, check.length, check, 0);
+            boolean seekOk = java.util.Arrays.equals(check, 0, check.length, keystream, 500, 800);
+            cipher.reset();
+            java.util.Arrays.fill(check, (byte) 0);
+            cipher.crypt(check, 0, 64, check, 0);
+            boolean resetOk = java.util.Arrays.equals(check, 0, 64, keystream, 0, 64);
+
+            if (!seekOk || !resetOk) {
+                engine.failure = seekOk ? "грешен reset" : "грешен seek";
+                return;
+            }
+            engine.valid = true;
+        } catch (RuntimeException | LinkageError e) {
+            // напр. липсващ jdk.incubator.vector модул
+            engine.failure = e.getClass().getSimpleName() + ": " + e.getMessage();
+        } catch (NoSuchAlgorithmException e) {
+            engine.failure = "SHA-256 не е наличен";
+        }
+    }
+
+    /**
+     * Производителност в MB/s: най-добрият от интервали по 10 ms
+     * 
+     * JIT компилацията (особено на Vector API кода) може да отнеме стотици
+     * милисекунди, затова измерването продължава, докато най-добрият
+     * резултат не се подобри с над 3% за MEASURE_PATIENCE интервала
+     * (или до MEASURE_MAX_NANOS).
+     */
+    private static double measure(Engine engine) {
+        byte[] key = new byte[32];
+        byte[] nonce = new byte[NONCE_LENGTHS.get(engine.algorithm)];
+        byte[] data = new byte[MEASURE_SIZE];
+        StreamCipher cipher = engine.newInstance(key, nonce);
+
+        double best = 0;
+        int sinceImprovement = 0;
+        long deadline = System.nanoTime() + MEASURE_MAX_NANOS;
+        while (sinceImprovement < MEASURE_PATIENCE && System.nanoTime() < deadline) {
+            long bytes = 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                cipher.crypt(data, 0, MEASURE_SIZE, data, 0);
+                bytes += MEASURE_SIZE;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < MEASURE_INTERVAL_NANOS);
+
+            double mbps = (bytes / (1024.0 * 1024.0)) / (elapsed / 1e9);
+            sinceImprovement++;
+            if (mbps > best * 1.03) {
+                sinceImprovement = 0;
+            }
+            best = Math.max(best, mbps);
+        }
+        return best;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    // ═══════════════════════════════════════════════════════════
+    // АДАПТЕРИ КЪМ СЪЩЕСТВУВАЩИТЕ КЛАСОВЕ
+    // ═══════════════════════════════════════════════════════════
+
+    /**
+     * Създава конкретния шифър за ключ и nonce
+     */
+    private interface Factory<T> {
+        T create(byte[] key, byte[] nonce);
+    }
+
+    /**
+     * RC4 - без nonce; seek е reset + пропускане на байтове (O(n))
+     */
+    private static final class RC4Cipher implements StreamCipher {
+
+        private RC4 rc4;
+        private byte[] key;
+
+        @Override
+        public String getAlgorithm() {
+            return "RC4";
+        }
+
+        @Override
+        public int getNonceLength() {
+            return 0;
+        }
+
+        @Override
+        public void init(byte[] key, byte[] nonce) {
+            if (nonce != null && nonce.length != 0) {
+                throw new IllegalArgumentException("RC4 не използва nonce");
+            }
+            this.rc4 = new RC4(key);
+            this.key = key.clone();
+        }
+
+        @Override
+        public void crypt(byte[] in, int inOff, int len, byte[] out, int outOff) {
+            cipher().crypt(in, inOff, len, out, outOff);
+        }
+
+        @Override
+        public int crypt(ByteBuffer src, ByteBuffer dst) {
+            return cipher().crypt(src, dst);
+        }
+
+        @Override
+        public void seek(long byteOffset) {
+            if (byteOffset < 0) {
+                throw new IllegalArgumentException("Позицията не може да е отрицателна");
+            }
+
+            cipher().reset(key);
+            for (long left = byteOffset; left > 0; left -= Integer.MAX_VALUE) {
+                rc4.discard((int) Math.min(left, Integer.MAX_VALUE));
+            }
+        }
+
+        private RC4 cipher() {
+            if (rc4 == null) {
+                throw new IllegalStateException("Шифърът не е инициализиран (init)");
+            }
+            return rc4;
+        }
+    }
+
+    /**
+     * ChaCha20 и наследниците му (ChaCha20Vector, ChaCha20Adaptive, XChaCha20, намалени рундове)
+     */
+    private static final class ChaChaCipher implements StreamCipher {
+
+        private final String algorithm;
+        private final int nonceLength;
+        private final Factory<? extends ChaCha20> factory;
+        private ChaCha20 chacha;
+
+        ChaChaCipher(String algorithm, int nonceLength, Factory<? extends ChaCha20> factory) {
+            this.algorithm = algorithm;
+            this.nonceLength = nonceLength;
+            this.factory = factory;
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        @Override
+        public int getNonceLength() {
+            return nonceLength;
+        }
+
+        @Override
+        public void init(byte[] key, byte[] nonce) {
+            // Повторен init сменя ключа на място (без алокации)
+            if (chacha != null) {
+                chacha.rekey(key, nonce);
+            } else {
+                chacha = factory.create(key, nonce);
+            }
+        }
+
+        @Override
+        public void crypt(byte[] in, int inOff, int len, byte[] out, int outOff) {
+            cipher().crypt(in, inOff, len, out, outOff);
+        }
+
+        @Override
+        public int crypt(ByteBuffer src, ByteBuffer dst) {
+            return cipher().crypt(src, dst);
+        }
+
+        @Override
+        public void crypt(byte[] in, int inOff, int len, byte[] out, int outOff, ForkJoinPool pool) {
+            cipher().crypt(in, inOff, len, out, outOff, pool);
+        }
+
+        @Override
+        public void seek(long byteOffset) {
+            cipher().seek(byteOffset);
+        }
+
+        private ChaCha20 cipher() {
+            if (chacha == null) {
+                throw new IllegalStateException("Шифърът не е инициализиран (init)");
+            }
+            return chacha;
+        }
+    }
+
+    /**
+     * Salsa20 и наследниците му (Salsa20Vector, XSalsa20, намалени рундове)
+     */
+    private static final class SalsaCipher implements StreamCipher {
+
+        private final String algorithm;
+        private final int nonceLength;
+        private final Factory<? extends Salsa20> factory;
+        private Salsa20 salsa;
+
+        SalsaCipher(String algorithm, int nonceLength, Factory<? extends Salsa20> factory) {
+            this.algorithm = algorithm;
+            this.nonceLength = nonceLength;
+            this.factory = factory;
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        @Override
+        public int getNonceLength() {
+            return nonceLength;
+        }
+
+        @Override
+        public void init(byte[] key, byte[] nonce) {
+            // Повторен init сменя ключа на място (без алокации)
+            if (salsa != null) {
+                salsa.rekey(key, nonce);
+            } else {
+                salsa = factory.create(key, nonce);
+            }
+        }
+
+        @Override
+        public void crypt(byte[] in, int inOff, int len, byte[] out, int outOff) {
+            cipher().crypt(in, inOff, len, out, outOff);
+        }
+
+        @Override
+        public int crypt(ByteBuffer src, ByteBuffer dst) {
+            return cipher().crypt(src, dst);
+        }
+
+        @Override
+        public void crypt(byte[] in, int inOff, int len, byte[] out, int outOff, ForkJoinPool pool) {
+            cipher().crypt(in, inOff, len, out, outOff, pool);
+        }
+
+        @Override
+        public void seek(long byteOffset) {
+            cipher().seek(byteOffset);
+        }
+
+        private Salsa20 cipher() {
+            if (salsa == null) {
+                throw new IllegalStateException("Шифърът не е инициализиран (init)");
+            }
+            return salsa;
+        }
+    }
+}
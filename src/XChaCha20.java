@@ -0,0 +1,208 @@
+/**
+ * XChaCha20 Stream Cipher Implementation
+ * 
+ * XChaCha20 е ChaCha20 с удължен 192-битов nonce. Първите 16 байта от
+ * nonce-а и ключът минават през HChaCha20, който извежда 256-битов подключ.
+ * С него се стартира обикновен ChaCha20, чийто 96-битов nonce е
+ * 4 нулеви байта + последните 8 байта от удължения nonce.
+ * 
+ * Спецификация: draft-irtf-cfrg-xchacha
+ * 
+ * Характеристики:
+ * - 256-битов ключ
+ * - 192-битов nonce - достатъчно голям, за да бъде произволен
+ * (вероятността за колизия е пренебрежима дори при 2^64 съобщения)
+ * - 32-битов block counter
+ * - същото keystream поведение като ChaCha20 (crypt на парчета, seek,
+ * паралелно криптиране)
+ * 
+ * Цената е един допълнителен HChaCha20 блок при създаване. Когато много
+ * съобщения споделят първите 16 байта от nonce-а (напр. фиксиран префикс
+ * за сесия + брояч в последните 8 байта), подключът се извежда веднъж
+ * чрез deriveSubkey и се подава на всеки следващ шифър.
+ * 
+ * @author Курсова работа по АSК
+ * @version 1.0
+ */
+public class XChaCha20 extends ChaCha20 {
+
+    private final int[] masterKey; // 8 × 32-bit = оригиналният ключ (вход на HChaCha20)
+    private final int[] prefix;    // 4 × 32-bit = префиксът, за който е изведен текущият подключ
+
+    /**
+     * Подключ, изведен чрез HChaCha20 за даден ключ и 16-байтов nonce префикс
+     * 
+     * Непроменим - може да се споделя между нишки и да се преизползва за
+     * всички съобщения, чиито nonce-ове започват със същия префикс.
+     * Шифрите, създадени с него, копират думите в собствени масиви,
+     * така че техните reinit/rekey не променят подключа.
+     */
+    public static final class Subkey {
+
+        final int[] words = new int[8]; // 8 × 32-bit = 256-bit подключ
+        final int[] prefix; // 4 × 32-bit = първите 128 бита от nonce-а
+        final int[] key; // 8 × 32-bit = оригиналният ключ (за reinit с друг префикс)
+
+        private Subkey(int[] key, int[] prefix) {
+            this.key = key;
+            this.prefix = prefix;
+            hChaCha20(key, prefix[0], prefix[1], prefix[2], prefix[3], words);
+        }
+
+        /**
+         * Проверява дали nonce-ът започва с префикса, за който е изведен подключът
+         */
+        public boolean matches(byte[] nonce) {
+            return nonce.length >= 16
+                    && bytesToInt(nonce, 0) == prefix[0]
+                    && bytesToInt(nonce, 4) == prefix[1]
+                    && bytesToInt(nonce, 8) == prefix[2]
+                    && bytesToInt(nonce, 12) == prefix[3];
+        }
+    }
+
+    /**
+     * Конструктор на XChaCha20
+     * 
+     * @param key     32-байтов (256-битов) ключ
+     * @param nonce   24-байтов (192-битов) nonce
+     * @param counter начален counter (обикновено 0 или 1)
+     * @throws IllegalArgumentException при невалидни размери
+     */
+    public XChaCha20(byte[] key, byte[] nonce, int counter) {
+        this(deriveSubkey(key, nonce), nonce, counter);
+    }
+
+    /**
+     * Конструктор с counter = 0
+     */
+    public XChaCha20(byte[] key, byte[] nonce) {
+        this(key, nonce, 0);
+    }
+
+    /**
+     * Конструктор с предварително изведен подключ (без HChaCha20)
+     * 
+     * Инициализацията струва колкото тази на ChaCha20 - подходящо за много
+     * кратки съобщения, които споделят първите 16 байта от nonce-а.
+     * 
+     * @param subkey  подключ от deriveSubkey за същия ключ и nonce префикс
+     * @param nonce   24-байтов (192-битов) nonce
+     * @param counter начален counter (обикновено 0 или 1)
+     * @throws IllegalArgumentException ако nonce-ът е с грешен размер или
+     *                                  не започва с префикса на подключа
+     */
+    public XChaCha20(Subkey subkey, byte[] nonce, int counter) {
+        super(subkey.words.clone(), chachaNonce(subkey, nonce), counter);
+        this.masterKey = subkey.key.clone();
+        this.prefix = subkey.prefix.clone();
+    }
+
+    /**
+     * Започва ново съобщение със същия ключ и нов 24-байтов nonce
+     * 
+     * Ако първите 16 байта съвпадат с тези на текущия nonce, подключът се
+     * преизползва и няма заделяне на памет; иначе HChaCha20 го извежда
+     * наново в масива на този обект.
+     * 
+     * @param nonce   24-байтов (192-битов) nonce
+     * @param counter начален counter (позиция 0 при seek)
+     * @throws IllegalArgumentException при невалиден размер на nonce
+     */
+    @Override
+    public void reinit(byte[] nonce, int counter) {
+        if (nonce.length != 24) {
+            throw new IllegalArgumentException("Nonce трябва да е точно 24 байта (192 бита)");
+        }
+
+        int p0 = bytesToInt(nonce, 0), p1 = bytesToInt(nonce, 4);
+        int p2 = bytesToInt(nonce, 8), p3 = bytesToInt(nonce, 12);
+        if (p0 != prefix[0] || p1 != prefix[1] || p2 != prefix[2] || p3 != prefix[3]) {
+            deriveInto(p0, p1, p2, p3);
+        }
+        reinit(0, bytesToInt(nonce, 16), bytesToInt(nonce, 20), counter);
+    }
+
+    /**
+     * Сменя ключа и nonce-а на място, без заделяне на памет (counter = 0)
+     * 
+     * Подключът се извежда с HChaCha20 в масива на този обект.
+     * Резултатът е като от нов XChaCha20(key, nonce, 0).
+     * 
+     * @param key   32-байтов (256-битов) ключ
+     * @param nonce 24-байтов (192-битов) nonce
+     * @throws IllegalArgumentException при невалидни размери
+     */
+    @Override
+    public void rekey(byte[] key, byte[] nonce) {
+        if (key.length != 32) {
+            throw new IllegalArgumentException("Ключът трябва да е точно 32 байта (256 бита)");
+        }
+        if (nonce.length != 24) {
+            throw new IllegalArgumentException("Nonce трябва да е точно 24 байта (192 бита)");
+        }
+
+        for (int i = 0; i < 8; i++) {
+            masterKey[i] = bytesToInt(key, i * 4);
+        }
+        deriveInto(bytesToInt(nonce, 0), bytesToInt(nonce, 4), bytesToInt(nonce, 8), bytesToInt(nonce, 12));
+        reinit(0, bytesToInt(nonce, 16), bytesToInt(nonce, 20), 0);
+    }
+
+    /**
+     * HChaCha20 върху оригиналния ключ и нов префикс - подключът отива в this.key
+     */
+    private void deriveInto(int p0, int p1, int p2, int p3) {
+        hChaCha20(masterKey, p0, p1, p2, p3, key);
+        prefix[0] = p0;
+        prefix[1] = p1;
+        prefix[2] = p2;
+        prefix[3] = p3;
+    }
+
+    /**
+     * Извежда подключа за ключ и nonce (HChaCha20 върху първите 16 байта)
+     * 
+     * @param key   32-байтов (256-битов) ключ
+     * @param nonce 24-байтов nonce или само неговият 16-байтов префикс
+     * @return подключ за всички nonce-ове със същия префикс
+     * @throws IllegalArgumentException при невалидни размери
+     */
+    public static Subkey deriveSubkey(byte[] key, byte[] nonce) {
+        if (key.length != 32) {
+            throw new IllegalArgumentException("Ключът трябва да е точно 32 байта (256 бита)");
+        }
+        if (nonce.length != 24 && nonce.length != 16) {
+            throw new IllegalArgumentException("Nonce трябва да е 24 байта (192 бита) или 16-байтов префикс");
+        }
+
+        int[] prefix = {
+                bytesToInt(nonce, 0), bytesToInt(nonce, 4), bytesToInt(nonce, 8), bytesToInt(nonce, 12)
+        };
+        return new Subkey(bytesToInts(key), prefix);
+    }
+
+    /**
+     * 96-битовият ChaCha20 nonce: 4 нулеви байта + байтове 16..23 от nonce-а
+     */
+    private static int[] chachaNonce(Subkey subkey, byte[] nonce) {
+        if (nonce.length != 24) {
+            throw new IllegalArgumentException("Nonce трябва да е точно 24 байта (192 бита)");
+        }
+        if (!subkey.matches(nonce)) {
+            throw new IllegalArgumentException("Nonce не започва с префикса, за който е изведен подключът");
+        }
+
+        return new int[] { 0, bytesToInt(nonce, 16), bytesToInt(nonce, 20) };
+    }
+
+    /**
+     * Генерира произволен 24-байтов nonce
+     * При 192 бита произволните nonce-ове са безопасни без координация
+     */
+    public static byte[] generateNonce() {
+        byte[] nonce = new byte[24];
+        new java.security.SecureRandom().nextBytes(nonce);
+        return nonce;
+    }
+}
@@ -0,0 +1,316 @@
+import java.util.Arrays;
+
+/**
+ * XSalsa20-Poly1305 secretbox (съвместим с NaCl / libsodium crypto_secretbox)
+ * 
+ * Автентикирано криптиране с 24-байтов nonce:
+ * 1. Подключ = HSalsa20(ключ, nonce[0..15])
+ * 2. Keystream = XSalsa20 с подключа и nonce[16..23], започвайки от блок 0
+ * 3. Еднократният Poly1305 ключ са първите 32 байта от keystream-а, а
+ * съобщението се криптира с keystream-а от байт 32 нататък
+ * 4. Tag = Poly1305(ciphertext) - без AAD и без допълване
+ * 
+ * Форматът на кутията е този на crypto_secretbox_easy: 16-байтов tag,
+ * следван от ciphertext-а (tag || ciphertext). Кутия, създадена тук, се
+ * отваря с libsodium и обратно.
+ * 
+ * Оптимизации за кратки съобщения (64 байта - 1 KB):
+ * - ключът се конвертира веднъж в конструктора; шифърът, MAC-ът и
+ * буферите се създават веднъж - seal и open не заделят памет
+ * - подключът се пази за последния nonce префикс - съобщения със
+ * споделени първи 16 байта на nonce-а (фиксиран префикс + брояч)
+ * пропускат HSalsa20
+ * - криптирането и MAC-ът минават заедно, сегмент по сегмент
+ * - sealInPlace / openInPlace работят директно в буфера на извикващия,
+ * като tag-ът заема 16 байта, запазени пред съобщението
+ * 
+ * Използва Salsa20Vector, когато модулът jdk.incubator.vector е зареден,
+ * а без него - скаларния Salsa20 (резултатът е един и същ).
+ * Обектът НЕ е thread-safe - използвайте по един за всяка нишка.
+ * 
+ * @author Курсова работа по АSК
+ * @version 1.0
+ */
+public class XSalsa20Poly1305 {
+
+    public static final int KEY_LENGTH = 32;
+    public static final int NONCE_LENGTH = 24;
+    public static final int TAG_LENGTH = Poly1305.TAG_LENGTH;
+
+    // Размер на сегмента за едно минаване (кратен на 64, побира се в L1 кеша)
+    static final int SEGMENT_SIZE = 4096;
+
+    // Нули за първите 32 байта keystream (Poly1305 ключът)
+    private static final byte[] ZEROS = new byte[32];
+
+    // true, ако jdk.incubator.vector липсва (Salsa20Vector не може да се зареди)
+    private static volatile boolean vectorMissing;
+
+    private final int[] key; // 8 × 32-bit думи на ключа
+    private final int[] prefix = new int[4]; // nonce префиксът, за който е изведен подключът
+    private boolean subkeyValid;
+
+    // Подключът живее само в масива с ключа на salsa (salsa.key) - никой друг не го държи
+    private final Salsa20 salsa;
+    private final Poly1305 poly = new Poly1305();
+
+    // Еднократният Poly1305 ключ (първите 32 байта keystream)
+    private final byte[] polyKey = new byte[Poly1305.KEY_LENGTH];
+
+    // Изчисленият tag при open (сравнява се с получения)
+    private final byte[] expectedTag = new byte[TAG_LENGTH];
+
+    /**
+     * Конструктор на XSalsa20-Poly1305
+     * 
+     * @param key 32-байтов (256-битов) ключ
+     * @throws IllegalArgumentException при невалиден размер
+     */
+    public XSalsa20Poly1305(byte[] key) {
+        if (key.length != KEY_LENGTH) {
+            throw new IllegalArgumentException("Ключът трябва да е точно 32 байта (256 бита)");
+        }
+
+        this.key = Salsa20.bytesToInts(key);
+        this.salsa = newSalsa20();
+    }
+
+    /**
+     * Векторен Salsa20, ако Vector API е наличен, иначе скаларен
+     * Ключът е собствен масив от нули - подключът се извежда в него при start.
+     */
+    private static Salsa20 newSalsa20() {
+        if (!vectorMissing) {
+            try {
+                return new Salsa20Vector(new int[8], new int[2], 0);
+            } catch (LinkageError e) {
+                // JVM без --add-modules jdk.incubator.vector
+                vectorMissing = true;
+            }
+        }
+        return new Salsa20(new int[8], new int[2], 0);
+    }
+
+    /**
+     * Криптира и автентикира съобщение
+     * 
+     * @param nonce   24-байтов nonce (уникален за всяко съобщение с този ключ!)
+     * @param message данните за криптиране
+     * @return кутия: 16-байтов tag || ciphertext
+     */
+    public byte[] seal(byte[] nonce, byte[] message) {
+        byte[] box = new byte[message.length + TAG_LENGTH];
+        seal(nonce, message, 0, message.length, box, 0);
+        return box;
+    }
+
+    /**
+     * Криптира и автентикира len байта от in в предоставен буфер
+     * 
+     * Записва кутията от outOff: 16-байтов tag и след него ciphertext-а.
+     * Поддържа работа на място, когато съобщението е точно след 16-те
+     * байта за tag-а (in == out и inOff == outOff + 16) - виж sealInPlace.
+     * 
+     * @param nonce  24-байтов nonce (уникален за всяко съобщение с този ключ!)
+     * @param in     съобщението
+     * @param inOff  начална позиция във входа
+     * @param len    дължина на съобщението
+     * @param out    изходен буфер (поне len + 16 байта от outOff)
+     * @param outOff начална позиция на кутията в изхода
+     * @return брой записани байтове (len + 16)
+     * @throws IllegalArgumentException при невалидни размери, offset или дължина
+     */
+    public int seal(byte[] nonce, byte[] in, int inOff, int len, byte[] out, int outOff) {
+        if (outOff < 0 || outOff > out.length - TAG_LENGTH) {
+            throw new IllegalArgumentException("Няма място за 16-байтовия tag");
+        }
+        Salsa20.checkBounds(in, inOff, len, out, outOff + TAG_LENGTH);
+
+        start(nonce);
+
+        // Едно минаване: всеки сегмент се криптира и веднага влиза в MAC-а
+        int ctOff = outOff + TAG_LENGTH;
+        for (int offset = 0; offset < len; offset += SEGMENT_SIZE) {
+            int n = Math.min(SEGMENT_SIZE, len - offset);
+            salsa.crypt(in, inOff + offset, n, out, ctOff + offset);
+            poly.update(out, ctOff + offset, n);
+        }
+
+        poly.doFinal(out, outOff);
+        return len + TAG_LENGTH;
+    }
+
+    /**
+     * Криптира на място съобщение, пред което са запазени 16 байта за tag-а
+     * 
+     * buffer[offset .. offset + 16) е мястото за tag-а, а съобщението е в
+     * buffer[offset + 16 .. offset + 16 + messageLength). След извикването
+     * същият диапазон съдържа готовата кутия - без копиране и без заделяне
+     * на памет.
+     * 
+     * @param nonce         24-байтов nonce (уникален за всяко съобщение с този ключ!)
+     * @param buffer        буфер с запазено място за tag-а пред съобщението
+     * @param offset        начало на запазените 16 байта
+     * @param messageLength дължина на съобщението след тях
+     * @return дължина на кутията (messageLength + 16)
+     * @throws IllegalArgumentException при невалидни размери, offset или дължина
+     */
+    public int sealInPlace(byte[] nonce, byte[] buffer, int offset, int messageLength) {
+        return seal(nonce, buffer, offset + TAG_LENGTH, messageLength, buffer, offset);
+    }
+
+    /**
+     * Проверява tag-а и декриптира кутия (tag || ciphertext)
+     * 
+     * @param nonce nonce-ът, използван при seal
+     * @param box   16-байтов tag || ciphertext
+     * @return декриптираното съобщение
+     * @throws IllegalArgumentException ако tag-ът не съвпада (данните са променени)
+     */
+    public byte[] open(byte[] nonce, byte[] box) {
+        if (box.length < TAG_LENGTH) {
+            throw new IllegalArgumentException("Кутията е по-къса от 16-байтовия tag");
+        }
+
+        byte[] message = new byte[box.length - TAG_LENGTH];
+        open(nonce, box, 0, box.length, message, 0);
+        return message;
+    }
+
+    /**
+     * Проверява tag-а и декриптира кутия от len байта в предоставен буфер
+     * 
+     * MAC-ът и декриптирането минават заедно, сегмент по сегмент (MAC-ът
+     * винаги преди декриптирането). При грешен tag записаното съобщение се
+     * нулира и се хвърля изключение - непроверени данни никога не остават
+     * в out. Поддържа работа на място, когато out == in и
+     * outOff == inOff + 16 - виж openInPlace.
+     * 
+     * @param nonce  nonce-ът, използван при seal
+     * @param in     кутия: tag || ciphertext
+     * @param inOff  начална позиция на кутията във входа
+     * @param len    дължина на кутията заедно с tag-а
+     * @param out    изходен буфер (поне len - 16 байта от outOff)
+     * @param outOff начална позиция в изхода
+     * @return дължина на съобщението (len - 16)
+     * @throws IllegalArgumentException ако tag-ът не съвпада или при невалидни размери
+     */
+    public int open(byte[] nonce, byte[] in, int inOff, int len, byte[] out, int outOff) {
+        if (len < TAG_LENGTH) {
+            throw new IllegalArgumentException("Кутията е по-къса от 16-байтовия tag");
+        }
+        if (inOff < 0 || inOff > in.length - len) {
+            throw new IllegalArgumentException("Невалиден offset или дължина на буфера");
+        }
+        int messageLength = len - TAG_LENGTH;
+        int ctOff = inOff + TAG_LENGTH;
+        Salsa20.checkBounds(in, ctOff, messageLength, out, outOff);
+
+        start(nonce);
+
+        for (int offset = 0; offset < messageLength; offset += SEGMENT_SIZE) {
+            int n = Math.min(SEGMENT_SIZE, messageLength - offset);
+            poly.update(in, ctOff + offset, n);
+            salsa.crypt(in, ctOff + offset, n, out, outOff + offset);
+        }
+
+        poly.doFinal(expectedTag, 0);
+        if (!Poly1305.tagsEqual(expectedTag, 0, in, inOff)) {
+            Arrays.fill(out, outOff, outOff + messageLength, (byte) 0);
+            throw new IllegalArgumentException("Невалиден authentication tag - данните са променени");
+        }
+        return messageLength;
+    }
+
+    /**
+     * Проверява и декриптира на място кутия от boxLength байта
+     * 
+     * Съобщението остава в buffer[offset + 16 .. offset + boxLength) -
+     * точно на мястото на ciphertext-а, без копиране.
+     * 
+     * @param nonce     nonce-ът, използван при seal
+     * @param buffer    буфер с кутията
+     * @param offset    начало на кутията (на tag-а)
+     * @param boxLength дължина на кутията заедно с tag-а
+     * @return дължина на съобщението (boxLength - 16), започващо от offset + 16
+     * @throws IllegalArgumentException ако tag-ът не съвпада или при невалидни размери
+     */
+    public int openInPlace(byte[] nonce, byte[] buffer, int offset, int boxLength) {
+        return open(nonce, buffer, offset, boxLength, buffer, offset + TAG_LENGTH);
+    }
+
+    /**
+     * Криптира много съобщения с едно извикване
+     * 
+     * @param nonces   по един 24-байтов nonce за всяко съобщение
+     * @param messages съобщенията
+     * @return кутиите в същия ред
+     * @throws IllegalArgumentException при различен брой nonce-ове и съобщения
+     */
+    public byte[][] sealBatch(byte[][] nonces, byte[][] messages) {
+        byte[][] boxes = new byte[messages.length][];
+        for (int i = 0; i < messages.length; i++) {
+            boxes[i] = new byte[messages[i].length + TAG_LENGTH];
+        }
+        sealBatch(nonces, messages, boxes);
+        return boxes;
+    }
+
+    /**
+     * Криптира много съобщения в предоставени буфери
+     * 
+     * Ключът, шифърът и MAC-ът се настройват веднъж за целия batch, а
+     * последователни nonce-ове със същия 16-байтов префикс използват
+     * един и същ подключ. Не заделя памет.
+     * 
+     * @param nonces   по един 24-байтов nonce за всяко съобщение
+     * @param messages съобщенията
+     * @param boxes    изходни буфери (boxes[i] поне messages[i].length + 16 байта)
+     * @throws IllegalArgumentException при различни размери на масивите
+     */
+    public void sealBatch(byte[][] nonces, byte[][] messages, byte[][] boxes) {
+        if (nonces.length != messages.length || boxes.length != messages.length) {
+            throw new IllegalArgumentException("Броят nonce-ове, съобщения и изходни буфери трябва да е еднакъв");
+        }
+
+        for (int i = 0; i < messages.length; i++) {
+            seal(nonces[i], messages[i], 0, messages[i].length, boxes[i], 0);
+        }
+    }
+
+    /**
+     * Ново съобщение: подключ (ако префиксът е нов), nonce и Poly1305 ключ
+     */
+    private void start(byte[] nonce) {
+        if (nonce.length != NONCE_LENGTH) {
+            throw new IllegalArgumentException("Nonce трябва да е точно 24 байта (192 бита)");
+        }
+
+        int p0 = Salsa20.bytesToInt(nonce, 0);
+        int p1 = Salsa20.bytesToInt(nonce, 4);
+        int p2 = Salsa20.bytesToInt(nonce, 8);
+        int p3 = Salsa20.bytesToInt(nonce, 12);
+
+        // HSalsa20 само при нов префикс (подключът се пише директно в ключа на salsa)
+        if (!subkeyValid || p0 != prefix[0] || p1 != prefix[1] || p2 != prefix[2] || p3 != prefix[3]) {
+            Salsa20.hSalsa20(key, p0, p1, p2, p3, salsa.key);
+            prefix[0] = p0;
+            prefix[1] = p1;
+            prefix[2] = p2;
+            prefix[3] = p3;
+            subkeyValid = true;
+        }
+
+        // Блок 0: първите 32 байта са Poly1305 ключът, останалите 32 криптират началото на съобщението
+        salsa.reinit(Salsa20.bytesToInt(nonce, 16), Salsa20.bytesToInt(nonce, 20), 0);
+        salsa.crypt(ZEROS, 0, 32, polyKey, 0);
+        poly.init(polyKey, 0);
+    }
+
+    /**
+     * Генерира произволен 24-байтов nonce
+     */
+    public static byte[] generateNonce() {
+        return XSalsa20.generateNonce();
+    }
+}